@@ -0,0 +1,130 @@
+package com.ftpclient.bench;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * File system backed by a real directory, typically a temp dir. Use it
+ * when files are too large for memory or when a test wants to look at
+ * what was uploaded with ordinary file APIs.
+ */
+public class DirectoryFileSystem implements ServerFileSystem {
+    private final Path root;
+
+    /** Serve {@code root} as "/". */
+    public DirectoryFileSystem(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /** Fresh empty temp directory, served as "/". */
+    public static DirectoryFileSystem temporary() throws IOException {
+        return new DirectoryFileSystem(Files.createTempDirectory("ftp-server"));
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /** Local path for server path {@code path}; paths are normalized, so it stays below the root. */
+    public Path resolve(String path) {
+        return path.equals("/") ? root : root.resolve(path.substring(1));
+    }
+
+    @Override
+    public Entry stat(String path) throws IOException {
+        Path file = resolve(path);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return entry(InMemoryFileSystem.nameOf(path), file);
+    }
+
+    @Override
+    public List<Entry> list(String path) throws IOException {
+        List<Entry> children = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(resolve(path))) {
+            for (Path child : dir) {
+                children.add(entry(child.getFileName().toString(), child));
+            }
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path);
+        }
+        children.sort(Comparator.comparing(Entry::getName));
+        return children;
+    }
+
+    @Override
+    public InputStream read(String path, long offset) throws IOException {
+        Path file = resolve(path);
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException(path);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(offset);
+        return Channels.newInputStream(channel);
+    }
+
+    @Override
+    public OutputStream write(String path, long offset, boolean append) throws IOException {
+        Path file = resolve(path);
+        if (Files.isDirectory(file) || !Files.isDirectory(file.getParent())) {
+            throw new FileNotFoundException(path);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long start = append ? channel.size() : Math.min(offset, channel.size());
+        channel.truncate(start);
+        channel.position(start);
+        return Channels.newOutputStream(channel);
+    }
+
+    @Override
+    public boolean makeDirectory(String path) throws IOException {
+        try {
+            Files.createDirectory(resolve(path));
+            return true;
+        } catch (FileAlreadyExistsException | NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean removeDirectory(String path) throws IOException {
+        Path dir = resolve(path);
+        if (path.equals("/") || !Files.isDirectory(dir)) {
+            return false;
+        }
+        try {
+            Files.delete(dir);
+            return true;
+        } catch (DirectoryNotEmptyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean delete(String path) throws IOException {
+        Path file = resolve(path);
+        return !Files.isDirectory(file) && Files.deleteIfExists(file);
+    }
+
+    private static Entry entry(String name, Path file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return new Entry(name, attrs.isDirectory(), attrs.isDirectory() ? 0 : attrs.size(),
+                         attrs.lastModifiedTime().toMillis());
+    }
+}
@@ -0,0 +1,698 @@
+package com.ftpclient.bench;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ftpclient.ftp.RateLimiter;
+
+/**
+ * FTP server on the loopback interface for tests and benchmarks.
+ *
+ * It implements what FTPClient uses: USER/PASS, PWD/CWD/CDUP, TYPE, FEAT,
+ * PASV/EPSV, LIST/NLST/MLSD/MLST, RETR/STOR/APPE with REST, SIZE/MDTM,
+ * MKD/RMD/DELE and NOOP. Files live in a {@link ServerFileSystem}, which
+ * is in memory by default or a temp dir.
+ *
+ * The network can be made worse on purpose. Replies can be held back to
+ * simulate a round trip, and data connections can be capped in bandwidth.
+ * {@link Fault}s make chosen commands fail in scripted ways: a given reply
+ * (421 also closes the connection), a data connection dropped after some
+ * bytes, or a control connection closed without a word. Every fault fires
+ * exactly once, in the order injected, so runs are repeatable. Settings may
+ * be changed while clients are connected.
+ */
+public class EmbeddedFtpServer implements Closeable {
+    private static final int DATA_CHUNK_SIZE = 64 * 1024;
+    private static final DateTimeFormatter FACT_TIME =
+        DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter LIST_RECENT =
+        DateTimeFormatter.ofPattern("MMM dd HH:mm", Locale.US);
+    private static final DateTimeFormatter LIST_OLD =
+        DateTimeFormatter.ofPattern("MMM dd  yyyy", Locale.US);
+
+    private final ServerFileSystem fileSystem;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Deque<Fault> faults = new ArrayDeque<>();   // guarded by itself
+    private final Map<String, AtomicInteger> commandCounts = new ConcurrentHashMap<>();
+    private volatile String username;    // null: any user
+    private volatile String password;
+    private volatile long replyLatencyMillis = 0;
+    private volatile long bandwidthLimit = 0;   // bytes per second per data connection, 0 for none
+    private volatile boolean discardUploads = false;
+    private ServerSocket control;
+
+    /** Server over a fresh in-memory file system. */
+    public EmbeddedFtpServer() {
+        this(new InMemoryFileSystem());
+    }
+
+    public EmbeddedFtpServer(ServerFileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    /** Listen on an ephemeral loopback port; see {@link #getPort()}. */
+    public EmbeddedFtpServer start() throws IOException {
+        control = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "ftp-server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    public String getHost() {
+        return control.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return control.getLocalPort();
+    }
+
+    public ServerFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    /** Store {@code content} as absolute path {@code path}; the parent must exist. */
+    public void putFile(String path, byte[] content) throws IOException {
+        if (fileSystem instanceof InMemoryFileSystem) {
+            ((InMemoryFileSystem) fileSystem).putFile(path, content);
+            return;
+        }
+        try (OutputStream out = fileSystem.write(path, 0, false)) {
+            out.write(content);
+        }
+    }
+
+    /** Content stored at {@code path}, or null. */
+    public byte[] getFile(String path) throws IOException {
+        ServerFileSystem.Entry entry = fileSystem.stat(path);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+        try (InputStream in = fileSystem.read(path, 0)) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            in.transferTo(content);
+            return content.toByteArray();
+        }
+    }
+
+    /** Accept only this user and password; null for any. */
+    public void setCredentials(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Answer no command sooner than this long after it arrived, like a round
+     * trip over a slow link. Commands sent together (pipelined) wait once,
+     * not once each. A passive data connection likewise becomes usable only
+     * this long after the reply that announced it, the time the client's
+     * handshake would take.
+     */
+    public void setReplyLatencyMillis(long replyLatencyMillis) {
+        this.replyLatencyMillis = replyLatencyMillis;
+    }
+
+    /** Cap each data connection at {@code bytesPerSecond}; 0 for no cap. */
+    public void setBandwidthLimit(long bytesPerSecond) {
+        this.bandwidthLimit = bytesPerSecond;
+    }
+
+    /** Read and drop uploaded data instead of keeping it, for long upload runs. */
+    public void setDiscardUploads(boolean discardUploads) {
+        this.discardUploads = discardUploads;
+    }
+
+    /** Queue {@code fault} to fire on the next matching command. */
+    public void inject(Fault fault) {
+        synchronized (faults) {
+            faults.addLast(fault);
+        }
+    }
+
+    /** Faults injected but not fired yet. */
+    public int getPendingFaults() {
+        synchronized (faults) {
+            return faults.size();
+        }
+    }
+
+    /** How often each verb was received, over all sessions. */
+    public Map<String, Integer> getCommandCounts() {
+        Map<String, Integer> counts = new TreeMap<>();
+        commandCounts.forEach((verb, n) -> counts.put(verb, n.get()));
+        return counts;
+    }
+
+    /** Control connections currently open. */
+    public int getSessionCount() {
+        return connections.size();
+    }
+
+    /** Stop listening and close every connection. */
+    @Override
+    public void close() throws IOException {
+        if (control != null) {
+            control.close();
+        }
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+    }
+
+    private void accept() {
+        while (!control.isClosed()) {
+            try {
+                Socket socket = control.accept();
+                connections.add(socket);
+                Thread session = new Thread(() -> serve(socket), "ftp-server-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                return;   // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            new Session(s).run();
+        } catch (IOException e) {
+            // client went away
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /** The first queued fault for {@code verb}, removed; null if none. */
+    private Fault takeFault(String verb) {
+        synchronized (faults) {
+            Iterator<Fault> it = faults.iterator();
+            while (it.hasNext()) {
+                Fault fault = it.next();
+                if (fault.verb.equals(verb)) {
+                    it.remove();
+                    return fault;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            // nothing left to do
+        }
+    }
+
+    /**
+     * A scripted failure for the next command with a given verb. Create
+     * with {@link #reply}, {@link #dropData} or {@link #disconnect}.
+     */
+    public static final class Fault {
+        private enum Kind { REPLY, DROP_DATA, DISCONNECT }
+
+        private final Kind kind;
+        private final String verb;
+        private final int code;
+        private final long afterBytes;
+
+        private Fault(Kind kind, String verb, int code, long afterBytes) {
+            this.kind = kind;
+            this.verb = verb.toUpperCase(Locale.ROOT);
+            this.code = code;
+            this.afterBytes = afterBytes;
+        }
+
+        /** Answer {@code verb} with {@code code} instead of running it; 421 then hangs up. */
+        public static Fault reply(String verb, int code) {
+            return new Fault(Kind.REPLY, verb, code, 0);
+        }
+
+        /** Close the data connection of {@code verb} after {@code afterBytes} bytes, then reply 426. */
+        public static Fault dropData(String verb, long afterBytes) {
+            return new Fault(Kind.DROP_DATA, verb, 0, afterBytes);
+        }
+
+        /** Close the control connection on {@code verb} without replying. */
+        public static Fault disconnect(String verb) {
+            return new Fault(Kind.DISCONNECT, verb, 0, 0);
+        }
+
+        @Override
+        public String toString() {
+            return kind + " on " + verb + (kind == Kind.REPLY ? " (" + code + ")"
+                : kind == Kind.DROP_DATA ? " after " + afterBytes + " bytes" : "");
+        }
+    }
+
+    /** Raised inside a data copy when a DROP_DATA fault cuts it off. */
+    private static final class DroppedException extends IOException {
+        DroppedException() {
+            super("Data connection dropped by fault injection");
+        }
+    }
+
+    /** One control connection. */
+    private class Session {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+        private ServerSocket passive;
+        private String pendingUser;
+        private boolean loggedIn = false;
+        private String cwd = "/";
+        private long restOffset = 0;
+        private long receivedAt = System.nanoTime();   // arrival of the command being handled
+        private long passiveAnnouncedAt;               // when the PASV/EPSV reply went out
+
+        Session(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);   // replies are whole lines; do not hold one back for an ACK
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        void run() throws IOException {
+            try {
+                reply("220 Embedded FTP server ready");
+                // Commands are read as they arrive, so their arrival times are known
+                // even when the client sends the next one before the last reply
+                BlockingQueue<Command> commands = new LinkedBlockingQueue<>();
+                Thread reader = new Thread(() -> readCommands(commands), "ftp-server-read");
+                reader.setDaemon(true);
+                reader.start();
+                Command command;
+                while ((command = commands.take()).line != null) {
+                    String line = command.line;
+                    receivedAt = command.receivedAt;
+                    int space = line.indexOf(' ');
+                    String verb = (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+                    String arg = space < 0 ? "" : line.substring(space + 1);
+                    commandCounts.computeIfAbsent(verb, v -> new AtomicInteger()).incrementAndGet();
+                    if (!dispatch(verb, arg)) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                closeQuietly(passive);
+            }
+        }
+
+        /** Queue each command line with its arrival time; a null line marks the end. */
+        private void readCommands(BlockingQueue<Command> commands) {
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    commands.add(new Command(line, System.nanoTime()));
+                }
+            } catch (IOException e) {
+                // connection closed
+            } finally {
+                commands.add(new Command(null, System.nanoTime()));
+            }
+        }
+
+        /** Apply any fault for {@code verb}, else run it; false ends the session. */
+        private boolean dispatch(String verb, String arg) throws IOException {
+            Fault fault = takeFault(verb);
+            if (fault != null && fault.kind == Fault.Kind.DISCONNECT) {
+                return false;
+            }
+            if (fault != null && fault.kind == Fault.Kind.REPLY) {
+                reply(fault.code + " Injected failure for " + verb);
+                return fault.code != 421;
+            }
+            long dropAfter = fault != null ? fault.afterBytes : -1;
+            if (!loggedIn && !verb.equals("USER") && !verb.equals("PASS") && !verb.equals("QUIT")
+                    && !verb.equals("FEAT") && !verb.equals("SYST") && !verb.equals("NOOP")) {
+                reply("530 Please log in");
+                return true;
+            }
+            return handle(verb, arg, dropAfter);
+        }
+
+        private boolean handle(String verb, String arg, long dropAfter) throws IOException {
+            switch (verb) {
+                case "USER":
+                    pendingUser = arg;
+                    loggedIn = false;
+                    reply("331 Password required for " + arg);
+                    break;
+                case "PASS":
+                    String user = username;
+                    if (pendingUser != null && (user == null
+                            || (user.equals(pendingUser) && String.valueOf(password).equals(arg)))) {
+                        loggedIn = true;
+                        reply("230 Logged in");
+                    } else {
+                        reply("530 Login incorrect");
+                    }
+                    break;
+                case "SYST":
+                    reply("215 UNIX Type: L8");
+                    break;
+                case "FEAT":
+                    reply("211-Features:\r\n EPSV\r\n MDTM\r\n MLST type*;size*;modify*;perm*;\r\n"
+                        + " PASV\r\n REST STREAM\r\n SIZE\r\n UTF8\r\n211 End");
+                    break;
+                case "OPTS":
+                    reply("200 OK");
+                    break;
+                case "NOOP":
+                    reply("200 OK");
+                    break;
+                case "TYPE":
+                    reply("200 Type set to " + arg);
+                    break;
+                case "PWD":
+                case "XPWD":
+                    reply("257 \"" + cwd.replace("\"", "\"\"") + "\" is the current directory");
+                    break;
+                case "CWD":
+                    changeDirectory(resolve(arg));
+                    break;
+                case "CDUP":
+                    changeDirectory(InMemoryFileSystem.parentOf(cwd));
+                    break;
+                case "PASV":
+                    enterPassive(false);
+                    break;
+                case "EPSV":
+                    enterPassive(true);
+                    break;
+                case "REST":
+                    try {
+                        restOffset = Long.parseLong(arg.trim());
+                        reply("350 Restarting at " + restOffset);
+                    } catch (NumberFormatException e) {
+                        reply("501 Invalid offset");
+                    }
+                    break;
+                case "LIST":
+                case "NLST":
+                case "MLSD":
+                    list(verb, arg, dropAfter);
+                    break;
+                case "MLST":
+                    mlst(arg.isEmpty() ? cwd : resolve(arg));
+                    break;
+                case "RETR":
+                    retrieve(resolve(arg), dropAfter);
+                    break;
+                case "STOR":
+                case "APPE":
+                    store(resolve(arg), verb.equals("APPE"), dropAfter);
+                    break;
+                case "SIZE":
+                    ServerFileSystem.Entry sized = fileSystem.stat(resolve(arg));
+                    reply(sized == null || sized.isDirectory() ? "550 " + arg + ": not a plain file"
+                                                               : "213 " + sized.getSize());
+                    break;
+                case "MDTM":
+                    ServerFileSystem.Entry dated = fileSystem.stat(resolve(arg));
+                    reply(dated == null ? "550 " + arg + ": No such file"
+                                        : "213 " + FACT_TIME.format(Instant.ofEpochMilli(dated.getModified())));
+                    break;
+                case "MKD":
+                    String dir = resolve(arg);
+                    reply(fileSystem.makeDirectory(dir)
+                        ? "257 \"" + dir + "\" created" : "550 " + arg + ": Cannot create directory");
+                    break;
+                case "RMD":
+                    reply(fileSystem.removeDirectory(resolve(arg))
+                        ? "250 Directory removed" : "550 " + arg + ": Cannot remove directory");
+                    break;
+                case "DELE":
+                    reply(fileSystem.delete(resolve(arg))
+                        ? "250 File deleted" : "550 " + arg + ": No such file");
+                    break;
+                case "ABOR":
+                    reply("226 Nothing to abort");
+                    break;
+                case "QUIT":
+                    reply("221 Goodbye");
+                    return false;
+                default:
+                    reply("502 Command not implemented");
+            }
+            return true;
+        }
+
+        private void changeDirectory(String dir) throws IOException {
+            ServerFileSystem.Entry entry = fileSystem.stat(dir);
+            if (entry != null && entry.isDirectory()) {
+                cwd = dir;
+                reply("250 Directory changed to " + dir);
+            } else {
+                reply("550 " + dir + ": No such directory");
+            }
+        }
+
+        private void enterPassive(boolean extended) throws IOException {
+            closeQuietly(passive);
+            passive = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            int p = passive.getLocalPort();
+            if (extended) {
+                reply("229 Entering Extended Passive Mode (|||" + p + "|)");
+            } else {
+                byte[] a = passive.getInetAddress().getAddress();
+                reply(String.format("227 Entering Passive Mode (%d,%d,%d,%d,%d,%d).",
+                    a[0] & 0xff, a[1] & 0xff, a[2] & 0xff, a[3] & 0xff, p >> 8, p & 0xff));
+            }
+            passiveAnnouncedAt = System.nanoTime();
+        }
+
+        private void list(String verb, String arg, long dropAfter) throws IOException {
+            // LIST may carry options such as "-a" before (or instead of) a path
+            String target = arg.startsWith("-") ? "" : arg;
+            String dir = target.isEmpty() ? cwd : resolve(target);
+            List<ServerFileSystem.Entry> entries;
+            try {
+                entries = fileSystem.list(dir);
+            } catch (FileNotFoundException e) {
+                closeQuietly(passive);
+                passive = null;
+                reply("550 " + dir + ": No such directory");
+                return;
+            }
+            StringBuilder text = new StringBuilder();
+            for (ServerFileSystem.Entry entry : entries) {
+                if (verb.equals("MLSD")) {
+                    text.append(facts(entry)).append(' ').append(entry.getName());
+                } else if (verb.equals("NLST")) {
+                    text.append(entry.getName());
+                } else {
+                    text.append(listLine(entry));
+                }
+                text.append("\r\n");
+            }
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            transfer("150 Opening data connection for " + verb + " " + dir, dropAfter,
+                     data -> copy(new ByteArrayInputStream(bytes), data.getOutputStream(), dropAfter));
+        }
+
+        private void mlst(String path) throws IOException {
+            ServerFileSystem.Entry entry = fileSystem.stat(path);
+            if (entry == null) {
+                reply("550 " + path + ": No such file or directory");
+                return;
+            }
+            reply("250-Listing " + path + "\r\n " + facts(entry) + " " + path + "\r\n250 End");
+        }
+
+        private void retrieve(String path, long dropAfter) throws IOException {
+            long offset = takeRestOffset();
+            ServerFileSystem.Entry entry = fileSystem.stat(path);
+            if (entry == null || entry.isDirectory()) {
+                closeQuietly(passive);
+                passive = null;
+                reply("550 " + path + ": No such file");
+                return;
+            }
+            long remaining = Math.max(0, entry.getSize() - offset);
+            transfer("150 Opening BINARY data connection for " + path + " (" + remaining + " bytes)",
+                     dropAfter, data -> {
+                try (InputStream content = fileSystem.read(path, offset)) {
+                    copy(content, data.getOutputStream(), dropAfter);
+                }
+            });
+        }
+
+        private void store(String path, boolean append, long dropAfter) throws IOException {
+            long offset = takeRestOffset();
+            OutputStream target;
+            try {
+                target = discardUploads ? OutputStream.nullOutputStream()
+                                        : fileSystem.write(path, offset, append);
+            } catch (FileNotFoundException e) {
+                closeQuietly(passive);
+                passive = null;
+                reply("553 " + path + ": Cannot store here");
+                return;
+            }
+            transfer("150 Opening BINARY data connection for " + path, dropAfter, data -> {
+                // Closing the target commits what arrived, even if the client went away early
+                try (OutputStream content = target) {
+                    copy(data.getInputStream(), content, dropAfter);
+                }
+            });
+        }
+
+        private long takeRestOffset() {
+            long offset = restOffset;
+            restOffset = 0;
+            return offset;
+        }
+
+        /** Accept the data connection, announce it with {@code start}, run {@code body}, reply 226 or 426. */
+        private void transfer(String start, long dropAfter, DataWork body) throws IOException {
+            if (passive == null) {
+                reply("425 Use PASV or EPSV first");
+                return;
+            }
+            Socket data;
+            try {
+                data = passive.accept();
+            } finally {
+                closeQuietly(passive);
+                passive = null;
+            }
+            sleepUntil(passiveAnnouncedAt + TimeUnit.MILLISECONDS.toNanos(replyLatencyMillis));
+            try (Socket d = data) {
+                reply(start);
+                body.run(d);
+            } catch (IOException e) {
+                reply("426 Connection closed; transfer aborted");
+                return;
+            }
+            reply("226 Transfer complete");
+        }
+
+        /** Copy at the bandwidth cap, throwing once {@code dropAfter} bytes are through (if not -1). */
+        private void copy(InputStream from, OutputStream to, long dropAfter) throws IOException {
+            long limit = bandwidthLimit;
+            RateLimiter limiter = limit > 0 ? new RateLimiter(limit, DATA_CHUNK_SIZE) : null;
+            byte[] buffer = new byte[DATA_CHUNK_SIZE];
+            long moved = 0;
+            int n;
+            while ((n = from.read(buffer)) != -1) {
+                if (dropAfter >= 0 && moved + n >= dropAfter) {
+                    to.write(buffer, 0, (int) (dropAfter - moved));
+                    to.flush();
+                    throw new DroppedException();
+                }
+                if (limiter != null) {
+                    limiter.acquire(n);
+                }
+                to.write(buffer, 0, n);
+                moved += n;
+            }
+            to.flush();
+        }
+
+        /** Absolute, normalized form of {@code arg} relative to the working directory. */
+        private String resolve(String arg) {
+            String path = arg.startsWith("/") ? arg : cwd + "/" + arg;
+            Deque<String> parts = new ArrayDeque<>();
+            for (String part : path.split("/")) {
+                if (part.isEmpty() || part.equals(".")) {
+                    continue;
+                }
+                if (part.equals("..")) {
+                    parts.pollLast();
+                } else {
+                    parts.addLast(part);
+                }
+            }
+            return "/" + String.join("/", new ArrayList<>(parts));
+        }
+
+        private String facts(ServerFileSystem.Entry entry) {
+            String modify = FACT_TIME.format(Instant.ofEpochMilli(entry.getModified()));
+            return entry.isDirectory()
+                ? "type=dir;modify=" + modify + ";perm=elcmp;"
+                : "type=file;size=" + entry.getSize() + ";modify=" + modify + ";perm=rwadf;";
+        }
+
+        private String listLine(ServerFileSystem.Entry entry) {
+            ZonedDateTime modified = Instant.ofEpochMilli(entry.getModified()).atZone(ZoneId.systemDefault());
+            boolean recent = modified.isAfter(ZonedDateTime.now().minusMonths(6));
+            return String.format(Locale.US, "%s 1 owner group %12d %s %s",
+                entry.isDirectory() ? "drwxr-xr-x" : "-rw-r--r--", entry.getSize(),
+                (recent ? LIST_RECENT : LIST_OLD).format(modified), entry.getName());
+        }
+
+        private void reply(String text) throws IOException {
+            sleepUntil(receivedAt + TimeUnit.MILLISECONDS.toNanos(replyLatencyMillis));
+            out.write(text + "\r\n");
+            out.flush();
+        }
+
+        /** Wait for System.nanoTime() to reach {@code deadline}. */
+        private void sleepUntil(long deadline) throws IOException {
+            long wait = deadline - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+        }
+    }
+
+    /** A command line and when it arrived (System.nanoTime()). */
+    private static final class Command {
+        final String line;
+        final long receivedAt;
+
+        Command(String line, long receivedAt) {
+            this.line = line;
+            this.receivedAt = receivedAt;
+        }
+    }
+
+    /** Work done on an open data connection. */
+    private interface DataWork {
+        void run(Socket data) throws IOException;
+    }
+}
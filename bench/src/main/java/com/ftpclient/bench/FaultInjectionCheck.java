@@ -0,0 +1,162 @@
+package com.ftpclient.bench;
+
+import com.ftpclient.ftp.FTPClient;
+import com.ftpclient.ftp.ResilientSession;
+import com.ftpclient.ftp.RetryPolicy;
+import com.ftpclient.ftp.SegmentedDownloader;
+import com.ftpclient.ftp.TransferJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Drives the client's recovery paths against {@link EmbeddedFtpServer}
+ * faults: a RETR cut off part way ({@code Fault.dropData}) and a RETR
+ * refused with 426 ({@code Fault.reply}). Covers a journaled resume, a
+ * {@link ResilientSession} retry and a {@link SegmentedDownloader} whose
+ * ranges fail. Prints one line per check and exits with status 1 if any
+ * of them fails.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.ftpclient.bench.FaultInjectionCheck
+ * </pre>
+ */
+public class FaultInjectionCheck {
+    private static final int FILE_SIZE = 32 << 20;
+    private static final long DROP_AFTER = 12L << 20;   // past the first journal checkpoint (8 MB)
+
+    private final byte[] content = new byte[FILE_SIZE];
+    private final Path dir;
+    private int failures = 0;
+
+    private FaultInjectionCheck() throws IOException {
+        new Random(42).nextBytes(content);
+        dir = Files.createTempDirectory("ftp-faults");
+    }
+
+    public static void main(String[] args) throws Exception {
+        FaultInjectionCheck check = new FaultInjectionCheck();
+        check.journaledResume();
+        check.resilientSession();
+        check.segmentedDownload();
+        if (check.failures > 0) {
+            System.out.println(check.failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    /** A cut-off download is journaled, a refused resume keeps it, the next resume finishes it. */
+    private void journaledResume() throws IOException {
+        TransferJournal journal = new TransferJournal(dir.resolve("journal"));
+        try (EmbeddedFtpServer server = startServer()) {
+            FTPClient client = login(server);
+            client.setTransferJournal(journal);
+            Path local = dir.resolve("journaled.bin");
+
+            server.inject(EmbeddedFtpServer.Fault.dropData("RETR", DROP_AFTER));
+            check("dropped download fails", !download(client, local));
+            List<TransferJournal.Entry> unfinished = journal.getUnfinished();
+            check("dropped download is journaled", unfinished.size() == 1);
+            TransferJournal.Entry entry = unfinished.get(0);
+            check("checkpoint within the received bytes",
+                  entry.getConfirmedOffset() > 0 && entry.getConfirmedOffset() <= DROP_AFTER);
+
+            server.inject(EmbeddedFtpServer.Fault.reply("RETR", 426));
+            check("refused resume fails", !resume(client, entry));
+            check("refused resume keeps the entry", journal.getUnfinished().size() == 1);
+
+            check("second resume succeeds", resume(client, entry));
+            check("resumed file matches", Arrays.equals(content, Files.readAllBytes(local)));
+            check("journal is empty", journal.getUnfinished().isEmpty());
+            check("faults consumed", server.getPendingFaults() == 0);
+            client.disconnect();
+        } finally {
+            journal.close();
+        }
+    }
+
+    /** One resumeDownload through a ResilientSession survives a dropped RETR and a 426. */
+    private void resilientSession() throws IOException {
+        try (EmbeddedFtpServer server = startServer()) {
+            Path local = dir.resolve("resilient.bin");
+            server.inject(EmbeddedFtpServer.Fault.dropData("RETR", DROP_AFTER));
+            server.inject(EmbeddedFtpServer.Fault.reply("RETR", 426));
+            try (ResilientSession session = new ResilientSession(login(server), 0)) {
+                session.setRetryPolicy(new RetryPolicy(3, 10, 100));
+                boolean ok = session.execute(
+                    c -> c.resumeDownload("/data.bin", local.toString()));
+                check("retried download succeeds", ok);
+                check("retried file matches", Arrays.equals(content, Files.readAllBytes(local)));
+                check("retried within the session", session.getReconnectCount() == 0);
+                check("three RETRs", server.getCommandCounts().getOrDefault("RETR", 0) == 3);
+                check("faults consumed", server.getPendingFaults() == 0);
+            }
+        }
+    }
+
+    /** Ranges cut off or refused are fetched again, and the file still comes out whole. */
+    private void segmentedDownload() throws IOException {
+        try (EmbeddedFtpServer server = startServer()) {
+            FTPClient client = login(server);
+            Path local = dir.resolve("segmented.bin");
+            server.inject(EmbeddedFtpServer.Fault.dropData("RETR", 1 << 20));
+            server.inject(EmbeddedFtpServer.Fault.reply("RETR", 426));
+            SegmentedDownloader downloader = new SegmentedDownloader(client, 4, 4L << 20);
+            boolean ok;
+            try {
+                ok = downloader.download("/data.bin", local.toString());
+            } catch (IOException e) {
+                System.out.println("  " + e);
+                ok = false;
+            }
+            check("segmented download succeeds", ok);
+            check("segmented file matches", ok && Arrays.equals(content, Files.readAllBytes(local)));
+            check("faults consumed", server.getPendingFaults() == 0);
+            client.disconnect();
+        }
+    }
+
+    private EmbeddedFtpServer startServer() throws IOException {
+        EmbeddedFtpServer server = new EmbeddedFtpServer().start();
+        server.putFile("/data.bin", content);
+        return server;
+    }
+
+    private static FTPClient login(EmbeddedFtpServer server) throws IOException {
+        FTPClient client = new FTPClient(server.getHost(), server.getPort());
+        client.connect();
+        if (!client.login("user", "pass")) {
+            throw new IOException("Login to the embedded server failed");
+        }
+        return client;
+    }
+
+    /** False when the download failed, whether by reply or by exception. */
+    private static boolean download(FTPClient client, Path local) {
+        try {
+            return client.downloadFile("/data.bin", local.toString());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean resume(FTPClient client, TransferJournal.Entry entry) {
+        try {
+            return client.resume(entry);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void check(String name, boolean passed) {
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.ftpclient.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * File system held in memory: a sorted map from path to node, so a
+ * directory's children are one contiguous range of keys. Fast and leaves
+ * nothing behind, which suits benchmarks and throwaway tests.
+ */
+public class InMemoryFileSystem implements ServerFileSystem {
+    private final TreeMap<String, Node> nodes = new TreeMap<>();   // guarded by this
+
+    public InMemoryFileSystem() {
+        nodes.put("/", new Node(null));
+    }
+
+    /** Store {@code content} at {@code path}, creating missing parent directories. */
+    public synchronized void putFile(String path, byte[] content) {
+        String parent = parentOf(path);
+        if (!nodes.containsKey(parent)) {
+            putDirectories(parent);
+        }
+        nodes.put(path, new Node(content));
+    }
+
+    /** Content of file {@code path}, or null. */
+    public synchronized byte[] getFile(String path) {
+        Node node = nodes.get(path);
+        return node == null || node.content == null ? null : node.content;
+    }
+
+    @Override
+    public synchronized Entry stat(String path) {
+        Node node = nodes.get(path);
+        return node == null ? null : node.entry(nameOf(path));
+    }
+
+    @Override
+    public synchronized List<Entry> list(String path) throws IOException {
+        Node dir = nodes.get(path);
+        if (dir == null || dir.content != null) {
+            throw new FileNotFoundException(path);
+        }
+        String prefix = path.equals("/") ? "/" : path + "/";
+        List<Entry> children = new ArrayList<>();
+        // '0' follows '/', so this range is everything below the directory
+        String end = prefix.substring(0, prefix.length() - 1) + "0";
+        for (Map.Entry<String, Node> e : nodes.subMap(prefix, false, end, false).entrySet()) {
+            String rest = e.getKey().substring(prefix.length());
+            if (!rest.isEmpty() && rest.indexOf('/') < 0) {
+                children.add(e.getValue().entry(rest));
+            }
+        }
+        return children;
+    }
+
+    @Override
+    public synchronized InputStream read(String path, long offset) throws IOException {
+        Node node = nodes.get(path);
+        if (node == null || node.content == null) {
+            throw new FileNotFoundException(path);
+        }
+        byte[] content = node.content;
+        int start = (int) Math.min(offset, content.length);
+        return new ByteArrayInputStream(content, start, content.length - start);
+    }
+
+    @Override
+    public synchronized OutputStream write(String path, long offset, boolean append) throws IOException {
+        Node parent = nodes.get(parentOf(path));
+        Node existing = nodes.get(path);
+        if (parent == null || parent.content != null || (existing != null && existing.content == null)) {
+            throw new FileNotFoundException(path);
+        }
+        byte[] old = existing == null ? new byte[0] : existing.content;
+        int keep = (int) (append ? old.length : Math.min(offset, old.length));
+        return new ByteArrayOutputStream() {
+            {
+                write(old, 0, keep);
+            }
+
+            @Override
+            public void close() {
+                synchronized (InMemoryFileSystem.this) {
+                    nodes.put(path, new Node(toByteArray()));
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized boolean makeDirectory(String path) {
+        Node parent = nodes.get(parentOf(path));
+        if (path.equals("/") || nodes.containsKey(path) || parent == null || parent.content != null) {
+            return false;
+        }
+        nodes.put(path, new Node(null));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean removeDirectory(String path) throws IOException {
+        Node node = nodes.get(path);
+        if (path.equals("/") || node == null || node.content != null || !list(path).isEmpty()) {
+            return false;
+        }
+        nodes.remove(path);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean delete(String path) {
+        Node node = nodes.get(path);
+        if (node == null || node.content == null) {
+            return false;
+        }
+        nodes.remove(path);
+        return true;
+    }
+
+    private void putDirectories(String path) {
+        if (!nodes.containsKey(path)) {
+            putDirectories(parentOf(path));
+            nodes.put(path, new Node(null));
+        }
+    }
+
+    static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash <= 0 ? "/" : path.substring(0, slash);
+    }
+
+    static String nameOf(String path) {
+        return path.equals("/") ? "/" : path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /** A file (content set) or a directory (content null). */
+    private static final class Node {
+        final byte[] content;
+        final long modified = System.currentTimeMillis();
+
+        Node(byte[] content) {
+            this.content = content;
+        }
+
+        Entry entry(String name) {
+            return new Entry(name, content == null, content == null ? 0 : content.length, modified);
+        }
+    }
+}
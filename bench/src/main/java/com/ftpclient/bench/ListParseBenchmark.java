@@ -0,0 +1,89 @@
+package com.ftpclient.bench;
+
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ftpclient.ftp.ListParser;
+
+/**
+ * ListParser over whole listings of 10k and 1M lines, in the Unix and
+ * DOS/IIS formats. The listing is generated from a fixed seed and parsed
+ * as UTC, so every run sees the same lines and the same results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class ListParseBenchmark {
+    private static final String[] MONTHS = {
+        "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+    };
+
+    @Param({"10000", "1000000"})
+    public int lines;
+
+    @Param({"UNIX", "DOS"})
+    public String format;
+
+    private String[] listing;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random random = new Random(42);
+        listing = new String[lines];
+        for (int i = 0; i < lines; i++) {
+            listing[i] = "DOS".equals(format) ? dosLine(random, i) : unixLine(random, i);
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        ListParser parser = new ListParser(ZoneOffset.UTC);
+        for (String line : listing) {
+            bh.consume(parser.parse(line));
+        }
+    }
+
+    private static String unixLine(Random random, int i) {
+        boolean dir = random.nextInt(10) == 0;
+        String month = MONTHS[random.nextInt(12)];
+        int day = 1 + random.nextInt(28);
+        // Older files show a year, recent ones a time of day
+        String when = random.nextBoolean()
+            ? String.format("%s %2d  %d", month, day, 2000 + random.nextInt(20))
+            : String.format("%s %2d %02d:%02d", month, day, random.nextInt(24), random.nextInt(60));
+        return String.format("%s %3d %-8s %-8s %12d %s %s",
+            dir ? "drwxr-xr-x" : "-rw-r--r--", 1 + random.nextInt(5), "user", "staff",
+            dir ? 4096 : random.nextInt(Integer.MAX_VALUE), when, name(random, i, dir));
+    }
+
+    private static String dosLine(Random random, int i) {
+        boolean dir = random.nextInt(10) == 0;
+        String when = String.format("%02d-%02d-%02d  %02d:%02d%s",
+            1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(100),
+            1 + random.nextInt(12), random.nextInt(60), random.nextBoolean() ? "AM" : "PM");
+        return String.format("%s %20s %s", when,
+            dir ? "<DIR>" : String.valueOf(random.nextInt(Integer.MAX_VALUE)), name(random, i, dir));
+    }
+
+    private static String name(Random random, int i, boolean dir) {
+        return (dir ? "folder_" : "file_") + i + (dir ? "" : (random.nextBoolean() ? ".txt" : " with spaces.bin"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.ftpclient.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ftpclient.ftp.FTPResponse;
+
+/**
+ * FTPResponse.parse on the replies a session sees most: one-line replies
+ * (every command) and a multi-line FEAT reply (once per session).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class ResponseParseBenchmark {
+    private final String singleLine = "227 Entering Passive Mode (127,0,0,1,195,80).\r\n";
+
+    private final String multiLine = "211-Features:\r\n"
+        + " EPSV\r\n"
+        + " MDTM\r\n"
+        + " MLST type*;size*;modify*;perm*;unique*;\r\n"
+        + " PASV\r\n"
+        + " REST STREAM\r\n"
+        + " SIZE\r\n"
+        + " TVFS\r\n"
+        + " UTF8\r\n"
+        + "211 End\r\n";
+
+    @Benchmark
+    public FTPResponse singleLine() {
+        return FTPResponse.parse(singleLine);
+    }
+
+    @Benchmark
+    public FTPResponse multiLine() {
+        return FTPResponse.parse(multiLine);
+    }
+}
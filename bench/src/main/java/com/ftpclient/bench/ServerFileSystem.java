@@ -0,0 +1,59 @@
+package com.ftpclient.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Storage behind an {@link EmbeddedFtpServer}. Paths are absolute,
+ * normalized and '/'-separated ("/", "/a/b.txt"); the server resolves
+ * relative paths, "." and ".." before calling in.
+ */
+public interface ServerFileSystem {
+    /** The file or directory at {@code path}, or null if there is none. */
+    Entry stat(String path) throws IOException;
+
+    /** Children of directory {@code path}, sorted by name. */
+    List<Entry> list(String path) throws IOException;
+
+    /** Content of file {@code path} from byte {@code offset} on. */
+    InputStream read(String path, long offset) throws IOException;
+
+    /**
+     * Stream that writes file {@code path} from byte {@code offset}, cutting
+     * off anything after it; {@code append} writes from the current end.
+     * The file exists with its new content once the stream is closed.
+     */
+    OutputStream write(String path, long offset, boolean append) throws IOException;
+
+    /** Create directory {@code path}; false if it exists or its parent does not. */
+    boolean makeDirectory(String path) throws IOException;
+
+    /** Remove empty directory {@code path}; false if missing or not empty. */
+    boolean removeDirectory(String path) throws IOException;
+
+    /** Delete file {@code path}; false if it is missing or a directory. */
+    boolean delete(String path) throws IOException;
+
+    /** What the server knows about one file or directory. */
+    final class Entry {
+        private final String name;
+        private final boolean directory;
+        private final long size;
+        private final long modified;
+
+        public Entry(String name, boolean directory, long size, long modified) {
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        public String getName() { return name; }
+        public boolean isDirectory() { return directory; }
+        public long getSize() { return size; }
+        /** Last modification, epoch milliseconds. */
+        public long getModified() { return modified; }
+    }
+}
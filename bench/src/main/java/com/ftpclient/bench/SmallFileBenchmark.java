@@ -0,0 +1,104 @@
+package com.ftpclient.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ftpclient.ftp.FTPClient;
+
+/**
+ * Per-file cost of a queue of small files, where round trips rather than
+ * bandwidth set the pace. The {@link EmbeddedFtpServer} simulates a round
+ * trip of {@code rttMillis}; {@code gapMillis} is work the caller does
+ * between files (opening the next local file, say), included in the score.
+ * With {@code preopen} the next data connection is opened during that gap,
+ * so a transfer should cost about one round trip plus the gap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+@State(Scope.Benchmark)
+public class SmallFileBenchmark {
+    @Param({"0", "20"})
+    public long rttMillis;
+
+    @Param({"0", "20"})
+    public long gapMillis;
+
+    @Param({"false", "true"})
+    public boolean preopen;
+
+    @Param({"4096"})
+    public int fileSize;
+
+    private EmbeddedFtpServer server;
+    private FTPClient client;
+    private Path upload;
+    private Path download;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+
+        server = new EmbeddedFtpServer().start();
+        server.putFile("/small.bin", content);
+        server.setDiscardUploads(true);
+        server.setReplyLatencyMillis(rttMillis);
+
+        upload = Files.createTempFile("ftpbench-up", ".bin");
+        download = Files.createTempFile("ftpbench-down", ".bin");
+        Files.write(upload, content);
+
+        client = new FTPClient(server.getHost(), server.getPort());
+        client.connect();
+        if (!client.login("bench", "bench")) {
+            throw new IOException("Login to embedded server failed");
+        }
+        client.setPreopenDataConnections(preopen);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        client.disconnect();
+        server.close();
+        Files.deleteIfExists(upload);
+        Files.deleteIfExists(download);
+    }
+
+    @Benchmark
+    public boolean download() throws Exception {
+        pause();
+        return client.downloadFile("/small.bin", download.toString());
+    }
+
+    @Benchmark
+    public boolean upload() throws Exception {
+        pause();
+        return client.uploadFile(upload.toString(), "/small-upload.bin");
+    }
+
+    private void pause() throws InterruptedException {
+        if (gapMillis > 0) {
+            Thread.sleep(gapMillis);
+        }
+    }
+}
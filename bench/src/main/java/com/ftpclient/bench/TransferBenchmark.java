@@ -0,0 +1,99 @@
+package com.ftpclient.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ftpclient.ftp.FTPClient;
+import com.ftpclient.ftp.TransferMode;
+
+/**
+ * Download and upload of one file over loopback against the in-process
+ * {@link EmbeddedFtpServer}, through the pooled-buffer copy loop at
+ * several buffer sizes and through the channel path (transferTo for
+ * uploads; downloads use the buffer loop in both modes). A
+ * {@code bufferSize} of 0 lets the server's HostProfile size the buffer.
+ * Channel uploads have no buffer, so their results do not vary with
+ * {@code bufferSize}. Throughput is {@code fileSize} divided by the score.
+ *
+ * The local file lives in java.io.tmpdir; point it at a tmpfs
+ * (-Djava.io.tmpdir=/dev/shm, passed through -jvmArgsAppend) to keep the
+ * disk out of the numbers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+    @Param({"STREAM", "CHANNEL"})
+    public TransferMode mode;
+
+    @Param({"0", "4096", "65536", "1048576"})
+    public int bufferSize;
+
+    @Param({"67108864"})
+    public int fileSize;
+
+    private EmbeddedFtpServer server;
+    private FTPClient client;
+    private Path upload;
+    private Path download;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+
+        server = new EmbeddedFtpServer().start();
+        server.putFile("/payload.bin", content);
+        server.setDiscardUploads(true);
+
+        upload = Files.createTempFile("ftpbench-up", ".bin");
+        download = Files.createTempFile("ftpbench-down", ".bin");
+        Files.write(upload, content);
+
+        client = new FTPClient(server.getHost(), server.getPort());
+        client.connect();
+        if (!client.login("bench", "bench")) {
+            throw new IOException("Login to embedded server failed");
+        }
+        client.setTransferMode(mode);
+        client.setStreamBufferSize(bufferSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        client.disconnect();
+        server.close();
+        Files.deleteIfExists(upload);
+        Files.deleteIfExists(download);
+    }
+
+    @Benchmark
+    public boolean download() throws IOException {
+        return client.downloadFile("/payload.bin", download.toString());
+    }
+
+    @Benchmark
+    public boolean upload() throws IOException {
+        return client.uploadFile(upload.toString(), "/upload.bin");
+    }
+}
@@ -5,14 +5,19 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import com.ftpclient.gui.MainController;
+
 public class Main extends Application {
     
+    private MainController controller;
+    
     @Override
     public void start(Stage primaryStage) {
         try {
             // Load the FXML file
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/ftpclient/gui/MainScreen.fxml"));
             Scene scene = new Scene(loader.load());
+            controller = loader.getController();
             
             // Configure the primary stage
             primaryStage.setTitle("FTP Client");
@@ -29,6 +34,14 @@ public class Main extends Application {
         }
     }
     
+    @Override
+    public void stop() {
+        // Window closed or File -> Quit: stop transfers and background threads
+        if (controller != null) {
+            controller.shutdown();
+        }
+    }
+    
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,401 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking facade over a {@link FTPSessionPool}.
+ *
+ * Every operation borrows a session on a worker thread and returns a
+ * CompletableFuture, so callers can chain, combine and fan out operations.
+ * Cancelling a returned future (or letting it time out) aborts the session
+ * that is working on it, which unblocks any transfer in progress. Failed
+ * operations are retried as the pool's {@link RetryPolicy} allows.
+ */
+public class AsyncFTPClient implements AutoCloseable {
+    private final FTPSessionPool pool;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private volatile long defaultTimeoutMillis = 0;   // 0 = no timeout
+
+    /** Facade using {@link #newDefaultExecutor(int)}, sized for the pool. */
+    public AsyncFTPClient(FTPSessionPool pool) {
+        this(pool, newDefaultExecutor(pool.getMaxSize() * 2), true);
+    }
+
+    /** Facade using the caller's executor, which the caller also shuts down. */
+    public AsyncFTPClient(FTPSessionPool pool, ExecutorService executor) {
+        this(pool, executor, false);
+    }
+
+    private AsyncFTPClient(FTPSessionPool pool, ExecutorService executor, boolean ownsExecutor) {
+        this.pool = pool;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Connect, log in and build a pool around the first session.
+     * Completes exceptionally if the server is unreachable or login fails.
+     */
+    public static CompletableFuture<AsyncFTPClient> connect(String server, int port,
+                                                            String username, String password) {
+        ExecutorService executor = newDefaultExecutor(FTPSessionPool.DEFAULT_MAX_SIZE * 2);
+        CompletableFuture<AsyncFTPClient> connected = connect(server, port, username, password, executor, true);
+        connected.whenComplete((client, error) -> {
+            if (error != null) {
+                executor.shutdown();
+            }
+        });
+        return connected;
+    }
+
+    /**
+     * Like {@link #connect(String, int, String, String)}, but all work runs on
+     * the caller's executor, which the caller also shuts down.
+     */
+    public static CompletableFuture<AsyncFTPClient> connect(String server, int port, String username,
+                                                            String password, ExecutorService executor) {
+        return connect(server, port, username, password, executor, false);
+    }
+
+    private static CompletableFuture<AsyncFTPClient> connect(String server, int port, String username,
+                                                             String password, ExecutorService executor,
+                                                             boolean ownsExecutor) {
+        return CompletableFuture.supplyAsync(() -> {
+            FTPClient client = new FTPClient(server, port);
+            try {
+                client.connect();
+                if (!client.login(username, password)) {
+                    client.disconnect();
+                    throw new AsyncException(new IOException("Login failed"));
+                }
+                // Cache the home directory while we still have the session to ourselves
+                client.getWorkingDirectory();
+                return new AsyncFTPClient(new FTPSessionPool(client), executor, ownsExecutor);
+            } catch (IOException e) {
+                client.disconnect();
+                throw new AsyncException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Executor for FTP work: one virtual thread per task on JDK 21+,
+     * otherwise a pool of at most {@code maxThreads} daemon threads.
+     */
+    public static ExecutorService newDefaultExecutor(int maxThreads) {
+        try {
+            Method factory = java.util.concurrent.Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Older runtime: fall back to a bounded pool of platform threads
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threads = r -> {
+            Thread t = new Thread(r, "ftp-async-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        int size = Math.max(1, maxThreads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 30, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<>(), threads);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /** Default timeout applied to every new operation; 0 disables it. */
+    public void setDefaultTimeout(long timeout, TimeUnit unit) {
+        this.defaultTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    public FTPSessionPool getPool() {
+        return pool;
+    }
+
+    /** List {@code directory} (LIST). */
+    public CompletableFuture<List<String>> list(String directory) {
+        return submit(directory, FTPClient::listFiles);
+    }
+
+    /**
+     * List {@code directory} as typed entries (MLSD, or LIST as a fallback).
+     * A listing still in the pool's cache costs no round trip at all.
+     */
+    public CompletableFuture<List<RemoteEntry>> listEntries(String directory) {
+        List<RemoteEntry> cached = cachedListing(directory);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return submit(directory, FTPClient::listEntries);
+    }
+
+    /**
+     * Stream the entries of {@code directory} to {@code consumer} as they
+     * arrive; completes with the entry count. The consumer runs on a
+     * worker thread, even when the listing comes from the cache.
+     */
+    public CompletableFuture<Integer> listEntries(String directory, Consumer<RemoteEntry> consumer) {
+        List<RemoteEntry> cached = cachedListing(directory);
+        if (cached != null) {
+            return CompletableFuture.supplyAsync(() -> {
+                cached.forEach(consumer);
+                return cached.size();
+            }, executor);
+        }
+        return submit(directory, s -> s.listEntries(consumer));
+    }
+
+    /** Drop the cached listing of {@code directory} so the next listing asks the server. */
+    public void invalidateListing(String directory) {
+        RemoteListingCache cache = pool.getListingCache();
+        if (cache != null && directory != null) {
+            cache.invalidate(pool.getServer(), pool.getPort(), directory);
+        }
+    }
+
+    private List<RemoteEntry> cachedListing(String directory) {
+        RemoteListingCache cache = pool.getListingCache();
+        if (cache == null || directory == null) {
+            return null;
+        }
+        return cache.get(pool.getServer(), pool.getPort(), directory);
+    }
+
+    /** Change from {@code directory} to {@code target}; completes with the new absolute path, or null. */
+    public CompletableFuture<String> cwd(String directory, String target) {
+        return submit(directory, s -> s.changeDirectory(target) ? s.getWorkingDirectory() : null);
+    }
+
+    /** Download {@code remoteFile} (relative to {@code directory}) to {@code localFile}. */
+    public CompletableFuture<Boolean> download(String directory, String remoteFile, String localFile) {
+        return submit(directory, s -> s.downloadFile(remoteFile, localFile));
+    }
+
+    /**
+     * Download the tree below absolute path {@code remoteDir} into
+     * {@code localDir} (see {@link RecursiveDownloader}). Cancelling the
+     * future stops the walk; files already in flight still finish.
+     */
+    public CompletableFuture<TreeTransferProgress> downloadTree(String remoteDir, Path localDir,
+                                                                TreeTransferListener listener) {
+        RecursiveDownloader downloader = new RecursiveDownloader(pool);
+        return runBlocking(() -> downloader.download(remoteDir, localDir, listener), downloader::cancel);
+    }
+
+    /**
+     * Upload {@code localDir} and everything below it as absolute path
+     * {@code remoteDir} (see {@link RecursiveUploader}). Cancelling the
+     * future stops it; files already in flight still finish.
+     */
+    public CompletableFuture<TreeTransferProgress> uploadTree(Path localDir, String remoteDir,
+                                                              TreeTransferListener listener) {
+        RecursiveUploader uploader = new RecursiveUploader(pool);
+        return runBlocking(() -> uploader.upload(localDir, remoteDir, listener), uploader::cancel);
+    }
+
+    /**
+     * Work out what syncing {@code localDir} with absolute path
+     * {@code remoteDir} would change (see {@link SyncEngine#compare}).
+     */
+    public CompletableFuture<SyncEngine.ChangeSet> compareTrees(Path localDir, String remoteDir,
+                                                                SyncEngine.Direction direction) {
+        SyncEngine engine = new SyncEngine(pool);
+        return runBlocking(() -> engine.compare(localDir, remoteDir, direction), engine::cancel);
+    }
+
+    /**
+     * Apply a change set from {@link #compareTrees}, deleting extraneous
+     * destination files only if {@code deleteExtraneous} is set.
+     */
+    public CompletableFuture<TreeTransferProgress> applyChanges(SyncEngine.ChangeSet changes,
+                                                                boolean deleteExtraneous,
+                                                                TreeTransferListener listener) {
+        SyncEngine engine = new SyncEngine(pool);
+        engine.setDeleteExtraneous(deleteExtraneous);
+        return runBlocking(() -> engine.apply(changes, listener), engine::cancel);
+    }
+
+    /** Upload {@code localFile} as {@code remoteFile} (relative to {@code directory}). */
+    public CompletableFuture<Boolean> upload(String directory, String localFile, String remoteFile) {
+        return submit(directory, s -> s.uploadFile(localFile, remoteFile));
+    }
+
+    /** Create {@code name} inside {@code directory} (MKD). */
+    public CompletableFuture<Boolean> mkdir(String directory, String name) {
+        return submit(directory, s -> s.makeDirectory(name));
+    }
+
+    /** Delete file {@code name} inside {@code directory} (DELE). */
+    public CompletableFuture<Boolean> delete(String directory, String name) {
+        return submit(directory, s -> s.deleteFile(name));
+    }
+
+    /** Remove empty directory {@code name} inside {@code directory} (RMD). */
+    public CompletableFuture<Boolean> rmdir(String directory, String name) {
+        return submit(directory, s -> s.removeDirectory(name));
+    }
+
+    /** Run {@code action} with the default timeout; see {@link #submit(String, FTPSessionPool.SessionAction, long)}. */
+    public <T> CompletableFuture<T> submit(String directory, FTPSessionPool.SessionAction<T> action) {
+        return submit(directory, action, defaultTimeoutMillis);
+    }
+
+    /**
+     * Run {@code action} on a pooled session positioned in {@code directory}
+     * (null = wherever it is). The future fails with a TimeoutException after
+     * {@code timeoutMillis} (0 = never); on timeout or cancel the session is
+     * aborted and dropped from the pool. An action that fails (throws, or
+     * returns false or null) runs again as the pool's retry policy allows.
+     */
+    public <T> CompletableFuture<T> submit(String directory, FTPSessionPool.SessionAction<T> action,
+                                           long timeoutMillis) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<FTPClient> active = new AtomicReference<>();
+
+        Future<?> task = executor.submit(() -> {
+            RetryPolicy policy = pool.getRetryPolicy();
+            for (int attempt = 1; ; attempt++) {
+                if (result.isDone()) {
+                    return;
+                }
+                FTPClient session;
+                try {
+                    session = pool.borrow(directory);
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                active.set(session);
+                if (result.isDone()) {
+                    // Cancelled while we were waiting for a session
+                    pool.release(active.getAndSet(null));
+                    return;
+                }
+                try {
+                    session.clearLastReply();
+                    T value = action.run(session);
+                    boolean retry = !RetryPolicy.succeeded(value) && policy.shouldRetry(session, attempt);
+                    if (active.getAndSet(null) != null) {
+                        pool.release(session);
+                    }
+                    if (!retry) {
+                        result.complete(value);
+                        return;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // A cancelled operation aborts its session, which rules out a retry
+                    boolean retry = e instanceof IOException && !(e instanceof InterruptedIOException)
+                        && policy.shouldRetry(session, attempt);
+                    if (active.getAndSet(null) != null) {
+                        try {
+                            if (session.noop()) {
+                                pool.release(session);
+                            } else {
+                                pool.invalidate(session);
+                            }
+                        } catch (IOException | RuntimeException noopFailure) {
+                            pool.invalidate(session);
+                        }
+                    }
+                    if (!retry) {
+                        result.completeExceptionally(e);
+                        return;
+                    }
+                }
+                try {
+                    policy.pause(attempt);
+                } catch (InterruptedIOException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+            }
+        });
+
+        result.whenComplete((value, error) -> {
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                task.cancel(true);
+                FTPClient session = active.getAndSet(null);
+                if (session != null) {
+                    session.abort();
+                    pool.invalidate(session);
+                }
+            }
+        });
+
+        if (timeoutMillis > 0) {
+            result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    /**
+     * Run a blocking multi-session job on the executor. Cancelling the
+     * returned future calls {@code onCancel} so the job stops early.
+     */
+    private <T> CompletableFuture<T> runBlocking(BlockingJob<T> job, Runnable onCancel) {
+        CompletableFuture<T> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return job.run();
+            } catch (IOException e) {
+                throw new AsyncException(e);
+            }
+        }, executor);
+        result.whenComplete((value, error) -> {
+            if (error instanceof CancellationException) {
+                onCancel.run();
+            }
+        });
+        return result;
+    }
+
+    /** A job that blocks its thread and manages its own sessions. */
+    private interface BlockingJob<T> {
+        T run() throws IOException;
+    }
+
+    /** Strip CompletionException/ExecutionException wrappers from a failure. */
+    public static Throwable unwrap(Throwable error) {
+        Throwable t = error;
+        while ((t instanceof java.util.concurrent.CompletionException
+                || t instanceof java.util.concurrent.ExecutionException
+                || t instanceof AsyncException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    /** Close the pool and, if we created it, the executor. */
+    @Override
+    public void close() {
+        pool.close();
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Carries a checked exception out of a CompletableFuture stage. */
+    private static class AsyncException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        AsyncException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
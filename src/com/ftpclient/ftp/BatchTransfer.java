@@ -0,0 +1,481 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transfers a list of files (a manifest) over a pool of sessions, for
+ * batches of many small files where round trips rather than bandwidth
+ * set the pace.
+ *
+ * The files are sorted largest first and handed out in that order to a
+ * fixed set of workers. Each worker borrows one session for the whole
+ * batch instead of one per file, so TYPE and the data connection opened
+ * ahead of time carry over and the next transfer starts the moment the
+ * last one ends. Starting the large files first leaves the small ones to
+ * even out the end, so all sessions finish at about the same time.
+ *
+ * Missing parent directories are created first: on the server for an
+ * upload, locally for a download. A file that fails is retried as the
+ * pool's retry policy allows, then recorded and skipped. Every file gets
+ * an {@link Outcome}; they are all returned together in a {@link Result}.
+ */
+public class BatchTransfer {
+    /**
+     * Files smaller than this are not journaled: sending one again costs
+     * less than the two synced journal writes that would make it resumable.
+     */
+    static final long JOURNAL_MIN_SIZE = 8L * 1024 * 1024;
+
+    private final FTPSessionPool pool;
+    private final int parallelism;
+    private volatile boolean cancelled = false;
+
+    /** Batch using as many sessions at once as the pool allows. */
+    public BatchTransfer(FTPSessionPool pool) {
+        this(pool, pool.getMaxSize());
+    }
+
+    /**
+     * @param pool        sessions to transfer with
+     * @param parallelism number of files transferred at once
+     */
+    public BatchTransfer(FTPSessionPool pool, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.pool = pool;
+        this.parallelism = parallelism;
+    }
+
+    /** Upload every item, blocking until done. {@code listener} may be null. */
+    public Result upload(List<Item> items, TreeTransferListener listener) throws IOException {
+        return run(TransferJournal.Direction.UPLOAD, items, listener);
+    }
+
+    /**
+     * Download every item, blocking until done. Items of unknown size are
+     * looked up with one listing per remote directory, so that they can be
+     * sorted. {@code listener} may be null.
+     */
+    public Result download(List<Item> items, TreeTransferListener listener) throws IOException {
+        return run(TransferJournal.Direction.DOWNLOAD, items, listener);
+    }
+
+    /** Stop starting new files; files in flight finish. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    private Result run(TransferJournal.Direction direction, List<Item> items,
+                       TreeTransferListener listener) throws IOException {
+        long started = System.nanoTime();
+        TreeTransferProgress progress = new TreeTransferProgress();
+        List<Item> sized = new ArrayList<>(items.size());
+        for (Item item : items) {
+            if (!item.remotePath.startsWith("/")) {
+                throw new IllegalArgumentException("Remote path must be absolute: " + item.remotePath);
+            }
+            long size = item.size;
+            if (size < 0 && direction == TransferJournal.Direction.UPLOAD) {
+                size = Files.isRegularFile(item.localPath) ? Files.size(item.localPath) : -1;
+            }
+            sized.add(size == item.size ? item : new Item(item.localPath, item.remotePath, size));
+        }
+        List<Item> ordered = direction == TransferJournal.Direction.DOWNLOAD ? lookUpSizes(sized) : sized;
+        ordered.sort(Comparator.comparingLong((Item item) -> item.size).reversed());
+        for (Item item : ordered) {
+            progress.fileFound(item.size);
+        }
+        progress.scanFinished();
+        notify(listener, progress);
+
+        Outcome[] outcomes = new Outcome[ordered.size()];
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "ftp-batch-" + pool.getServer());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Set<String> missing = direction == TransferJournal.Direction.UPLOAD
+                ? makeRemoteDirectories(ordered, workers, progress, listener)
+                : makeLocalDirectories(ordered, progress);
+
+            AtomicInteger next = new AtomicInteger();
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < parallelism; i++) {
+                running.add(workers.submit(() ->
+                    work(direction, ordered, next, missing, outcomes, progress, listener)));
+            }
+            await(running);
+        } finally {
+            workers.shutdownNow();
+        }
+        if (cancelled) {
+            progress.cancelled();
+        }
+
+        List<Outcome> results = new ArrayList<>(outcomes.length);
+        for (int i = 0; i < outcomes.length; i++) {
+            results.add(outcomes[i] != null ? outcomes[i]
+                : new Outcome(ordered.get(i), false, 0, 0, new IOException("Cancelled")));
+        }
+        return new Result(results, progress, System.nanoTime() - started);
+    }
+
+    /**
+     * Worker loop: take the next file in size order and transfer it on
+     * the session this worker keeps for the whole batch.
+     */
+    private void work(TransferJournal.Direction direction, List<Item> items, AtomicInteger next,
+                      Set<String> missing, Outcome[] outcomes, TreeTransferProgress progress,
+                      TreeTransferListener listener) {
+        FTPClient session = null;
+        try {
+            int index;
+            while (!cancelled && (index = next.getAndIncrement()) < items.size()) {
+                Item item = items.get(index);
+                long start = System.nanoTime();
+                IOException failure = null;
+                boolean ok = false;
+                String parent = direction == TransferJournal.Direction.UPLOAD
+                    ? RemoteListingCache.parentOf(item.remotePath)
+                    : String.valueOf(item.localPath.toAbsolutePath().getParent());
+                if (missing.contains(parent)) {
+                    failure = new IOException("Parent directory could not be created");
+                } else {
+                    RetryPolicy policy = pool.getRetryPolicy();
+                    for (int attempt = 1; ; attempt++) {
+                        failure = null;
+                        try {
+                            if (session == null) {
+                                session = pool.borrow();
+                            }
+                            session.clearLastReply();
+                            ok = transfer(direction, session, item);
+                        } catch (IOException | RuntimeException e) {
+                            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                        }
+                        boolean retry = !ok && session != null && !(failure instanceof InterruptedIOException)
+                            && !cancelled && policy.shouldRetry(session, attempt);
+                        if (session != null && !session.isLoggedIn()) {
+                            pool.invalidate(session);
+                            session = null;
+                        }
+                        if (!retry) {
+                            break;
+                        }
+                        policy.pause(attempt);
+                    }
+                    if (!ok && failure == null) {
+                        FTPResponse reply = session != null ? session.getLastReply() : null;
+                        failure = new IOException("Server refused "
+                            + (direction == TransferJournal.Direction.UPLOAD ? "STOR" : "RETR")
+                            + (reply != null ? ". Response: " + reply : ""));
+                    }
+                }
+
+                long elapsed = System.nanoTime() - start;
+                if (ok) {
+                    long bytes = transferred(direction, item);
+                    outcomes[index] = new Outcome(item, true, bytes, elapsed, null);
+                    progress.fileDone(bytes);
+                } else {
+                    outcomes[index] = new Outcome(item, false, 0, elapsed, failure);
+                    progress.failed(item.remotePath, failure, true);
+                }
+                notify(listener, progress);
+            }
+        } catch (InterruptedIOException e) {
+            cancel();   // interrupted during a retry pause
+        } finally {
+            pool.release(session);
+        }
+    }
+
+    private boolean transfer(TransferJournal.Direction direction, FTPClient session,
+                             Item item) throws IOException {
+        // Borrowing applied the pool's journal; small files are not worth it
+        session.setTransferJournal(item.size >= JOURNAL_MIN_SIZE || item.size < 0
+            ? pool.getTransferJournal() : null);
+        if (direction == TransferJournal.Direction.UPLOAD) {
+            if (!Files.isRegularFile(item.localPath)) {
+                throw new IOException("No such local file: " + item.localPath);
+            }
+            return session.uploadFile(item.localPath.toString(), item.remotePath);
+        }
+        return session.downloadFile(item.remotePath, item.localPath.toString());
+    }
+
+    /** Size of a finished file, for the byte count. */
+    private static long transferred(TransferJournal.Direction direction, Item item) {
+        if (direction == TransferJournal.Direction.UPLOAD && item.size >= 0) {
+            return item.size;
+        }
+        try {
+            return Files.size(item.localPath);
+        } catch (IOException e) {
+            return Math.max(item.size, 0);
+        }
+    }
+
+    /**
+     * Fill in unknown sizes from one listing per remote directory. Items
+     * not found keep size -1; their download reports the error.
+     */
+    private List<Item> lookUpSizes(List<Item> items) {
+        Map<String, Map<String, Long>> listings = new HashMap<>();
+        List<Item> sized = new ArrayList<>(items.size());
+        for (Item item : items) {
+            if (item.size >= 0 || cancelled) {
+                sized.add(item);
+                continue;
+            }
+            String dir = RemoteListingCache.parentOf(item.remotePath);
+            Map<String, Long> sizes = listings.computeIfAbsent(dir, d -> {
+                Map<String, Long> found = new HashMap<>();
+                try {
+                    for (RemoteEntry entry : pool.execute(d, FTPClient::listEntries)) {
+                        if (!entry.isDirectory()) {
+                            found.put(entry.getName(), entry.getSize());
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Unsorted is still correct, only slower to finish
+                }
+                return found;
+            });
+            Long size = sizes.get(RemoteListingCache.nameOf(item.remotePath));
+            sized.add(size == null ? item : new Item(item.localPath, item.remotePath, size));
+        }
+        return sized;
+    }
+
+    /**
+     * Create the remote parents of every item, ancestors first. Returns the
+     * directories that do not exist afterwards.
+     */
+    private Set<String> makeRemoteDirectories(List<Item> items, ExecutorService workers,
+                                              TreeTransferProgress progress,
+                                              TreeTransferListener listener) throws IOException {
+        Set<String> directories = new LinkedHashSet<>();
+        for (Item item : items) {
+            for (String dir = RemoteListingCache.parentOf(item.remotePath);
+                 !dir.equals("/") && directories.add(dir);
+                 dir = RemoteListingCache.parentOf(dir)) {
+                // every ancestor once
+            }
+        }
+        RecursiveUploader uploader = new RecursiveUploader(pool, parallelism);
+        return uploader.makeDirectories(directories, workers, progress, listener);
+    }
+
+    /** Create the local parents of every item. Returns those that could not be created. */
+    private Set<String> makeLocalDirectories(List<Item> items, TreeTransferProgress progress) {
+        Set<String> missing = new LinkedHashSet<>();
+        Set<Path> made = new LinkedHashSet<>();
+        for (Item item : items) {
+            Path parent = item.localPath.toAbsolutePath().getParent();
+            if (parent == null || !made.add(parent)) {
+                continue;
+            }
+            try {
+                Files.createDirectories(parent);
+            } catch (IOException e) {
+                progress.failed(parent.toString(), e, false);
+                missing.add(parent.toString());
+            }
+        }
+        return missing;
+    }
+
+    /** Wait for every worker; an interrupt cancels whatever has not started. */
+    private void await(List<Future<?>> tasks) throws IOException {
+        try {
+            for (Future<?> f : tasks) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } catch (ExecutionException e) {
+            throw new IOException("Batch worker failed", e.getCause());
+        }
+    }
+
+    private static void notify(TreeTransferListener listener, TreeTransferProgress progress) {
+        if (listener != null) {
+            listener.progressed(progress);
+        }
+    }
+
+    /**
+     * Read a manifest: one file per line, local and remote path separated
+     * by a tab. A line with a single path names the local file for an
+     * upload (stored under its file name in {@code remoteDir}) or the
+     * remote file for a download (saved under its name in {@code localDir}).
+     * Relative remote paths are taken from {@code remoteDir}. Blank lines
+     * and lines starting with # are skipped.
+     */
+    public static List<Item> readManifest(Path manifest, TransferJournal.Direction direction,
+                                          Path localDir, String remoteDir) throws IOException {
+        List<Item> items = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            if (line.trim().isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            String local;
+            String remote;
+            if (fields.length == 1) {
+                String path = fields[0].trim();
+                if (direction == TransferJournal.Direction.UPLOAD) {
+                    // A local path in the platform's own syntax (backslashes on Windows)
+                    Path name = Paths.get(path).getFileName();
+                    if (name == null) {
+                        throw new IOException(manifest + ":" + lineNumber + ": no file name in " + path);
+                    }
+                    local = path;
+                    remote = name.toString();
+                } else {
+                    local = path.substring(path.lastIndexOf('/') + 1);   // resolved against localDir below
+                    remote = path;
+                }
+            } else if (fields.length == 2) {
+                local = fields[0].trim();
+                remote = fields[1].trim();
+            } else {
+                throw new IOException(manifest + ":" + lineNumber + ": expected <local>[TAB<remote>]");
+            }
+            if (!remote.startsWith("/")) {
+                remote = RecursiveDownloader.child(remoteDir, remote);
+            }
+            items.add(new Item(localDir.resolve(local), remote, -1));
+        }
+        return items;
+    }
+
+    /** One file of a batch. */
+    public static final class Item {
+        private final Path localPath;
+        private final String remotePath;
+        private final long size;
+
+        /**
+         * @param localPath  file to upload, or where to save a download
+         * @param remotePath absolute remote path
+         * @param size       bytes, or -1 to look it up
+         */
+        public Item(Path localPath, String remotePath, long size) {
+            this.localPath = localPath;
+            this.remotePath = remotePath;
+            this.size = size;
+        }
+
+        public Path getLocalPath() { return localPath; }
+        public String getRemotePath() { return remotePath; }
+        public long getSize() { return size; }
+
+        @Override
+        public String toString() {
+            return localPath + " <-> " + remotePath;
+        }
+    }
+
+    /** How one file of a batch went. */
+    public static final class Outcome {
+        private final Item item;
+        private final boolean ok;
+        private final long bytes;
+        private final long nanos;
+        private final Exception error;
+
+        Outcome(Item item, boolean ok, long bytes, long nanos, Exception error) {
+            this.item = item;
+            this.ok = ok;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        public Item getItem() { return item; }
+        public boolean isOk() { return ok; }
+        /** Bytes transferred; 0 for a failed file. */
+        public long getBytes() { return bytes; }
+        /** Time spent on the file, retries included. */
+        public long getNanos() { return nanos; }
+        /** Why the file failed, or null. */
+        public Exception getError() { return error; }
+
+        @Override
+        public String toString() {
+            return item.remotePath + (ok ? ": " + bytes + " bytes" : ": " + error.getMessage());
+        }
+    }
+
+    /** Outcomes of a whole batch, in the order the files were started. */
+    public static final class Result {
+        private final List<Outcome> outcomes;
+        private final TreeTransferProgress progress;
+        private final long elapsedNanos;
+
+        Result(List<Outcome> outcomes, TreeTransferProgress progress, long elapsedNanos) {
+            this.outcomes = Collections.unmodifiableList(outcomes);
+            this.progress = progress;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<Outcome> getOutcomes() { return outcomes; }
+        public TreeTransferProgress getProgress() { return progress; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        /** Files that did not make it, with their errors. */
+        public List<Outcome> getFailed() {
+            List<Outcome> failed = new ArrayList<>();
+            for (Outcome outcome : outcomes) {
+                if (!outcome.ok) {
+                    failed.add(outcome);
+                }
+            }
+            return failed;
+        }
+
+        /** Bytes moved per second over the whole batch. */
+        public double getBytesPerSecond() {
+            return elapsedNanos > 0 ? progress.getBytesDone() * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s in %.1f s (%.0f KB/s)",
+                progress, elapsedNanos / 1e9, getBytesPerSecond() / 1024);
+        }
+    }
+}
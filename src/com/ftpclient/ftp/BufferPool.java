@@ -0,0 +1,307 @@
+package com.ftpclient.ftp;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Direct ByteBuffers shared by every data transfer in the process.
+ *
+ * Buffers come in power-of-two size classes from {@value #MIN_BUFFER_SIZE}
+ * to {@value #MAX_BUFFER_SIZE} bytes; a request is rounded up to its class
+ * and served from that class's free list, so once every class in use has
+ * been allocated, transfers allocate nothing. Direct memory lets channel
+ * reads and writes go straight between the kernel and the buffer, with
+ * no heap array and no temporary copy.
+ *
+ * The direct memory the pool holds, leased or free, never exceeds
+ * {@link #getMaxBytes()}. At the limit a request is served by a smaller
+ * free buffer if there is one (the copy loops work with any size), and
+ * otherwise by a heap buffer that is dropped on release and counted as an
+ * overflow. Raising the limit makes overflows go away.
+ *
+ * Every {@link #acquire} must be paired with a {@link #release}, in a
+ * finally block. With debug on ({@code -Dftpclient.bufferpool.debug=true}
+ * or {@link #setDebug}) the pool remembers where each leased buffer was
+ * taken, reports buffers that are out longer than expected with
+ * {@link #leaks(long)}, and throws on releasing a buffer twice. The
+ * shared instance registers itself over JMX as
+ * {@value #OBJECT_NAME}.
+ */
+public class BufferPool implements BufferPoolMXBean {
+    public static final String OBJECT_NAME = "com.ftpclient:type=BufferPool";
+    public static final int MIN_BUFFER_SIZE = 8 * 1024;
+    public static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    /** Default limit: a full-size buffer for each of 64 transfers. */
+    public static final long DEFAULT_MAX_BYTES = 64L * MAX_BUFFER_SIZE;
+    /** Leases older than this count as leaks in {@link #getLeaks()}. */
+    private static final long LEAK_REPORT_MILLIS = 60_000;
+
+    private static final int CLASSES =
+        Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE) + 1;
+    private static final BufferPool GLOBAL =
+        new BufferPool(DEFAULT_MAX_BYTES, Boolean.getBoolean("ftpclient.bufferpool.debug"));
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(GLOBAL, new ObjectName(OBJECT_NAME));
+        } catch (JMException | RuntimeException e) {
+            // The pool still works, its numbers are just not visible over JMX
+            System.err.println("Buffer pool not registered with JMX: " + e.getMessage());
+        }
+    }
+
+    private final List<ConcurrentLinkedQueue<ByteBuffer>> free = new ArrayList<>(CLASSES);
+    private final AtomicLong allocatedBytes = new AtomicLong();   // direct memory held, leased or free
+    private final AtomicLong leasedBytes = new AtomicLong();
+    private final AtomicLong peakLeasedBytes = new AtomicLong();
+    private final LongAdder acquires = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final Map<ByteBuffer, Lease> leases =
+        Collections.synchronizedMap(new IdentityHashMap<>());   // debug only
+    private volatile long maxBytes;
+    private volatile boolean debug;
+
+    /**
+     * @param maxBytes most direct memory the pool holds at once
+     * @param debug    track leases to find leaks and double releases
+     */
+    public BufferPool(long maxBytes, boolean debug) {
+        for (int i = 0; i < CLASSES; i++) {
+            free.add(new ConcurrentLinkedQueue<>());
+        }
+        setMaxBytes(maxBytes);
+        this.debug = debug;
+    }
+
+    /** Pool shared by every transfer in this process. */
+    public static BufferPool global() {
+        return GLOBAL;
+    }
+
+    /**
+     * A cleared buffer of at least {@code size} bytes (at most
+     * {@value #MAX_BUFFER_SIZE}), or a smaller one when the pool is at its
+     * limit. Give it back with {@link #release}.
+     */
+    public ByteBuffer acquire(int size) {
+        acquires.increment();
+        int sizeClass = classOf(size);
+        ByteBuffer buffer = free.get(sizeClass).poll();
+        if (buffer != null) {
+            reused.increment();
+        } else if (reserve(classSize(sizeClass))) {
+            allocations.increment();
+            buffer = ByteBuffer.allocateDirect(classSize(sizeClass));
+        } else {
+            for (int smaller = sizeClass - 1; smaller >= 0 && buffer == null; smaller--) {
+                buffer = free.get(smaller).poll();
+            }
+            if (buffer != null) {
+                reused.increment();
+            } else {
+                overflows.increment();
+                buffer = ByteBuffer.allocate(classSize(sizeClass));
+            }
+        }
+        if (buffer.isDirect()) {
+            long leased = leasedBytes.addAndGet(buffer.capacity());
+            peakLeasedBytes.accumulateAndGet(leased, Math::max);
+        }
+        if (debug) {
+            leases.put(buffer, new Lease(buffer.capacity()));
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /** Return a buffer from {@link #acquire}; it must not be used afterwards. Null is ignored. */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        if (debug && leases.remove(buffer) == null && isFree(buffer)) {
+            throw new IllegalStateException("Buffer released twice: " + buffer);
+        }
+        if (!buffer.isDirect()) {
+            return;   // an overflow buffer; the garbage collector takes it
+        }
+        leasedBytes.addAndGet(-buffer.capacity());
+        if (allocatedBytes.get() > maxBytes) {
+            // The limit was lowered; shrink by letting this one go
+            allocatedBytes.addAndGet(-buffer.capacity());
+            return;
+        }
+        free.get(classOf(buffer.capacity())).offer(buffer);
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        if (maxBytes < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Pool limit must be at least " + MIN_BUFFER_SIZE + " bytes");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** Turn lease tracking on or off; buffers leased before the change are not tracked. */
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+        if (!debug) {
+            leases.clear();
+        }
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    /**
+     * In debug mode, buffers leased more than {@code olderThanMillis} ago
+     * and not released, each with the stack that took it. Empty otherwise.
+     */
+    public List<Throwable> leaks(long olderThanMillis) {
+        long cutoff = System.nanoTime() - olderThanMillis * 1_000_000;
+        List<Throwable> found = new ArrayList<>();
+        synchronized (leases) {
+            for (Lease lease : leases.values()) {
+                if (lease.takenAt - cutoff <= 0) {
+                    found.add(lease.origin);
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    @Override
+    public long getLeasedBytes() {
+        return leasedBytes.get();
+    }
+
+    @Override
+    public long getPeakLeasedBytes() {
+        return peakLeasedBytes.get();
+    }
+
+    @Override
+    public long getAcquires() {
+        return acquires.sum();
+    }
+
+    @Override
+    public long getReused() {
+        return reused.sum();
+    }
+
+    @Override
+    public long getAllocations() {
+        return allocations.sum();
+    }
+
+    @Override
+    public long getOverflows() {
+        return overflows.sum();
+    }
+
+    @Override
+    public int getLeaks() {
+        return leaks(LEAK_REPORT_MILLIS).size();
+    }
+
+    @Override
+    public void trim() {
+        for (ConcurrentLinkedQueue<ByteBuffer> list : free) {
+            ByteBuffer buffer;
+            while ((buffer = list.poll()) != null) {
+                allocatedBytes.addAndGet(-buffer.capacity());
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        peakLeasedBytes.set(leasedBytes.get());
+        acquires.reset();
+        reused.reset();
+        allocations.reset();
+        overflows.reset();
+    }
+
+    /** Whether {@code buffer} sits in a free list; linear, for debug checks only. */
+    private boolean isFree(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return false;
+        }
+        for (ByteBuffer candidate : free.get(classOf(buffer.capacity()))) {
+            if (candidate == buffer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Take {@code bytes} of the budget, or return false if that would pass the limit. */
+    private boolean reserve(int bytes) {
+        while (true) {
+            long current = allocatedBytes.get();
+            if (current + bytes > maxBytes) {
+                return false;
+            }
+            if (allocatedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /** Smallest class holding {@code size} bytes; sizes beyond the largest class get the largest. */
+    private static int classOf(int size) {
+        int rounded = size <= MIN_BUFFER_SIZE ? MIN_BUFFER_SIZE
+            : size >= MAX_BUFFER_SIZE ? MAX_BUFFER_SIZE
+            : Integer.highestOneBit(size - 1) << 1;
+        return Integer.numberOfTrailingZeros(rounded) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    }
+
+    private static int classSize(int sizeClass) {
+        return MIN_BUFFER_SIZE << sizeClass;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Buffers: %d KB held of %d KB, %d KB leased (peak %d KB), "
+                + "%d acquired, %d reused, %d allocated, %d overflowed%s",
+            getAllocatedBytes() / 1024, maxBytes / 1024, getLeasedBytes() / 1024,
+            getPeakLeasedBytes() / 1024, getAcquires(), getReused(), getAllocations(), getOverflows(),
+            debug ? ", " + getLeaks() + " leased over " + LEAK_REPORT_MILLIS / 1000 + " s" : "");
+    }
+
+    /** Where and when a buffer was leased, for leak reports. */
+    private static final class Lease {
+        private final long takenAt = System.nanoTime();
+        private final Throwable origin;
+
+        Lease(int capacity) {
+            origin = new Throwable("Buffer of " + capacity + " bytes leased by "
+                + Thread.currentThread().getName() + " and not released");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.ftpclient.ftp;
+
+/**
+ * JMX view of {@link BufferPool}, registered as {@value BufferPool#OBJECT_NAME}.
+ */
+public interface BufferPoolMXBean {
+    /** Most direct memory the pool holds at once. */
+    long getMaxBytes();
+
+    /** Direct memory held now, leased or free. */
+    long getAllocatedBytes();
+
+    /** Direct memory leased to transfers now. */
+    long getLeasedBytes();
+
+    long getPeakLeasedBytes();
+
+    long getAcquires();
+
+    /** Acquires served from a free list. */
+    long getReused();
+
+    /** Acquires that allocated a new direct buffer. */
+    long getAllocations();
+
+    /** Acquires served with a heap buffer because the pool was at its limit. */
+    long getOverflows();
+
+    /** In debug mode, buffers leased for over a minute; 0 otherwise. */
+    int getLeaks();
+
+    /** Drop the free buffers; the memory goes back once they are collected. */
+    void trim();
+
+    /** Clear the counters; the buffers stay. */
+    void reset();
+}
@@ -7,8 +7,10 @@
 package com.ftpclient.ftp;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CLI {
     public static void main(String[] args) {
@@ -33,6 +35,12 @@ public class CLI {
             }
             System.out.println("ok");
             System.out.println("Connected. Type 'help' for commands, 'quit' to exit.");
+            List<TransferJournal.Entry> interrupted = ftp.unfinished();
+            if (!interrupted.isEmpty()) {
+                System.out.println(interrupted.size()
+                    + " transfer(s) were interrupted last time. Type 'resume' to continue them"
+                    + " or 'discard' to forget them.");
+            }
 
             // 2) Interactive command loop
             while (true) {
@@ -52,7 +60,21 @@ public class CLI {
                         System.out.println("Commands:");
                         System.out.println("  list");
                         System.out.println("  get <remote> [<local>]");
+                        System.out.println("  pget <remote> [<local>] [<segments>]");
+                        System.out.println("  mget <remote-dir> [<local-dir>]");
                         System.out.println("  put <local> [<remote>]");
+                        System.out.println("  mput <local-dir> [<remote-dir>]");
+                        System.out.println("  putall <manifest>");
+                        System.out.println("  getall <manifest> [<local-dir>]");
+                        System.out.println("  sync <local-dir> <remote-dir> [up|down] [--delete] [--dry-run]");
+                        System.out.println("  mode [stream|channel]");
+                        System.out.println("  limit [global|host|transfer] [<KB/s>|off]");
+                        System.out.println("  retry [<attempts> [<initial-backoff-ms>]|off]");
+                        System.out.println("  preopen [on|off]");
+                        System.out.println("  buffers [auto|system|<socket-KB> [<copy-KB>]]");
+                        System.out.println("  stats [reset]");
+                        System.out.println("  resume");
+                        System.out.println("  discard [all|<n>]");
                         System.out.println("  quit");
                         break;
 
@@ -82,6 +104,137 @@ public class CLI {
                         }
                         break;
 
+                    case "pget":
+                        if (parts.length < 2) {
+                            System.err.println("Usage: pget <remote> [<local>] [<segments>]");
+                            break;
+                        }
+                        String segRemote = parts[1];
+                        String segLocal = (parts.length >= 3 ? parts[2] : segRemote);
+                        int segments = SegmentedDownloader.DEFAULT_SEGMENT_COUNT;
+                        if (parts.length >= 4) {
+                            try {
+                                segments = Integer.parseInt(parts[3]);
+                            } catch (NumberFormatException ex) {
+                                System.err.println("Invalid segment count: " + parts[3]);
+                                break;
+                            }
+                        }
+                        System.out.printf("Downloading %s → %s in %d segments… ",
+                                          segRemote, segLocal, segments);
+                        try {
+                            boolean ok = ftp.pget(segRemote, segLocal, segments);
+                            System.out.println(ok ? "succeeded" : "failed");
+                        } catch (IOException | IllegalArgumentException ex) {
+                            System.err.println("failed: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "mget":
+                        if (parts.length < 2) {
+                            System.err.println("Usage: mget <remote-dir> [<local-dir>]");
+                            break;
+                        }
+                        String treeRemote = parts[1];
+                        String treeLocal = (parts.length >= 3 ? parts[2] : treeRemote);
+                        System.out.printf("Downloading tree %s → %s%n", treeRemote, treeLocal);
+                        try {
+                            report(ftp.mget(treeRemote, treeLocal, progressPrinter()));
+                        } catch (IOException ex) {
+                            System.err.println("failed: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "mput":
+                        if (parts.length < 2) {
+                            System.err.println("Usage: mput <local-dir> [<remote-dir>]");
+                            break;
+                        }
+                        String treeSource = parts[1];
+                        String treeTarget = (parts.length >= 3 ? parts[2]
+                            : Paths.get(treeSource).toAbsolutePath().normalize()
+                                .getFileName().toString());
+                        System.out.printf("Uploading tree %s → %s%n", treeSource, treeTarget);
+                        try {
+                            report(ftp.mput(treeSource, treeTarget, progressPrinter()));
+                        } catch (IOException ex) {
+                            System.err.println("failed: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "putall":
+                        if (parts.length < 2) {
+                            System.err.println("Usage: putall <manifest>");
+                            break;
+                        }
+                        System.out.printf("Uploading files listed in %s%n", parts[1]);
+                        try {
+                            report(ftp.putAll(parts[1], progressPrinter()));
+                        } catch (IOException | IllegalArgumentException ex) {
+                            System.err.println("failed: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "getall":
+                        if (parts.length < 2) {
+                            System.err.println("Usage: getall <manifest> [<local-dir>]");
+                            break;
+                        }
+                        String batchLocal = (parts.length >= 3 ? parts[2] : ".");
+                        System.out.printf("Downloading files listed in %s → %s%n", parts[1], batchLocal);
+                        try {
+                            report(ftp.getAll(parts[1], batchLocal, progressPrinter()));
+                        } catch (IOException | IllegalArgumentException ex) {
+                            System.err.println("failed: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "sync":
+                        if (parts.length < 3) {
+                            System.err.println(
+                                "Usage: sync <local-dir> <remote-dir> [up|down] [--delete] [--dry-run]");
+                            break;
+                        }
+                        SyncEngine.Direction direction = SyncEngine.Direction.UPLOAD;
+                        boolean deleteExtraneous = false;
+                        boolean dryRun = false;
+                        boolean validOptions = true;
+                        for (int i = 3; i < parts.length; i++) {
+                            if ("up".equals(parts[i])) {
+                                direction = SyncEngine.Direction.UPLOAD;
+                            } else if ("down".equals(parts[i])) {
+                                direction = SyncEngine.Direction.DOWNLOAD;
+                            } else if ("--delete".equals(parts[i])) {
+                                deleteExtraneous = true;
+                            } else if ("--dry-run".equals(parts[i])) {
+                                dryRun = true;
+                            } else {
+                                System.err.println("Unknown sync option: " + parts[i]);
+                                validOptions = false;
+                            }
+                        }
+                        if (!validOptions) {
+                            break;
+                        }
+                        try {
+                            SyncEngine.ChangeSet changes = ftp.compare(parts[1], parts[2], direction);
+                            System.out.println("Changes: " + changes);
+                            if (dryRun) {
+                                changes.getAdded().forEach(c -> System.out.println("  " + c));
+                                changes.getModified().forEach(c -> System.out.println("  " + c));
+                                String kept = deleteExtraneous ? "" : " (kept, no --delete)";
+                                changes.getDeleted().forEach(c -> System.out.println("  " + c + kept));
+                                changes.getConflicts().forEach(c -> System.out.println("  " + c));
+                            } else if (changes.isEmpty()) {
+                                System.out.println("Already in sync.");
+                            } else {
+                                report(ftp.sync(changes, deleteExtraneous, progressPrinter()));
+                            }
+                        } catch (IOException ex) {
+                            System.err.println("failed: " + ex.getMessage());
+                        }
+                        break;
+
                     case "put":
                         if (parts.length < 2) {
                             System.err.println("Usage: put <local> [<remote>]");
@@ -129,6 +282,183 @@ public class CLI {
                         }
                         break;
 
+                    case "resume":
+                        try {
+                            List<TransferJournal.Entry> pending = ftp.unfinished();
+                            if (pending.isEmpty()) {
+                                System.out.println("Nothing to resume.");
+                            }
+                            for (TransferJournal.Entry entry : pending) {
+                                System.out.printf("Resuming %s… ", entry);
+                                try {
+                                    boolean ok = ftp.resume(entry);
+                                    System.out.println(ok ? "succeeded" : "failed");
+                                } catch (IOException ex) {
+                                    System.err.println("failed: " + ex.getMessage());
+                                }
+                            }
+                        } catch (IOException ex) {
+                            System.err.println("Error: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "discard":
+                        try {
+                            List<TransferJournal.Entry> pending = ftp.unfinished();
+                            if (pending.isEmpty()) {
+                                System.out.println("Nothing to discard.");
+                            } else if (parts.length < 2) {
+                                for (int i = 0; i < pending.size(); i++) {
+                                    System.out.printf("  %d) %s%n", i + 1, pending.get(i));
+                                }
+                                System.out.println("Usage: discard all|<n>");
+                            } else if ("all".equalsIgnoreCase(parts[1])) {
+                                for (TransferJournal.Entry entry : pending) {
+                                    ftp.discard(entry);
+                                }
+                                System.out.println("Discarded " + pending.size() + " transfer(s).");
+                            } else {
+                                int index = Integer.parseInt(parts[1]) - 1;
+                                if (index < 0 || index >= pending.size()) {
+                                    throw new IllegalArgumentException("No interrupted transfer " + parts[1]);
+                                }
+                                ftp.discard(pending.get(index));
+                                System.out.println("Discarded " + pending.get(index) + ".");
+                            }
+                        } catch (IllegalArgumentException ex) {
+                            System.err.println("Usage: discard [all|<n>]");
+                        } catch (IOException ex) {
+                            System.err.println("Error: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "mode":
+                        try {
+                            if (parts.length >= 2) {
+                                ftp.setTransferMode(TransferMode.fromName(parts[1]));
+                            }
+                            System.out.println("Transfer mode: "
+                                + ftp.getTransferMode().name().toLowerCase());
+                        } catch (IllegalArgumentException ex) {
+                            System.err.println("Usage: mode [stream|channel]");
+                        } catch (IOException ex) {
+                            System.err.println("Error: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "limit":
+                        try {
+                            if (parts.length >= 3) {
+                                long rate = "off".equalsIgnoreCase(parts[2])
+                                    ? 0 : Long.parseLong(parts[2]) * 1024;
+                                switch (parts[1].toLowerCase()) {
+                                    case "global":
+                                        RateLimiter.global().setRate(rate);
+                                        break;
+                                    case "host":
+                                        ftp.hostRateLimiter().setRate(rate);
+                                        break;
+                                    case "transfer":
+                                        ftp.setTransferRateLimit(rate);
+                                        break;
+                                    default:
+                                        throw new IllegalArgumentException(parts[1]);
+                                }
+                            } else if (parts.length == 2) {
+                                throw new IllegalArgumentException(parts[1]);
+                            }
+                            System.out.println("Global: " + RateLimiter.global()
+                                + ", host: " + ftp.hostRateLimiter()
+                                + ", per transfer: " + (ftp.getTransferRateLimit() == 0
+                                    ? "unlimited" : ftp.getTransferRateLimit() / 1024 + " KB/s"));
+                        } catch (IllegalArgumentException ex) {
+                            System.err.println("Usage: limit [global|host|transfer] [<KB/s>|off]");
+                        } catch (IOException ex) {
+                            System.err.println("Error: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "retry":
+                        try {
+                            if (parts.length >= 2) {
+                                RetryPolicy policy = "off".equalsIgnoreCase(parts[1])
+                                    ? RetryPolicy.NONE
+                                    : new RetryPolicy(Integer.parseInt(parts[1]),
+                                        parts.length >= 3 ? Long.parseLong(parts[2])
+                                                          : RetryPolicy.DEFAULT.getInitialBackoffMillis(),
+                                        RetryPolicy.DEFAULT.getMaxBackoffMillis());
+                                ftp.setRetryPolicy(policy);
+                            }
+                            System.out.println("Retry: " + ftp.getRetryPolicy());
+                        } catch (IllegalArgumentException ex) {
+                            System.err.println("Usage: retry [<attempts> [<initial-backoff-ms>]|off]");
+                        } catch (IOException ex) {
+                            System.err.println("Error: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "preopen":
+                        try {
+                            if (parts.length >= 2) {
+                                if (!"on".equalsIgnoreCase(parts[1]) && !"off".equalsIgnoreCase(parts[1])) {
+                                    throw new IllegalArgumentException(parts[1]);
+                                }
+                                ftp.setPreopenDataConnections("on".equalsIgnoreCase(parts[1]));
+                            }
+                            System.out.println("Pre-open data connections: "
+                                + (ftp.isPreopenDataConnections() ? "on" : "off"));
+                        } catch (IllegalArgumentException ex) {
+                            System.err.println("Usage: preopen [on|off]");
+                        } catch (IOException ex) {
+                            System.err.println("Error: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "buffers":
+                        try {
+                            HostProfile profile = ftp.hostProfile();
+                            if (parts.length >= 2) {
+                                switch (parts[1].toLowerCase()) {
+                                    case "auto":
+                                        profile.setSocketBufferSize(HostProfile.AUTOMATIC);
+                                        profile.setCopyBufferSize(HostProfile.AUTOMATIC);
+                                        break;
+                                    case "system":
+                                        profile.setSocketBufferSize(HostProfile.SYSTEM_DEFAULT);
+                                        break;
+                                    default:
+                                        profile.setSocketBufferSize(Integer.parseInt(parts[1]) * 1024);
+                                        if (parts.length >= 3) {
+                                            profile.setCopyBufferSize(Integer.parseInt(parts[2]) * 1024);
+                                        }
+                                }
+                            }
+                            System.out.println(profile);
+                        } catch (IllegalArgumentException ex) {
+                            System.err.println("Usage: buffers [auto|system|<socket-KB> [<copy-KB>]]");
+                        } catch (IOException ex) {
+                            System.err.println("Error: " + ex.getMessage());
+                        }
+                        break;
+
+                    case "stats":
+                        if (parts.length >= 2 && "reset".equalsIgnoreCase(parts[1])) {
+                            TransferMetrics.global().reset();
+                        }
+                        TransferMetrics.Snapshot snapshot = TransferMetrics.global().snapshot();
+                        System.out.println(snapshot);
+                        List<TransferMetrics.TransferStats> recent = snapshot.getRecentTransfers();
+                        if (!recent.isEmpty()) {
+                            System.out.println("Last transfer: " + recent.get(recent.size() - 1));
+                        }
+                        System.out.println(BufferPool.global());
+                        try {
+                            System.out.println("Link: " + ftp.hostProfile());
+                        } catch (IOException ex) {
+                            System.err.println("Error: " + ex.getMessage());
+                        }
+                        break;
+
                     default:
                         System.err.println("Unknown command: " + cmd);
                 }
@@ -143,4 +473,33 @@ public class CLI {
             sc.close();
         }
     }
-}
\ No newline at end of file
+
+    /** Listener printing tree transfer totals at most twice a second. */
+    private static TreeTransferListener progressPrinter() {
+        AtomicLong lastPrinted = new AtomicLong();
+        return p -> {
+            // Workers report every file; a few lines a second is plenty
+            long now = System.currentTimeMillis();
+            long last = lastPrinted.get();
+            if (now - last >= 500 && lastPrinted.compareAndSet(last, now)) {
+                System.out.println("  " + p);
+            }
+        };
+    }
+
+    /** Print the outcome of a tree transfer and every path that failed. */
+    private static void report(TreeTransferProgress done) {
+        System.out.println("  " + done);
+        for (TreeTransferProgress.Failure failure : done.getFailures()) {
+            System.err.println("  failed: " + failure);
+        }
+        System.out.println(done.isComplete() ? "succeeded" : "finished with errors");
+    }
+
+    /** Print the outcome of a batch, with its wall-clock time and throughput. */
+    private static void report(BatchTransfer.Result result) {
+        System.out.printf("  %.1f s, %.0f KB/s%n",
+            result.getElapsedNanos() / 1e9, result.getBytesPerSecond() / 1024);
+        report(result.getProgress());
+    }
+}
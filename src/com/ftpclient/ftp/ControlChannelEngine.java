@@ -0,0 +1,282 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives many FTP control connections from a few selector threads.
+ *
+ * Unlike FTPClient, which blocks a thread on each control socket, the
+ * engine keeps every connection non-blocking and parses replies as bytes
+ * arrive, so thousands of idle or lightly used sessions cost a selector
+ * key and a small parse buffer each rather than a thread. Sessions only
+ * carry control traffic; data transfers still go through FTPClient.
+ * Host names are looked up on a separate resolver thread, so neither the
+ * caller of {@link #open} nor a selector thread waits on DNS.
+ */
+public class ControlChannelEngine implements AutoCloseable {
+    /** Selector threads used by {@link #ControlChannelEngine()}. */
+    public static final int DEFAULT_THREADS =
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final SelectorLoop[] loops;
+    private final Charset charset;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final ExecutorService resolver = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ftp-control-resolver");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean closed = false;
+
+    public ControlChannelEngine() throws IOException {
+        this(DEFAULT_THREADS);
+    }
+
+    /** Start an engine with {@code threads} selector threads. */
+    public ControlChannelEngine(int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid thread count: " + threads);
+        }
+        this.charset = StandardCharsets.UTF_8;
+        this.loops = new SelectorLoop[threads];
+        try {
+            for (int i = 0; i < threads; i++) {
+                loops[i] = new SelectorLoop(this, "ftp-control-" + (i + 1));
+            }
+        } catch (IOException e) {
+            for (SelectorLoop loop : loops) {
+                if (loop != null) {
+                    loop.selector.close();
+                }
+            }
+            throw e;
+        }
+        for (SelectorLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * Open a control connection. Completes once the server's 220 greeting
+     * has arrived, or exceptionally if the connection or greeting fails.
+     */
+    public CompletableFuture<ControlSession> open(String server, int port) {
+        CompletableFuture<ControlSession> opened = new CompletableFuture<>();
+        if (closed) {
+            opened.completeExceptionally(new IOException("Control engine is closed"));
+            return opened;
+        }
+        SelectorLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        SocketChannel channel = null;
+        ControlSession session;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+            }
+            opened.completeExceptionally(e);
+            return opened;
+        }
+
+        // From here on, session.fail() closes the channel and keeps the count right
+        session = new ControlSession(this, loop, channel, server, port, charset);
+        sessionCount.incrementAndGet();
+        session.greeting().whenComplete((welcome, error) -> {
+            if (error != null) {
+                opened.completeExceptionally(error);
+            } else if (welcome.getCode() != 220) {
+                session.close();
+                opened.completeExceptionally(
+                    new IOException("Unable to connect. Response: " + welcome));
+            } else {
+                opened.complete(session);
+            }
+        });
+        try {
+            SocketChannel connecting = channel;
+            resolver.execute(() -> connect(session, connecting, loop, server, port));
+        } catch (RuntimeException e) {
+            session.fail(new IOException("Control engine is closed", e));
+        }
+        return opened;
+    }
+
+    /** Look up {@code server}, start connecting and hand the session to its selector thread. */
+    private static void connect(ControlSession session, SocketChannel channel, SelectorLoop loop,
+                                String server, int port) {
+        try {
+            InetSocketAddress address = new InetSocketAddress(server, port);
+            if (address.isUnresolved()) {
+                throw new UnknownHostException(server);
+            }
+            boolean connected = channel.connect(address);
+            loop.execute(() -> session.register(loop.selector,
+                connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT));
+        } catch (IOException | RuntimeException e) {
+            session.fail(e instanceof IOException ? (IOException) e : new IOException(e));
+        }
+    }
+
+    /**
+     * Open a control connection and log in. Completes exceptionally with
+     * "Login failed" if the server rejects the credentials.
+     */
+    public CompletableFuture<ControlSession> open(String server, int port,
+                                                  String username, String password) {
+        return open(server, port).thenCompose(session -> session.login(username, password)
+            .handle((loggedIn, error) -> {
+                if (error == null && loggedIn) {
+                    return session;
+                }
+                session.close();
+                if (error != null) {
+                    throw new CompletionException(error);
+                }
+                throw new CompletionException(new IOException("Login failed"));
+            }));
+    }
+
+    /** Number of control connections currently open or opening. */
+    public int getSessionCount() {
+        return sessionCount.get();
+    }
+
+    public int getThreadCount() {
+        return loops.length;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Close every session and stop the selector threads. */
+    @Override
+    public void close() {
+        closed = true;
+        resolver.shutdown();
+        for (SelectorLoop loop : loops) {
+            if (loop != null) {
+                loop.selector.wakeup();
+            }
+        }
+    }
+
+    void sessionClosed() {
+        sessionCount.decrementAndGet();
+    }
+
+    /** One selector thread and the sessions registered with it. */
+    static final class SelectorLoop implements Runnable {
+        private final ControlChannelEngine engine;
+        final Selector selector;
+        final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // Shared by all sessions on this loop; each read is parsed before the next
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        SelectorLoop(ControlChannelEngine engine, String name) throws IOException {
+            this.engine = engine;
+            this.selector = Selector.open();
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        /** Run {@code task} on the selector thread. */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+            if (engine.closed && !thread.isAlive()) {
+                // Loop already exited; run here so the task can fail its session
+                runTasks();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!engine.closed) {
+                    selector.select();
+                    runTasks();
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        handle(key);
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                // Selector is gone; fall through and fail whatever is left
+            } finally {
+                shutdown();
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            ControlSession session = (ControlSession) key.attachment();
+            try {
+                if (key.isValid() && key.isConnectable()) {
+                    session.onConnectable();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    readBuffer.clear();
+                    session.onReadable(readBuffer);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    session.onWritable();
+                }
+            } catch (IOException | RuntimeException e) {
+                session.fail(e instanceof IOException ? (IOException) e : new IOException(e));
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        private void shutdown() {
+            IOException closing = new IOException("Control engine is closed");
+            runTasks();
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    ((ControlSession) key.attachment()).fail(closing);
+                }
+                selector.close();
+            } catch (IOException | ClosedSelectorException ignored) {
+                // Nothing more to release
+            }
+            // Sessions whose registration never ran
+            runTasks();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * One non-blocking control connection owned by a {@link ControlChannelEngine}.
+ *
+ * {@link #send(String)} may be called from any thread and does not wait:
+ * the command is queued for the selector thread and its future completes
+ * when the final reply arrives. Commands may be pipelined; replies are
+ * matched to commands in order. Callbacks chained without an executor run
+ * on the selector thread and must not block.
+ */
+public class ControlSession implements AutoCloseable {
+    private final ControlChannelEngine engine;
+    private final ControlChannelEngine.SelectorLoop loop;
+    private final SocketChannel channel;
+    private final String server;
+    private final int port;
+    private final Charset charset;
+    private final ReplyParser parser;
+    private final CompletableFuture<FTPResponse> greeting = new CompletableFuture<>();
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+    // Guarded by this: commands awaiting replies, and bytes not yet written
+    private final Deque<PendingCommand> pending = new ArrayDeque<>();
+    private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+    private boolean open = true;
+
+    private volatile SelectionKey key;    // set on the selector thread
+
+    ControlSession(ControlChannelEngine engine, ControlChannelEngine.SelectorLoop loop,
+                   SocketChannel channel, String server, int port, Charset charset) {
+        this.engine = engine;
+        this.loop = loop;
+        this.channel = channel;
+        this.server = server;
+        this.port = port;
+        this.charset = charset;
+        this.parser = new ReplyParser(charset);
+        // The greeting is the reply to connecting
+        pending.add(new PendingCommand(greeting, null));
+    }
+
+    /** Send {@code command}; completes with its final (non-1xx) reply. */
+    public CompletableFuture<FTPResponse> send(String command) {
+        return send(command, null);
+    }
+
+    /**
+     * Send {@code command}; 1xx replies go to {@code onPreliminary} (may be
+     * null) and the future completes with the final reply.
+     */
+    public CompletableFuture<FTPResponse> send(String command, Consumer<FTPResponse> onPreliminary) {
+        CompletableFuture<FTPResponse> reply = new CompletableFuture<>();
+        if (command.indexOf('\r') >= 0 || command.indexOf('\n') >= 0) {
+            reply.completeExceptionally(
+                new IllegalArgumentException("Line break in FTP command: " + command));
+            return reply;
+        }
+        ByteBuffer bytes = charset.encode(command + "\r\n");
+        boolean firstInQueue;
+        synchronized (this) {
+            if (!open) {
+                reply.completeExceptionally(new IOException("Control connection is closed"));
+                return reply;
+            }
+            pending.add(new PendingCommand(reply, onPreliminary));
+            outbound.add(bytes);
+            firstInQueue = outbound.size() == 1;
+        }
+        if (firstInQueue) {
+            loop.execute(this::wantWrite);
+        }
+        return reply;
+    }
+
+    /** USER/PASS; completes with true once logged in, false if refused. */
+    public CompletableFuture<Boolean> login(String username, String password) {
+        return send("USER " + username).thenCompose(userResp -> {
+            if (userResp.getCode() == 230) {
+                return CompletableFuture.completedFuture(true);
+            }
+            if (userResp.getCode() != 331) {
+                return CompletableFuture.completedFuture(false);
+            }
+            return send("PASS " + password).thenApply(passResp -> passResp.getCode() == 230);
+        });
+    }
+
+    /** NOOP; completes with true if the server answered 200. */
+    public CompletableFuture<Boolean> noop() {
+        return send("NOOP").thenApply(resp -> resp.getCode() == 200);
+    }
+
+    /** Send QUIT and close the connection once the server has answered. */
+    public CompletableFuture<Void> quit() {
+        send("QUIT").whenComplete((resp, error) -> close());
+        return closed;
+    }
+
+    /** Close the connection now; commands still waiting fail. */
+    @Override
+    public void close() {
+        fail(new IOException("Control connection is closed"));
+    }
+
+    /** Completes when the connection has been closed, for whatever reason. */
+    public CompletableFuture<Void> closeFuture() {
+        return closed;
+    }
+
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    /** Commands sent whose final reply has not arrived yet. */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    CompletableFuture<FTPResponse> greeting() {
+        return greeting;
+    }
+
+    // ---- selector thread ----
+
+    void register(Selector selector, int ops) {
+        try {
+            if (!isOpen()) {
+                return;
+            }
+            key = channel.register(selector, ops, this);
+            if (ops == SelectionKey.OP_READ) {
+                wantWrite();
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e instanceof IOException ? (IOException) e : new IOException(e));
+        }
+    }
+
+    void onConnectable() throws IOException {
+        if (channel.finishConnect()) {
+            key.interestOps(SelectionKey.OP_READ);
+            wantWrite();
+        }
+    }
+
+    void onReadable(ByteBuffer buffer) throws IOException {
+        int n = channel.read(buffer);
+        if (n < 0) {
+            fail(new IOException("Control connection closed by server"));
+            return;
+        }
+        buffer.flip();
+        for (FTPResponse reply : parser.feed(buffer)) {
+            dispatch(reply);
+        }
+    }
+
+    void onWritable() throws IOException {
+        synchronized (this) {
+            while (!outbound.isEmpty()) {
+                ByteBuffer head = outbound.peek();
+                channel.write(head);
+                if (head.hasRemaining()) {
+                    return;    // socket buffer full; wait for the next OP_WRITE
+                }
+                outbound.poll();
+            }
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /** Add OP_WRITE interest if there is something to write. */
+    private void wantWrite() {
+        if (key == null || !key.isValid() || (key.interestOps() & SelectionKey.OP_CONNECT) != 0) {
+            return;    // registration or connect completion will call again
+        }
+        synchronized (this) {
+            if (outbound.isEmpty()) {
+                return;
+            }
+        }
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void dispatch(FTPResponse reply) {
+        boolean isFinal = !reply.isPositivePreliminary();
+        PendingCommand command;
+        synchronized (this) {
+            command = isFinal ? pending.poll() : pending.peek();
+        }
+        if (command == null) {
+            // Unsolicited; 421 means the server is about to hang up
+            if (reply.getCode() == 421) {
+                fail(new IOException("Server closed control connection. Response: " + reply));
+            }
+        } else if (isFinal) {
+            command.reply.complete(reply);
+        } else if (command.onPreliminary != null) {
+            command.onPreliminary.accept(reply);
+        }
+    }
+
+    /** Close the channel and fail everything still waiting with {@code cause}. */
+    void fail(IOException cause) {
+        List<PendingCommand> waiting;
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            open = false;
+            waiting = new ArrayList<>(pending);
+            pending.clear();
+            outbound.clear();
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+        engine.sessionClosed();
+        for (PendingCommand command : waiting) {
+            command.reply.completeExceptionally(cause);
+        }
+        closed.complete(null);
+    }
+
+    /** A command waiting for its final reply. */
+    private static class PendingCommand {
+        final CompletableFuture<FTPResponse> reply;
+        final Consumer<FTPResponse> onPreliminary;
+
+        PendingCommand(CompletableFuture<FTPResponse> reply, Consumer<FTPResponse> onPreliminary) {
+            this.reply = reply;
+            this.onPreliminary = onPreliminary;
+        }
+    }
+}
@@ -1,12 +1,45 @@
 package com.ftpclient.ftp;
 
 import java.io.*;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import com.ftpclient.ftp.FTPResponse;
 
 public class FTPClient {
+    /** Bytes handed to one transferTo call in channel mode. */
+    private static final long CHANNEL_CHUNK_SIZE = 8L * 1024 * 1024;
+    /** Journal checkpoints are written at most once per this many bytes. */
+    private static final long CHECKPOINT_INTERVAL = 8L * 1024 * 1024;
+    /** Bytes read from a listing's data connection at a time. */
+    private static final int LISTING_BUFFER_SIZE = 8 * 1024;
+    /** Consecutive full reads after which an automatically sized copy buffer doubles. */
+    private static final int FULL_READS_TO_GROW = 8;
+    /** A data connection opened ahead of time is used only this soon after its PASV. */
+    private static final long PREOPEN_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
     private Socket commandSocket;
     private BufferedReader reader;
     private BufferedWriter writer;
@@ -14,8 +47,29 @@ public class FTPClient {
     private int port;
     private String username;
     private String password;
-    private boolean isConnected = false;
-    private boolean isLoggedIn = false;
+    private volatile boolean isConnected = false;
+    private volatile boolean isLoggedIn = false;
+    private volatile boolean aborted = false;    // abort() was called; not a failure to recover from
+    private volatile Closeable dataConnection;   // latest data connection, for abort()
+    private String workingDirectory;   // cached PWD, null until asked for
+    private String type;               // last TYPE the server accepted, null for its default
+    private FTPResponse lastReply;      // most recent reply on the control connection
+    private TransferMode transferMode = TransferMode.CHANNEL;
+    private int streamBufferSize = 0;  // 0: sized per transfer by the host profile
+    private HostProfile profile = new HostProfile();   // replaced by the server's on connect
+    private TransferJournal journal;   // optional, records in-flight transfers
+    private volatile TransferJournal.Entry journalEntry;   // entry of the latest transfer, or null
+    private Map<String, String> features;   // FEAT reply, null until asked for
+    private RemoteListingCache listingCache;   // optional, shared with other sessions
+    private RateLimiter rateLimiter = new RateLimiter();   // per-transfer limit, unlimited by default
+    private TransferListener transferListener;   // optional, told how downloads and uploads progress
+    private final ArrayDeque<PendingCommand> pending = new ArrayDeque<>();   // sent, first reply not read yet
+    private long passiveSentAt;        // System.nanoTime() of the last PASV
+    private boolean preopenDataConnections = false;
+    private boolean passiveInFlight;   // a PASV for the next transfer was sent, its reply not read yet
+    private long preopenRequestedAt;   // System.nanoTime() of that PASV
+    private volatile SocketChannel preopened;   // data connection for the next transfer, may still be connecting
+    private InetSocketAddress preopenedAddress;
 
     /** Default constructor (uses port 21). */
     public FTPClient() {
@@ -41,7 +95,9 @@ public class FTPClient {
             return true;
         }
         try {
+            profile = HostProfile.forHost(server, port);
             commandSocket = new Socket(server, port);
+            commandSocket.setTcpNoDelay(true);
             reader = new BufferedReader(
                 new InputStreamReader(commandSocket.getInputStream()));
             writer = new BufferedWriter(
@@ -86,37 +142,137 @@ public class FTPClient {
         if (!isLoggedIn) {
             throw new IOException("Not logged in");
         }
+        List<String> fileList = new ArrayList<>();
+        readListing("LIST", Charset.defaultCharset(), line -> fileList.add(line.toString()));
+        return fileList;
+    }
 
-        sendCommand("PASV");
-        FTPResponse pasv = readResponse();
-        if (pasv.getCode() != 227) {
-            throw new IOException("Could not enter passive mode. Response: " + pasv);
+    /**
+     * List the current directory as typed entries: MLSD when the server
+     * advertises MLST, otherwise LIST parsed line by line.
+     */
+    public List<RemoteEntry> listEntries() throws IOException {
+        List<RemoteEntry> entries = new ArrayList<>();
+        listEntries(entries::add);
+        return entries;
+    }
+
+    /**
+     * Like {@link #listEntries()}, but hands each entry to {@code consumer}
+     * as soon as its line arrives instead of collecting the listing first.
+     * Served from the listing cache, if one is set and holds the directory.
+     * Returns the number of entries delivered.
+     */
+    public int listEntries(Consumer<RemoteEntry> consumer) throws IOException {
+        if (!isLoggedIn) {
+            throw new IOException("Not logged in");
+        }
+        RemoteListingCache cache = listingCache;
+        String directory = null;
+        List<RemoteEntry> fetched = null;
+        Consumer<RemoteEntry> sink = consumer;
+        if (cache != null) {
+            directory = getWorkingDirectory();
+            List<RemoteEntry> cached = cache.get(server, port, directory);
+            if (cached != null) {
+                cached.forEach(consumer);
+                return cached.size();
+            }
+            // Keep a copy for the cache while streaming, up to the cache's limit
+            List<RemoteEntry> copy = new ArrayList<>();
+            fetched = copy;
+            sink = entry -> {
+                consumer.accept(entry);
+                if (copy.size() <= RemoteListingCache.MAX_CACHED_ENTRIES) {
+                    copy.add(entry);
+                }
+            };
         }
-        Socket dataSocket = createDataSocket(pasv);
 
-        sendCommand("LIST");
-        FTPResponse listStart = readResponse();
-        if (!listStart.isPositivePreliminary()) {
-            dataSocket.close();
-            throw new IOException(
-                "Could not start directory listing. Response: " + listStart);
+        int[] count = {0};
+        Consumer<RemoteEntry> target = sink;
+        if (hasFeature("MLST")) {
+            readListing("MLSD", StandardCharsets.UTF_8, line -> {
+                RemoteEntry entry = RemoteEntry.fromFacts(line.toString());
+                if (entry != null) {
+                    target.accept(entry);
+                    count[0]++;
+                }
+            });
+        } else {
+            ListParser parser = new ListParser();
+            readListing("LIST", Charset.defaultCharset(), line -> {
+                RemoteEntry entry = parser.parse(line);
+                if (entry != null) {
+                    target.accept(entry);
+                    count[0]++;
+                }
+            });
+        }
+        if (fetched != null) {
+            cache.put(server, port, directory, fetched);
         }
+        return count[0];
+    }
 
-        BufferedReader dataReader = new BufferedReader(
-            new InputStreamReader(dataSocket.getInputStream()));
-        List<String> fileList = new ArrayList<>();
-        String line;
-        while ((line = dataReader.readLine()) != null) {
-            fileList.add(line);
+    /**
+     * Facts for a single path (MLST). Returns null if the path does not
+     * exist or the server does not support MLST.
+     */
+    public RemoteEntry getEntry(String path) throws IOException {
+        if (!isLoggedIn) {
+            throw new IOException("Not logged in");
+        }
+        if (!hasFeature("MLST")) {
+            return null;
         }
-        dataReader.close();
-        dataSocket.close();
+        sendCommand("MLST " + path);
+        FTPResponse resp = readResponse();
+        if (resp.getCode() != 250) {
+            return null;
+        }
+        // 250- header, the fact line (meant to start with a space, not
+        // every server bothers), 250 trailer
+        List<String> lines = resp.getLines();
+        for (int i = 1; i < lines.size() - 1; i++) {
+            if (lines.get(i).indexOf('=') > 0) {
+                return RemoteEntry.fromFacts(lines.get(i));
+            }
+        }
+        return null;
+    }
 
-        FTPResponse listEnd = readResponse();
-        if (!listEnd.isPositiveCompletion()) {
-            throw new IOException("Error completing listing. Response: " + listEnd);
+    /**
+     * Extensions the server advertises in its FEAT reply, upper-cased,
+     * mapped to their parameters (e.g. "MLST" to "type*;size*;modify*;").
+     * Asked once per connection; empty if FEAT is not supported.
+     */
+    public Map<String, String> getFeatures() throws IOException {
+        if (features == null) {
+            Map<String, String> found = new LinkedHashMap<>();
+            sendCommand("FEAT");
+            FTPResponse resp = readResponse();
+            if (resp.getCode() == 211) {
+                List<String> lines = resp.getLines();
+                // First and last lines are the 211 header and trailer
+                for (int i = 1; i < lines.size() - 1; i++) {
+                    String line = lines.get(i).trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    int space = line.indexOf(' ');
+                    String name = (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+                    found.put(name, space < 0 ? "" : line.substring(space + 1).trim());
+                }
+            }
+            features = Collections.unmodifiableMap(found);
         }
-        return fileList;
+        return features;
+    }
+
+    /** Whether the server advertises {@code feature} in FEAT (case-insensitive). */
+    public boolean hasFeature(String feature) throws IOException {
+        return getFeatures().containsKey(feature.toUpperCase(Locale.ROOT));
     }
 
     /** Change working directory. */
@@ -126,7 +282,54 @@ public class FTPClient {
         }
         sendCommand("CWD " + directory);
         FTPResponse resp = readResponse();
-        return resp.getCode() == 250;
+        if (resp.getCode() == 250) {
+            workingDirectory = null;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Current remote working directory, cached until the next CWD so that
+     * callers can compare against it without a round-trip.
+     */
+    public String getWorkingDirectory() throws IOException {
+        if (workingDirectory == null) {
+            workingDirectory = printWorkingDirectory();
+        }
+        return workingDirectory;
+    }
+
+    /**
+     * Set the representation type (TYPE A, TYPE I); true if the server accepted it.
+     * Nothing is sent when the session is already in that type.
+     */
+    public boolean setType(String type) throws IOException {
+        if (type.equals(this.type)) {
+            return true;
+        }
+        sendCommand("TYPE " + type);
+        FTPResponse resp = readResponse();
+        if (resp.getCode() != 200) {
+            return false;
+        }
+        this.type = type;
+        return true;
+    }
+
+    /** Last type accepted through {@link #setType}, or null if none was set. */
+    public String getType() {
+        return type;
+    }
+
+    /** Send NOOP; true if the control connection answered normally. */
+    public boolean noop() throws IOException {
+        if (!isConnected) {
+            return false;
+        }
+        sendCommand("NOOP");
+        FTPResponse resp = readResponse();
+        return resp.isPositiveCompletion();
     }
 
     /** Make a new directory on the server. */
@@ -137,94 +340,843 @@ public class FTPClient {
         sendCommand("MKD " + dir);
         FTPResponse resp = readResponse();
         // 257 = “\"dirname\" created.” or any 2xx
-        return resp.getCode() == 257 || resp.isPositiveCompletion();
+        boolean created = resp.getCode() == 257 || resp.isPositiveCompletion();
+        if (created) {
+            listingChanged(dir);
+        }
+        return created;
     }
 
     /** Download a file from the server. */
     public boolean downloadFile(String remoteFile, String localFile) throws IOException {
+        journalEntry = null;
         if (!isLoggedIn) {
             throw new IOException("Not logged in");
         }
+        try (FileChannel file = FileChannel.open(Paths.get(localFile),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            JournalHook hook = journalHook(TransferJournal.Direction.DOWNLOAD,
+                                           remoteFile, localFile, file);
+            long received = retrieve(remoteFile, 0, file, Long.MAX_VALUE, hook, transferListener);
+            if (received < 0) {
+                return false;
+            }
+            finish(hook);
+            return true;
+        }
+    }
+
+    /**
+     * Continue a download from the end of the local file (REST + RETR).
+     * Starts over if the local file is larger than the remote one.
+     */
+    public boolean resumeDownload(String remoteFile, String localFile) throws IOException {
+        return resumeDownload(remoteFile, localFile, null);
+    }
 
-        sendCommand("TYPE I");
-        FTPResponse typeResp = readResponse();
-        if (typeResp.getCode() != 200) {
-            throw new IOException("Could not set binary mode. Response: " + typeResp);
+    private boolean resumeDownload(String remoteFile, String localFile,
+                                   TransferJournal.Entry entry) throws IOException {
+        journalEntry = null;
+        if (!isLoggedIn) {
+            throw new IOException("Not logged in");
         }
+        long remoteSize = getFileSize(remoteFile);
+        try (FileChannel file = FileChannel.open(Paths.get(localFile),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = file.size();
+            if (entry != null && entry.getConfirmedOffset() < offset) {
+                // Bytes past the last checkpoint may not have reached the disk before a crash
+                offset = Math.max(0, entry.getConfirmedOffset());
+                file.truncate(offset);
+            }
+            if (remoteSize >= 0 && offset > remoteSize) {
+                file.truncate(0);
+                offset = 0;
+            }
+            JournalHook hook = journalHook(TransferJournal.Direction.DOWNLOAD,
+                                           remoteFile, localFile, file);
+            if (hook != null) {
+                hook.entry = entry;
+            }
+            if (remoteSize >= 0 && offset == remoteSize) {
+                finish(hook);
+                return true;
+            }
+            long received = retrieve(remoteFile, offset, file, Long.MAX_VALUE, hook, transferListener);
+            if (received < 0) {
+                return false;
+            }
+            finish(hook);
+            return true;
+        }
+    }
 
-        sendCommand("PASV");
-        FTPResponse pasv = readResponse();
-        if (pasv.getCode() != 227) {
-            throw new IOException("Could not enter passive mode. Response: " + pasv);
+    /**
+     * Download a file over several parallel sessions, one byte range each.
+     * Falls back to a plain download when the file is too small to split.
+     */
+    public boolean downloadFileSegmented(String remoteFile, String localFile,
+                                         int segmentCount, long minSegmentSize) throws IOException {
+        SegmentedDownloader downloader =
+            new SegmentedDownloader(this, segmentCount, minSegmentSize);
+        return downloader.download(remoteFile, localFile);
+    }
+
+    /**
+     * Download {@code length} bytes starting at {@code offset} (REST + RETR)
+     * and write them into {@code target} at the same offset.
+     * Returns the number of bytes actually written. Not reported to the
+     * {@link TransferListener}, which follows whole files.
+     */
+    public long downloadRange(String remoteFile, FileChannel target,
+                              long offset, long length) throws IOException {
+        if (!isLoggedIn) {
+            throw new IOException("Not logged in");
         }
-        Socket dataSocket = createDataSocket(pasv);
+        long received = retrieve(remoteFile, offset, target, length, null, null);
+        if (received < 0) {
+            throw new IOException("Range download at offset " + offset + " was interrupted");
+        }
+        return received;
+    }
 
-        sendCommand("RETR " + remoteFile);
-        FTPResponse retr = readResponse();
-        if (!retr.isPositivePreliminary()) {
-            dataSocket.close();
-            throw new IOException("Could not start download. Response: " + retr);
+    /** Size of a remote file in bytes (SIZE), or -1 if the server cannot tell. */
+    public long getFileSize(String remoteFile) throws IOException {
+        if (!isLoggedIn) {
+            throw new IOException("Not logged in");
+        }
+        // SIZE is only meaningful in binary mode; both go out in one round trip
+        boolean sendType = !"I".equals(type);
+        if (sendType) {
+            queueCommand("TYPE I", true);
+        }
+        queueCommand("SIZE " + remoteFile, true);
+        flushCommands();
+        if (sendType && readResponse().getCode() == 200) {
+            type = "I";
+        }
+        FTPResponse resp = readResponse();
+        if (resp.getCode() != 213) {
+            return -1;
         }
+        try {
+            return Long.parseLong(resp.getMessage().trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 
-        try (BufferedInputStream dataIn = new BufferedInputStream(dataSocket.getInputStream());
-             BufferedOutputStream fileOut = new BufferedOutputStream(
-                 new FileOutputStream(localFile))) {
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = dataIn.read(buffer)) != -1) {
-                fileOut.write(buffer, 0, bytesRead);
-            }
-            fileOut.flush();
-        } finally {
-            dataSocket.close();
+    /**
+     * Last modification time of a remote file as epoch millis (MDTM), or
+     * -1 if the server cannot tell.
+     */
+    public long getModificationTime(String remoteFile) throws IOException {
+        if (!isLoggedIn) {
+            throw new IOException("Not logged in");
+        }
+        sendCommand("MDTM " + remoteFile);
+        FTPResponse resp = readResponse();
+        if (resp.getCode() != 213) {
+            return -1;
         }
+        return RemoteEntry.parseTimeVal(resp.getMessage().trim());
+    }
 
-        FTPResponse done = readResponse();
-        return done.isPositiveCompletion();
+    /** Current remote working directory (PWD). */
+    public String printWorkingDirectory() throws IOException {
+        if (!isLoggedIn) {
+            throw new IOException("Not logged in");
+        }
+        sendCommand("PWD");
+        FTPResponse resp = readResponse();
+        if (resp.getCode() != 257) {
+            throw new IOException("Could not get working directory. Response: " + resp);
+        }
+        // 257 "/path" is the current directory.
+        String msg = resp.getMessage();
+        int start = msg.indexOf('"'), end = msg.lastIndexOf('"');
+        if (start >= 0 && end > start) {
+            return msg.substring(start + 1, end).replace("\"\"", "\"");
+        }
+        return msg.trim();
+    }
+
+    /**
+     * Open another connection to the same server, logged in with the same
+     * credentials. Used for work that runs beside this control connection.
+     */
+    FTPClient openSiblingSession() throws IOException {
+        FTPClient sibling = new FTPClient(server, port);
+        sibling.setTransferMode(transferMode);
+        sibling.setRateLimiter(rateLimiter);   // segments of one transfer share its limit
+        sibling.connect();
+        if (!sibling.login(username, password)) {
+            sibling.disconnect();
+            throw new IOException("Login failed for additional session");
+        }
+        return sibling;
     }
 
     /** Upload a file to the server. */
     public boolean uploadFile(String localFile, String remoteFile) throws IOException {
+        journalEntry = null;
+        if (!isLoggedIn) {
+            throw new IOException("Not logged in");
+        }
+        try (FileChannel file = FileChannel.open(Paths.get(localFile), StandardOpenOption.READ)) {
+            JournalHook hook = journalHook(TransferJournal.Direction.UPLOAD,
+                                           remoteFile, localFile, file);
+            FTPResponse done = store("STOR", remoteFile, 0, file, hook, transferListener);
+            if (done.getCode() != 226) {
+                return false;
+            }
+            finish(hook);
+            return true;
+        }
+    }
+
+    /**
+     * Continue an upload from the size the remote file already has.
+     * Uses REST + STOR, or APPE when the server refuses REST for uploads.
+     */
+    public boolean resumeUpload(String localFile, String remoteFile) throws IOException {
+        return resumeUpload(localFile, remoteFile, null);
+    }
+
+    private boolean resumeUpload(String localFile, String remoteFile,
+                                 TransferJournal.Entry entry) throws IOException {
+        journalEntry = null;
         if (!isLoggedIn) {
             throw new IOException("Not logged in");
         }
+        long remoteSize = Math.max(0, getFileSize(remoteFile));
+        try (FileChannel file = FileChannel.open(Paths.get(localFile), StandardOpenOption.READ)) {
+            JournalHook hook = journalHook(TransferJournal.Direction.UPLOAD,
+                                           remoteFile, localFile, file);
+            if (hook != null) {
+                hook.entry = entry;
+            }
+            if (remoteSize > file.size()) {
+                // Remote copy is not a prefix of this file; send it again in full
+                remoteSize = 0;
+            } else if (remoteSize == file.size()) {
+                finish(hook);
+                return true;
+            }
+            FTPResponse done = store("STOR", remoteFile, remoteSize, file, hook, transferListener);
+            if (done.getCode() != 226) {
+                return false;
+            }
+            finish(hook);
+            return true;
+        }
+    }
+
+    /**
+     * Continue a transfer recorded in the journal, using the paths stored
+     * there. A download continues from the entry's last confirmed offset;
+     * local bytes past it may not have reached the disk and are dropped.
+     * The entry is marked complete on success.
+     */
+    public boolean resume(TransferJournal.Entry entry) throws IOException {
+        if (entry.getDirection() == TransferJournal.Direction.DOWNLOAD) {
+            return resumeDownload(entry.getRemotePath(), entry.getLocalPath(), entry);
+        }
+        return resumeUpload(entry.getLocalPath(), entry.getRemotePath(), entry);
+    }
+
+    /**
+     * RETR {@code remoteFile} into {@code target}, starting at {@code offset}
+     * (sent as REST when non-zero) and stopping after {@code limit} bytes.
+     * Returns the bytes received, or -1 if the server reported a failure
+     * before the requested range was complete. {@code listener}, if not
+     * null, follows the transfer.
+     */
+    private long retrieve(String remoteFile, long offset, FileChannel target,
+                          long limit, JournalHook hook, TransferListener listener) throws IOException {
+        SocketChannel dataChannel = startTransfer("RETR", remoteFile, offset, true);
+        long announced = parseAnnouncedSize(lastReply);
+        long expectedSize = announced >= 0 ? offset + announced : -1;
+        if (hook != null) {
+            hook.started(expectedSize);
+        }
+        if (listener != null) {
+            listener.started(TransferJournal.Direction.DOWNLOAD, remoteFile, offset, expectedSize);
+        }
+
+        long received = 0;
+        RateLimiter[] limiters = limiters();
+        TransferMetrics.Transfer meter = TransferMetrics.global()
+            .transferStarted(TransferJournal.Direction.DOWNLOAD, remoteFile);
+        boolean ok = false;
+        Exception failure = null;
+        try {
+            try {
+                recordSocketBuffer(meter, dataChannel, StandardSocketOptions.SO_RCVBUF);
+                // Both modes: the JDK has no zero-copy path from a socket to a file
+                received = receiveViaBuffer(dataChannel, target, offset, limit, limiters, meter,
+                                            hook, listener);
+            } catch (IOException e) {
+                dataChannel.close();
+                settleFailedTransfer(e);
+                throw e;
+            } finally {
+                // Closing early is how a range ends; the server then answers 426/451
+                dataChannel.close();
+            }
+
+            requestNextDataConnection();
+            FTPResponse done = readTransferEnd();
+            ok = received >= limit || done.isPositiveCompletion();
+            if (ok && !done.isPositiveCompletion()) {
+                // The 426/451 answers our own early close, not a fault worth retrying
+                clearLastReply();
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            transferEnded(meter, ok, listener, offset, failure);
+        }
+        return ok ? received : -1;
+    }
+
+    /**
+     * Send {@code source} from {@code offset} to the end with {@code command}
+     * (STOR or APPE). A non-zero offset is announced with REST; when the
+     * server refuses it, STOR becomes APPE, which appends at the remote end.
+     * Returns the reply that closed the transfer. {@code listener}, if not
+     * null, follows the transfer.
+     */
+    private FTPResponse store(String command, String remoteFile, long offset,
+                              FileChannel source, JournalHook hook,
+                              TransferListener listener) throws IOException {
+        // Resolved up front: no commands can be sent while data is moving
+        String listingDirectory = listingCache == null ? null
+            : RemoteListingCache.parentOf(resolveRemotePath(remoteFile));
+
+        SocketChannel dataChannel = startTransfer(command, remoteFile, offset, true);
+        if (hook != null) {
+            hook.started(source.size());
+        }
+        if (listener != null) {
+            listener.started(TransferJournal.Direction.UPLOAD, remoteFile, offset, source.size());
+        }
+
+        RateLimiter[] limiters = limiters();
+        TransferMetrics.Transfer meter = TransferMetrics.global()
+            .transferStarted(TransferJournal.Direction.UPLOAD, remoteFile);
+        boolean ok = false;
+        Exception failure = null;
+        try {
+            try {
+                recordSocketBuffer(meter, dataChannel, StandardSocketOptions.SO_SNDBUF);
+                if (transferMode == TransferMode.CHANNEL) {
+                    sendViaChannel(source, offset, dataChannel, limiters, meter, hook, listener);
+                } else {
+                    sendViaBuffer(source, offset, dataChannel, limiters, meter, hook, listener);
+                }
+            } catch (IOException e) {
+                dataChannel.close();
+                settleFailedTransfer(e);
+                throw e;
+            } finally {
+                dataChannel.close();
+                // Even a failed upload may have left a (partial) remote file
+                if (listingDirectory != null) {
+                    listingCache.invalidate(server, port, listingDirectory);
+                }
+            }
+
+            requestNextDataConnection();
+            FTPResponse done = readTransferEnd();
+            ok = done.isPositiveCompletion();
+            return done;
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            transferEnded(meter, ok, listener, offset, failure);
+        }
+    }
 
-        sendCommand("TYPE I");
-        FTPResponse typeResp = readResponse();
-        if (typeResp.getCode() != 200) {
-            throw new IOException("Could not set binary mode. Response: " + typeResp);
+    /**
+     * Open a passive data connection and start {@code command} (RETR, STOR,
+     * APPE, LIST, MLSD) on it, with {@code path} as argument unless null.
+     * A non-zero {@code offset} is announced with REST; when the server
+     * refuses it, STOR becomes APPE and RETR fails. Returns once the server
+     * has sent its preliminary reply, which is then {@link #getLastReply()}.
+     *
+     * Commands that do not depend on each other's replies are pipelined:
+     * TYPE I (if {@code binary} and not already set), PASV and the transfer
+     * command go out together, and a data connection opened ahead of time
+     * by the previous transfer takes the place of PASV. Once TYPE is set,
+     * starting a transfer costs a single round trip.
+     */
+    private SocketChannel startTransfer(String command, String path, long offset,
+                                        boolean binary) throws IOException {
+        // A PASV sent by the previous transfer has usually been answered by
+        // now; if not, waiting costs nothing, as its connection is needed first
+        settlePassive();
+        boolean sendType = binary && !"I".equals(type);
+        boolean reuse = preopenedAddress != null
+            && System.nanoTime() - preopenRequestedAt < PREOPEN_MAX_AGE_NANOS;
+        // The replies to TYPE and REST decide what may follow them
+        boolean pipelined = !sendType && offset == 0;
+        String request = path == null ? command : command + " " + path;
+        if (sendType) {
+            queueCommand("TYPE I", true);
         }
+        if (!reuse) {
+            discardPreopened();   // too old to trust
+            queueCommand("PASV", true);
+        }
+        if (pipelined) {
+            queueCommand(request, true);
+        }
+        flushCommands();
 
-        sendCommand("PASV");
-        FTPResponse pasv = readResponse();
-        if (pasv.getCode() != 227) {
+        if (sendType) {
+            FTPResponse typeReply = readResponse();
+            if (typeReply.getCode() != 200) {
+                if (!reuse) {
+                    readResponse();   // the PASV; its connection is never opened
+                }
+                discardPreopened();
+                throw new IOException("Could not set binary mode. Response: " + typeReply);
+            }
+            type = "I";
+        }
+
+        SocketChannel dataChannel;
+        try {
+            dataChannel = reuse ? takePreopened() : openPassive(readResponse());
+        } catch (IOException e) {
+            if (!pipelined) {
+                throw e;
+            }
+            if (e instanceof ConnectException && isConnected) {
+                // Nothing listens on the data port, so the server has given up on
+                // the transfer command as well; its reply says why
+                FTPResponse refused = readResponse();
+                if (!refused.isPositivePreliminary()) {
+                    throw new IOException("Could not start " + describe(command) + ". Response: " + refused);
+                }
+            }
+            // The server may be waiting for this connection before it answers again
+            connectionLost();
+            throw e;
+        }
+        if (dataChannel == null) {
+            FTPResponse pasv = lastReply;
+            if (!pipelined) {
+                throw new IOException("Could not enter passive mode. Response: " + pasv);
+            }
+            // Without a data connection the transfer command fails, usually with 425
+            FTPResponse refused = readResponse();
+            if (refused.isPositivePreliminary()) {
+                connectionLost();
+            }
             throw new IOException("Could not enter passive mode. Response: " + pasv);
         }
-        Socket dataSocket = createDataSocket(pasv);
 
-        sendCommand("STOR " + remoteFile);
-        FTPResponse stor = readResponse();
-        if (!stor.isPositivePreliminary()) {
-            dataSocket.close();
-            throw new IOException("Could not start upload. Response: " + stor);
+        if (offset > 0 && !"APPE".equals(command)) {
+            sendCommand("REST " + offset);
+            FTPResponse rest = readResponse();
+            if (rest.getCode() != 350) {
+                if (!"STOR".equals(command)) {
+                    dataChannel.close();
+                    throw new IOException("Server does not support REST. Response: " + rest);
+                }
+                command = "APPE";
+                request = command + " " + path;
+            }
+        }
+        if (!pipelined) {
+            sendCommand(request);
+        }
+        FTPResponse start = readResponse();
+        if (!start.isPositivePreliminary()) {
+            dataChannel.close();
+            throw new IOException("Could not start " + describe(command) + ". Response: " + start);
+        }
+        return dataChannel;
+    }
+
+    /** What a transfer command does, for error messages. */
+    private static String describe(String command) {
+        switch (command) {
+            case "RETR":
+                return "download";
+            case "STOR":
+            case "APPE":
+                return "upload";
+            default:
+                return "directory listing";
+        }
+    }
+
+    /**
+     * Ask for the next transfer's data connection while this one winds down.
+     * The PASV goes out right behind the data, so the server handles it as
+     * soon as the transfer is done; its reply is read with whatever command
+     * comes next, and the connection is opened in the background.
+     */
+    private void requestNextDataConnection() throws IOException {
+        if (!preopenDataConnections || !isConnected) {
+            return;
+        }
+        discardPreopened();
+        // Untimed: its reply may sit unread while the caller does other work
+        queueCommand("PASV", false);
+        flushCommands();
+        passiveInFlight = true;
+        preopenRequestedAt = passiveSentAt;
+    }
+
+    /**
+     * The reply that ends a transfer. Servers that take commands while a
+     * transfer runs may answer a PASV sent ahead before it; that reply is
+     * set aside for the next transfer.
+     */
+    private FTPResponse readTransferEnd() throws IOException {
+        FTPResponse done = readReply(false);
+        if (passiveInFlight && done.getCode() == 227) {
+            passiveInFlight = false;
+            commandAnswered();
+            preopen(done);
+            done = readReply(false);
+        }
+        return done;
+    }
+
+    /**
+     * The data connection failed mid-transfer. Unless the session itself is
+     * gone, the server answers the transfer command (426, 451, or 226 if it
+     * took the close for the end) once it sees the connection close; read
+     * that reply so the next command lines up with its own.
+     */
+    private void settleFailedTransfer(IOException failure) {
+        if (failure instanceof InterruptedIOException || aborted || !isConnected) {
+            return;
+        }
+        try {
+            readTransferEnd();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /** Read the reply to a PASV sent ahead of time, if there is one outstanding. */
+    private void settlePassive() throws IOException {
+        if (passiveInFlight) {
+            passiveInFlight = false;
+            preopen(readReply(true));
+        }
+    }
+
+    /** Start connecting to the address in {@code pasv} without waiting for the handshake. */
+    private void preopen(FTPResponse pasv) {
+        discardPreopened();
+        if (pasv.getCode() != 227 || System.nanoTime() - preopenRequestedAt >= PREOPEN_MAX_AGE_NANOS) {
+            return;
+        }
+        SocketChannel channel = null;
+        try {
+            preopenedAddress = parsePassiveAddress(pasv);
+            channel = newDataChannel();
+            channel.configureBlocking(false);
+            channel.connect(preopenedAddress);
+            preopened = channel;
+        } catch (IOException | RuntimeException e) {
+            // takePreopened connects again, or the next transfer sends its own PASV
+            closeQuietly(channel);
         }
+    }
 
-        try (BufferedInputStream fileIn = new BufferedInputStream(
-                 new FileInputStream(localFile));
-             BufferedOutputStream dataOut = new BufferedOutputStream(
-                 dataSocket.getOutputStream())) {
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = fileIn.read(buffer)) != -1) {
-                dataOut.write(buffer, 0, bytesRead);
+    /**
+     * The data connection opened ahead of time, connected and blocking.
+     * Throws if it cannot be connected.
+     */
+    private SocketChannel takePreopened() throws IOException {
+        SocketChannel channel = preopened;
+        InetSocketAddress address = preopenedAddress;
+        preopened = null;
+        preopenedAddress = null;
+        if (channel != null) {
+            try {
+                channel.configureBlocking(true);
+                if (channel.isConnectionPending()) {
+                    channel.finishConnect();
+                }
+                dataConnection = channel;
+                return channel;
+            } catch (IOException e) {
+                closeQuietly(channel);
             }
-            dataOut.flush();
+        }
+        // The server is still listening, so one more (blocking) attempt
+        channel = connectDataChannel(address);
+        dataConnection = channel;
+        return channel;
+    }
+
+    private void discardPreopened() {
+        closeQuietly(preopened);
+        preopened = null;
+        preopenedAddress = null;
+    }
+
+    /** Data connection from a PASV reply, or null if the server refused PASV. */
+    private SocketChannel openPassive(FTPResponse pasv) throws IOException {
+        return pasv.getCode() == 227 ? openDataChannel(pasv) : null;
+    }
+
+    /**
+     * Copy the data connection into a file through a pooled direct buffer.
+     * An automatically sized buffer doubles (up to a limit) while reads
+     * keep filling it, as the socket then holds more than one read takes.
+     */
+    private long receiveViaBuffer(SocketChannel dataChannel, FileChannel target, long offset, long limit,
+                                  RateLimiter[] limiters, TransferMetrics.Transfer meter,
+                                  JournalHook hook, TransferListener listener) throws IOException {
+        BufferPool pool = BufferPool.global();
+        boolean grow = streamBufferSize == 0 && profile.getCopyBufferSize() == 0;
+        ByteBuffer buffer = pool.acquire(copyBufferSize(meter.socketBuffer()));
+        try {
+            meter.buffers(meter.socketBuffer(), buffer.capacity());
+            int fullReads = 0;
+            long received = 0;
+            while (received < limit) {
+                // Throttled transfers read small chunks so the waits between them stay short
+                long wanted = Math.min(RateLimiter.chunkSize(limiters, buffer.capacity()), limit - received);
+                buffer.clear().limit((int) wanted);
+                int bytesRead = dataChannel.read(buffer);
+                if (bytesRead == -1) {
+                    break;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer, offset + received + buffer.position());
+                }
+                received += bytesRead;
+                meter.moved(bytesRead);
+                RateLimiter.acquire(limiters, bytesRead);
+                if (hook != null) {
+                    hook.progressed(offset + received);
+                }
+                if (listener != null) {
+                    listener.bytesTransferred(offset + received);
+                }
+                fullReads = bytesRead == buffer.capacity() ? fullReads + 1 : 0;
+                if (grow && fullReads == FULL_READS_TO_GROW && buffer.capacity() < HostProfile.MAX_COPY_BUFFER) {
+                    int larger = buffer.capacity() * 2;
+                    pool.release(buffer);
+                    buffer = null;   // not released again if the allocation below fails
+                    buffer = pool.acquire(larger);
+                    meter.buffers(meter.socketBuffer(), buffer.capacity());
+                    fullReads = 0;
+                }
+            }
+            return received;
         } finally {
-            dataSocket.close();
+            pool.release(buffer);
         }
+    }
 
-        FTPResponse done = readResponse();
-        return done.getCode() == 226;
+    /** Copy a file onto the data connection through a pooled direct buffer. */
+    private void sendViaBuffer(FileChannel source, long offset, SocketChannel dataChannel,
+                               RateLimiter[] limiters, TransferMetrics.Transfer meter,
+                               JournalHook hook, TransferListener listener) throws IOException {
+        BufferPool pool = BufferPool.global();
+        ByteBuffer buffer = pool.acquire(copyBufferSize(meter.socketBuffer()));
+        try {
+            meter.buffers(meter.socketBuffer(), buffer.capacity());
+            long position = offset;
+            while (true) {
+                buffer.clear().limit((int) RateLimiter.chunkSize(limiters, buffer.capacity()));
+                int bytesRead = source.read(buffer, position);
+                if (bytesRead == -1) {
+                    break;
+                }
+                RateLimiter.acquire(limiters, bytesRead);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    dataChannel.write(buffer);
+                }
+                meter.moved(bytesRead);
+                position += bytesRead;
+                if (hook != null) {
+                    hook.progressed(position);
+                }
+                if (listener != null) {
+                    listener.bytesTransferred(position);
+                }
+            }
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /** Let the kernel copy a file onto the data connection (transferTo). */
+    private void sendViaChannel(FileChannel source, long offset, SocketChannel dataChannel,
+                                RateLimiter[] limiters, TransferMetrics.Transfer meter,
+                                JournalHook hook, TransferListener listener) throws IOException {
+        long size = source.size();
+        long position = offset;
+        while (position < size) {
+            long wanted = Math.min(RateLimiter.chunkSize(limiters, CHANNEL_CHUNK_SIZE), size - position);
+            RateLimiter.acquire(limiters, wanted);
+            long transferred = source.transferTo(position, wanted, dataChannel);
+            if (transferred <= 0) {
+                break;
+            }
+            position += transferred;
+            meter.moved(transferred);
+            if (hook != null) {
+                hook.progressed(position);
+            }
+            if (listener != null) {
+                listener.bytesTransferred(position);
+            }
+        }
+    }
+
+    /** Note the data connection's {@code option} buffer on the meter, for the stats and the profile. */
+    private static void recordSocketBuffer(TransferMetrics.Transfer meter, SocketChannel dataChannel,
+                                           SocketOption<Integer> option) {
+        int socketBuffer;
+        try {
+            socketBuffer = dataChannel.getOption(option);
+        } catch (IOException e) {
+            socketBuffer = 0;
+        }
+        meter.buffers(socketBuffer, 0);
+    }
+
+    /** Stream copy buffer: the session's setting, else the host profile's choice. */
+    private int copyBufferSize(int socketBuffer) {
+        return streamBufferSize > 0 ? streamBufferSize : profile.copyBufferFor(socketBuffer);
+    }
+
+    /**
+     * Close the books on a transfer that started at {@code offset}; a
+     * completed one also tells the host profile how fast the link was.
+     * {@code failure} is what ended a failed transfer, or null when the
+     * server reported the failure.
+     */
+    private void transferEnded(TransferMetrics.Transfer meter, boolean ok, TransferListener listener,
+                               long offset, Exception failure) {
+        if (ok) {
+            profile.transferMeasured(meter.bytes(), meter.elapsedNanos(), meter.socketBuffer());
+        }
+        TransferMetrics.global().transferFinished(meter, ok);
+        if (listener == null) {
+            return;
+        }
+        long position = offset + meter.bytes();
+        if (ok) {
+            listener.completed(position);
+        } else {
+            listener.failed(position, failure != null ? failure
+                : new IOException("Transfer failed. Response: " + lastReply));
+        }
+    }
+
+    /** Limiters a transfer on this session answers to: its own, its server's and the global one. */
+    private RateLimiter[] limiters() {
+        return new RateLimiter[] {rateLimiter, RateLimiter.forHost(server, port), RateLimiter.global()};
+    }
+
+    /** Byte count from a "150 ... (12345 bytes)" reply, or -1 if absent. */
+    private static long parseAnnouncedSize(FTPResponse reply) {
+        String msg = reply.getMessage();
+        int end = msg.lastIndexOf(" bytes)");
+        if (end < 0) {
+            return -1;
+        }
+        int start = msg.lastIndexOf('(', end);
+        try {
+            return Long.parseLong(msg.substring(start + 1, end).trim());
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /** Journal hook for a transfer, or null when no journal is attached. */
+    private JournalHook journalHook(TransferJournal.Direction direction, String remoteFile,
+                                    String localFile, FileChannel file) throws IOException {
+        if (journal == null) {
+            return null;
+        }
+        return new JournalHook(direction, resolveRemotePath(remoteFile),
+                               Paths.get(localFile).toAbsolutePath().toString(), file);
+    }
+
+    private void finish(JournalHook hook) throws IOException {
+        if (hook != null && hook.entry != null) {
+            journal.complete(hook.entry);
+        }
+    }
+
+    /** Forget the cached listing of the directory that holds {@code remotePath}. */
+    private void listingChanged(String remotePath) throws IOException {
+        if (listingCache != null) {
+            listingCache.invalidate(server, port,
+                RemoteListingCache.parentOf(resolveRemotePath(remotePath)));
+        }
+    }
+
+    /** Absolute form of a remote path relative to the working directory. */
+    private String resolveRemotePath(String remotePath) throws IOException {
+        if (remotePath.startsWith("/")) {
+            return remotePath;
+        }
+        String dir = getWorkingDirectory();
+        return dir.endsWith("/") ? dir + remotePath : dir + "/" + remotePath;
+    }
+
+    /**
+     * Records a transfer in the journal once the server has accepted it and
+     * checkpoints the offset every few megabytes while bytes move.
+     */
+    private class JournalHook {
+        private final TransferJournal.Direction direction;
+        private final String remotePath;
+        private final String localPath;
+        private final FileChannel file;
+        private TransferJournal.Entry entry;   // preset when resuming a journaled transfer
+        private long lastCheckpoint;
+
+        JournalHook(TransferJournal.Direction direction, String remotePath,
+                    String localPath, FileChannel file) {
+            this.direction = direction;
+            this.remotePath = remotePath;
+            this.localPath = localPath;
+            this.file = file;
+        }
+
+        void started(long expectedSize) throws IOException {
+            if (entry == null) {
+                entry = journal.begin(direction, server, port, username,
+                                      remotePath, localPath, expectedSize);
+            }
+            journalEntry = entry;
+            lastCheckpoint = entry.getConfirmedOffset();
+        }
+
+        void progressed(long position) throws IOException {
+            if (position - lastCheckpoint < CHECKPOINT_INTERVAL) {
+                return;
+            }
+            if (direction == TransferJournal.Direction.DOWNLOAD) {
+                // Only claim bytes that have reached the disk
+                file.force(false);
+            }
+            journal.checkpoint(entry, position);
+            lastCheckpoint = position;
+        }
     }
 
     /** Delete a file on the server. */
@@ -235,7 +1187,13 @@ public class FTPClient {
         sendCommand("DELE " + filename);
         FTPResponse resp = readResponse();
         // 250 = “Requested file action okay, completed”
-        return resp.getCode() == 250 || resp.isPositiveCompletion();
+        boolean deleted = resp.getCode() == 250 || resp.isPositiveCompletion();
+        if (deleted && listingCache != null) {
+            String path = resolveRemotePath(filename);
+            listingCache.removeEntry(server, port, RemoteListingCache.parentOf(path),
+                                     RemoteListingCache.nameOf(path));
+        }
+        return deleted;
     }
 
     /** Remove (delete) an empty directory on the server. */
@@ -246,7 +1204,14 @@ public class FTPClient {
         sendCommand("RMD " + directory);
         FTPResponse resp = readResponse();
         // 250 = “Requested file action okay, completed”
-        return resp.getCode() == 250 || resp.isPositiveCompletion();
+        boolean removed = resp.getCode() == 250 || resp.isPositiveCompletion();
+        if (removed && listingCache != null) {
+            String path = resolveRemotePath(directory);
+            listingCache.removeEntry(server, port, RemoteListingCache.parentOf(path),
+                                     RemoteListingCache.nameOf(path));
+            listingCache.invalidateTree(server, port, path);
+        }
+        return removed;
     }
 
     /** Disconnect from the FTP server. */
@@ -263,29 +1228,278 @@ public class FTPClient {
             } finally {
                 isConnected = false;
                 isLoggedIn = false;
+                features = null;
+                workingDirectory = null;
+                type = null;
+                passiveInFlight = false;
+                pending.clear();
+                discardPreopened();
             }
         }
     }
 
-    /** Send a command on the control connection. */
+    /**
+     * Abort whatever this session is doing, from any thread, by closing its
+     * data and control connections. Blocked reads and writes fail at once;
+     * the session cannot be used afterwards.
+     */
+    public void abort() {
+        aborted = true;
+        isLoggedIn = false;
+        isConnected = false;
+        closeQuietly(dataConnection);
+        closeQuietly(preopened);
+        closeQuietly(commandSocket);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // already broken, nothing more to do
+        }
+    }
+
+    /**
+     * Run a listing command (LIST, MLSD) over a passive data connection,
+     * passing each line to {@code lines} as it is read. Bytes are decoded
+     * from one pooled buffer into a char view of another; malformed input
+     * becomes U+FFFD. The line buffer is reused, so the consumer must copy
+     * anything it keeps.
+     */
+    private void readListing(String command, Charset charset, Consumer<CharSequence> lines)
+            throws IOException {
+        SocketChannel dataChannel = startTransfer(command, null, 0, false);
+        BufferPool pool = BufferPool.global();
+        ByteBuffer bytes = pool.acquire(LISTING_BUFFER_SIZE);
+        ByteBuffer charStorage = pool.acquire(2 * LISTING_BUFFER_SIZE);
+        try {
+            CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CharBuffer chars = charStorage.asCharBuffer();
+            StringBuilder line = new StringBuilder(256);
+            boolean end = false;
+            while (!end) {
+                end = dataChannel.read(bytes) == -1;
+                bytes.flip();
+                CoderResult result;
+                do {
+                    result = decoder.decode(bytes, chars, end);
+                    splitLines(chars, line, lines);
+                } while (result.isOverflow());
+                bytes.compact();
+            }
+            while (decoder.flush(chars).isOverflow()) {
+                splitLines(chars, line, lines);
+            }
+            splitLines(chars, line, lines);
+            if (line.length() > 0) {
+                lines.accept(line);
+            }
+        } finally {
+            pool.release(bytes);
+            pool.release(charStorage);
+            dataChannel.close();
+        }
+
+        requestNextDataConnection();
+        FTPResponse listEnd = readTransferEnd();
+        if (!listEnd.isPositiveCompletion()) {
+            throw new IOException("Error completing listing. Response: " + listEnd);
+        }
+    }
+
+    /**
+     * Hand every complete line in {@code chars} to {@code lines}, keeping
+     * the unfinished tail in {@code line}; leaves {@code chars} empty.
+     */
+    private static void splitLines(CharBuffer chars, StringBuilder line, Consumer<CharSequence> lines) {
+        chars.flip();
+        int start = 0;
+        int length = chars.limit();
+        for (int i = 0; i < length; i++) {
+            if (chars.get(i) == '\n') {
+                line.append(chars, start, i);
+                int end = line.length();
+                if (end > 0 && line.charAt(end - 1) == '\r') {
+                    line.setLength(end - 1);
+                }
+                lines.accept(line);
+                line.setLength(0);
+                start = i + 1;
+            }
+        }
+        line.append(chars, start, length);
+        chars.clear();
+    }
+
+    /** Send a command on the control connection; its first reply is timed. */
     private void sendCommand(String command) throws IOException {
-        writer.write(command + "\r\n");
-        writer.flush();
+        queueCommand(command, true);
+        flushCommands();
+    }
+
+    /**
+     * Write a command without sending it yet, so that several commands can
+     * leave in one packet. Replies come back in the order commands were
+     * queued; the first reply to a {@code timed} one is a round trip sample.
+     */
+    private void queueCommand(String command, boolean timed) throws IOException {
+        if (writer == null) {
+            throw new IOException("Not connected to FTP server");
+        }
+        int space = command.indexOf(' ');
+        String verb = (space < 0 ? command : command.substring(0, space)).toUpperCase(Locale.ROOT);
+        long now = System.nanoTime();
+        if ("PASV".equals(verb)) {
+            passiveSentAt = now;
+        }
+        try {
+            writer.write(command + "\r\n");
+        } catch (IOException e) {
+            connectionLost();
+            throw e;
+        }
+        pending.add(new PendingCommand(timed ? verb : null, now));
+    }
+
+    /** Send the queued commands. */
+    private void flushCommands() throws IOException {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            connectionLost();
+            throw e;
+        }
     }
 
-    /** Read & parse an FTP response (handles multi-line). */
+    /** Read the first reply to the oldest command still waiting for one. */
     private FTPResponse readResponse() throws IOException {
+        settlePassive();
+        return readReply(true);
+    }
+
+    /**
+     * Read & parse an FTP response (handles multi-line). A {@code first}
+     * reply answers the oldest pending command; other replies (226 after
+     * 150) end a transfer rather than a round trip.
+     */
+    private FTPResponse readReply(boolean first) throws IOException {
+        StringBuilder raw;
+        try {
+            String line = readLine();
+            raw = new StringBuilder(line);
+            if (line.length() > 3 && line.charAt(3) == '-') {
+                // Multi-line replies end at "xyz " with the same code; lines in
+                // between (FEAT, MLST facts) may start with anything
+                String code = line.substring(0, 3);
+                do {
+                    line = readLine();
+                    raw.append("\r\n").append(line);
+                } while (!(line.startsWith(code) && (line.length() == 3 || line.charAt(3) == ' ')));
+            }
+        } catch (IOException e) {
+            connectionLost();
+            throw e;
+        }
+        FTPResponse response = FTPResponse.parse(raw.toString());
+        lastReply = response;
+        if (response.getCode() == 421) {
+            // Service closing: the server hangs up right after this reply
+            connectionLost();
+        }
+        TransferMetrics.global().replyReceived(response.getCode());
+        if (first) {
+            commandAnswered();
+        }
+        return response;
+    }
+
+    /** The oldest pending command got its first reply; record the round trip. */
+    private void commandAnswered() {
+        PendingCommand command = pending.poll();
+        if (command != null && command.verb != null) {
+            long nanos = System.nanoTime() - command.sentAt;
+            TransferMetrics.global().commandCompleted(command.verb, nanos);
+            profile.commandAnswered(command.verb, nanos);
+        }
+    }
+
+    /** One line of a reply; end of stream means the server closed the connection. */
+    private String readLine() throws IOException {
         String line = reader.readLine();
-        StringBuilder raw = new StringBuilder(line);
-        while (line.length() > 3 && line.charAt(3) == '-') {
-            line = reader.readLine();
-            raw.append("\r\n").append(line);
+        if (line == null) {
+            throw new EOFException("Control connection closed by server");
+        }
+        return line;
+    }
+
+    /** The control connection is gone: close it and forget per-connection state. */
+    private void connectionLost() {
+        isConnected = false;
+        isLoggedIn = false;
+        features = null;
+        workingDirectory = null;
+        type = null;
+        passiveInFlight = false;
+        pending.clear();
+        discardPreopened();
+        closeQuietly(commandSocket);
+    }
+
+    /** Open a blocking data SocketChannel from a PASV response. */
+    private SocketChannel openDataChannel(FTPResponse pasvResponse) throws IOException {
+        SocketChannel channel = connectDataChannel(parsePassiveAddress(pasvResponse));
+        TransferMetrics.global().dataConnected(System.nanoTime() - passiveSentAt);
+        dataConnection = channel;
+        return channel;
+    }
+
+    /** Blocking data connection to {@code address}, with buffers sized by {@link #newDataChannel}. */
+    private SocketChannel connectDataChannel(InetSocketAddress address) throws IOException {
+        SocketChannel channel = newDataChannel();
+        try {
+            channel.connect(address);
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Unconnected data channel with socket buffers sized for the link to
+     * this server. They are set before connecting, as the window scale is
+     * agreed in the handshake, and only ever raised above the system default.
+     */
+    private SocketChannel newDataChannel() throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        int buffer = profile.socketBufferFor();
+        if (buffer > 0) {
+            try {
+                raise(channel, StandardSocketOptions.SO_RCVBUF, buffer);
+                raise(channel, StandardSocketOptions.SO_SNDBUF, buffer);
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(channel);
+                throw e;
+            }
+        }
+        return channel;
+    }
+
+    private static void raise(SocketChannel channel, SocketOption<Integer> option,
+                              int size) throws IOException {
+        if (channel.getOption(option) < size) {
+            channel.setOption(option, size);
         }
-        return FTPResponse.parse(raw.toString());
     }
 
-    /** Create a data socket from a PASV response. */
-    private Socket createDataSocket(FTPResponse pasvResponse) throws IOException {
+    /** Extract the h1,h2,h3,h4,p1,p2 address from a 227 reply. */
+    private InetSocketAddress parsePassiveAddress(FTPResponse pasvResponse) {
         String raw = pasvResponse.getLines()
                                  .get(pasvResponse.getLines().size() - 1);
         int start = raw.indexOf('('), end = raw.indexOf(')', start);
@@ -295,14 +1509,138 @@ public class FTPClient {
             parts[0], parts[1], parts[2], parts[3]);
         int dataPort = (Integer.parseInt(parts[4]) << 8)
                      + Integer.parseInt(parts[5]);
-        return new Socket(host, dataPort);
+        return new InetSocketAddress(host, dataPort);
     }
 
     // Getters
+    public String getServer() {
+        return server;
+    }
+    public int getPort() {
+        return port;
+    }
+    public String getUsername() {
+        return username;
+    }
+    String getPassword() {
+        return password;
+    }
+    public TransferMode getTransferMode() {
+        return transferMode;
+    }
+    /**
+     * Choose how uploads are sent: CHANNEL lets the kernel copy the file
+     * (transferTo), STREAM copies it through a pooled buffer. Downloads go
+     * through the pooled buffer in both modes.
+     */
+    public void setTransferMode(TransferMode transferMode) {
+        this.transferMode = transferMode;
+    }
+    public int getStreamBufferSize() {
+        return streamBufferSize;
+    }
+    /**
+     * Pooled copy buffer for every download, and for uploads in STREAM mode;
+     * CHANNEL-mode uploads use none. 0 (the default) leaves the size to the
+     * server's {@link HostProfile}.
+     */
+    public void setStreamBufferSize(int streamBufferSize) {
+        if (streamBufferSize < 0) {
+            throw new IllegalArgumentException("Buffer size must not be negative");
+        }
+        this.streamBufferSize = streamBufferSize;
+    }
+    public TransferJournal getTransferJournal() {
+        return journal;
+    }
+
+    /**
+     * Journal entry of the latest download or upload, or null if it was not
+     * journaled or never reached the server. Pass it to {@link #resume} to
+     * continue that transfer under the same entry.
+     */
+    public TransferJournal.Entry getJournalEntry() {
+        return journalEntry;
+    }
+
+    /** Record downloads and uploads in {@code journal} so they can be resumed; null to stop. */
+    public void setTransferJournal(TransferJournal journal) {
+        this.journal = journal;
+    }
+    /** What is known about the link to this server, and its buffer settings. */
+    public HostProfile getHostProfile() {
+        return profile;
+    }
+    public RemoteListingCache getListingCache() {
+        return listingCache;
+    }
+    /** Serve listings from {@code cache} and keep it in step with changes made here; null for none. */
+    public void setListingCache(RemoteListingCache listingCache) {
+        this.listingCache = listingCache;
+    }
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+    /**
+     * Limit every transfer on this session with {@code rateLimiter}; its rate
+     * can be changed while a transfer runs. Null for no per-transfer limit.
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+    public TransferListener getTransferListener() {
+        return transferListener;
+    }
+    /**
+     * Report the progress of downloads and uploads on this session to
+     * {@code transferListener}, from the transferring thread; null for none.
+     * Takes effect from the next transfer.
+     */
+    public void setTransferListener(TransferListener transferListener) {
+        this.transferListener = transferListener;
+    }
+    public boolean isPreopenDataConnections() {
+        return preopenDataConnections;
+    }
+    /**
+     * Open the next passive data connection while a transfer finishes, so
+     * that a following transfer starts without waiting for PASV. When no
+     * transfer follows within a few seconds, the connection goes unused.
+     */
+    public void setPreopenDataConnections(boolean preopenDataConnections) {
+        this.preopenDataConnections = preopenDataConnections;
+    }
     public boolean isConnected() {
         return isConnected;
     }
     public boolean isLoggedIn() {
         return isLoggedIn;
     }
+    /** Most recent reply on the control connection, or null before the first one. */
+    public FTPResponse getLastReply() {
+        return lastReply;
+    }
+    /** Forget the last reply, so that a later check only sees replies to new commands. */
+    void clearLastReply() {
+        lastReply = null;
+    }
+    /** Whether {@link #abort()} ended this session, as opposed to a failure. */
+    boolean isAborted() {
+        return aborted;
+    }
+    /** Working directory if already known, without asking the server. */
+    String getKnownWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    /** A command sent on the control connection whose first reply has not been read. */
+    private static final class PendingCommand {
+        final String verb;   // null when not timed
+        final long sentAt;   // System.nanoTime()
+
+        PendingCommand(String verb, long sentAt) {
+            this.verb = verb;
+            this.sentAt = sentAt;
+        }
+    }
 }
\ No newline at end of file
@@ -1,10 +1,15 @@
 package com.ftpclient.ftp;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 
 public class FTPCommands {
     private FTPClient client;
+    private FTPSessionPool pool;
+    private String directory;   // remote working directory shared by all sessions
+    private TransferJournal journal;
 
     /**
      * Initialize and connect to the server.
@@ -15,65 +20,268 @@ public class FTPCommands {
     }
 
     /**
-     * Log in with credentials.
+     * Log in with credentials. On success the session seeds a pool so that
+     * each command runs on its own logged-in session.
      */
     public boolean login(String user, String pass) throws IOException {
-        return client.login(user, pass);
+        if (!client.login(user, pass)) {
+            return false;
+        }
+        directory = client.getWorkingDirectory();
+        pool = new FTPSessionPool(client);
+        try {
+            journal = TransferJournal.openDefault();
+            pool.setTransferJournal(journal);
+        } catch (IOException e) {
+            // Transfers still work, they just cannot be resumed after a restart
+            System.err.println("Transfer journal unavailable: " + e.getMessage());
+        }
+        return true;
     }
 
     /**
      * List files and directories.
      */
     public List<String> list() throws IOException {
-        return client.listFiles();
+        return requirePool().execute(directory, FTPClient::listFiles);
     }
 
     /**
      * Download a file.
      */
     public boolean get(String remoteFile, String localPath) throws IOException {
-        return client.downloadFile(remoteFile, localPath);
+        return requirePool().execute(directory, s -> s.downloadFile(remoteFile, localPath));
+    }
+
+    /**
+     * Download a file in parallel byte ranges over several sessions.
+     */
+    public boolean pget(String remoteFile, String localPath, int segments) throws IOException {
+        return requirePool().execute(directory, s -> s.downloadFileSegmented(
+            remoteFile, localPath, segments, SegmentedDownloader.DEFAULT_MIN_SEGMENT_SIZE));
+    }
+
+    /**
+     * Download a remote directory and everything below it, several files at a time.
+     */
+    public TreeTransferProgress mget(String remoteDir, String localDir,
+                                     TreeTransferListener listener) throws IOException {
+        String absolute = requirePool().execute(directory,
+            s -> s.changeDirectory(remoteDir) ? s.getWorkingDirectory() : null);
+        if (absolute == null) {
+            throw new IOException("No such remote directory: " + remoteDir);
+        }
+        return new RecursiveDownloader(pool).download(absolute, Paths.get(localDir), listener);
     }
 
     /**
      * Upload a file.
      */
     public boolean put(String localFile, String remoteName) throws IOException {
-        return client.uploadFile(localFile, remoteName);
+        return requirePool().execute(directory, s -> s.uploadFile(localFile, remoteName));
+    }
+
+    /**
+     * Upload a local directory and everything below it, several files at a time.
+     */
+    public TreeTransferProgress mput(String localDir, String remoteDir,
+                                     TreeTransferListener listener) throws IOException {
+        requirePool();
+        return new RecursiveUploader(pool).upload(Paths.get(localDir), absolute(remoteDir), listener);
+    }
+
+    /**
+     * Upload the files listed in a manifest (see {@link BatchTransfer#readManifest}),
+     * largest first, spread over the pool's sessions.
+     */
+    public BatchTransfer.Result putAll(String manifest, TreeTransferListener listener) throws IOException {
+        requirePool();
+        List<BatchTransfer.Item> items = BatchTransfer.readManifest(Paths.get(manifest),
+            TransferJournal.Direction.UPLOAD, Paths.get(""), directory);
+        return new BatchTransfer(pool).upload(items, listener);
+    }
+
+    /**
+     * Download the files listed in a manifest into {@code localDir},
+     * largest first, spread over the pool's sessions.
+     */
+    public BatchTransfer.Result getAll(String manifest, String localDir,
+                                       TreeTransferListener listener) throws IOException {
+        requirePool();
+        List<BatchTransfer.Item> items = BatchTransfer.readManifest(Paths.get(manifest),
+            TransferJournal.Direction.DOWNLOAD, Paths.get(localDir), directory);
+        return new BatchTransfer(pool).download(items, listener);
+    }
+
+    /**
+     * Compare a local directory with a remote one; nothing is transferred.
+     */
+    public SyncEngine.ChangeSet compare(String localDir, String remoteDir,
+                                        SyncEngine.Direction direction) throws IOException {
+        requirePool();
+        return new SyncEngine(pool).compare(Paths.get(localDir), absolute(remoteDir), direction);
+    }
+
+    /**
+     * Transfer the differences found by {@link #compare}, optionally deleting extraneous files.
+     */
+    public TreeTransferProgress sync(SyncEngine.ChangeSet changes, boolean deleteExtraneous,
+                                     TreeTransferListener listener) throws IOException {
+        SyncEngine engine = new SyncEngine(requirePool());
+        engine.setDeleteExtraneous(deleteExtraneous);
+        return engine.apply(changes, listener);
     }
 
     /**
      * Change remote directory.
      */
-    public boolean cwd(String directory) throws IOException {
-        return client.changeDirectory(directory);
+    public boolean cwd(String target) throws IOException {
+        String changed = requirePool().execute(directory,
+            s -> s.changeDirectory(target) ? s.getWorkingDirectory() : null);
+        if (changed == null) {
+            return false;
+        }
+        directory = changed;
+        return true;
     }
 
     /**
      * Make remote directory.
      */
-    public boolean mkd(String directory) throws IOException {
-        return client.makeDirectory(directory);
+    public boolean mkd(String target) throws IOException {
+        return requirePool().execute(directory, s -> s.makeDirectory(target));
     }
 
-    /** 
+    /**
      * Delete a remote file.
      */
     public boolean delete(String remoteFile) throws IOException {
-        return client.deleteFile(remoteFile);
+        return requirePool().execute(directory, s -> s.deleteFile(remoteFile));
     }
 
-    /** 
+    /**
      * Remove a remote directory.
      */
-    public boolean rmdir(String directory) throws IOException {
-        return client.removeDirectory(directory);
+    public boolean rmdir(String target) throws IOException {
+        return requirePool().execute(directory, s -> s.removeDirectory(target));
+    }
+
+    /**
+     * Transfers to this server that a previous run left unfinished.
+     */
+    public List<TransferJournal.Entry> unfinished() throws IOException {
+        requirePool();
+        if (journal == null) {
+            return Collections.emptyList();
+        }
+        return journal.getUnfinished(client.getServer(), client.getPort(), client.getUsername());
+    }
+
+    /**
+     * Forget a journaled transfer without resuming it; it is not offered again.
+     */
+    public void discard(TransferJournal.Entry entry) throws IOException {
+        requirePool();
+        if (journal != null) {
+            journal.complete(entry);
+        }
+    }
+
+    /**
+     * Continue a journaled transfer from where it stopped.
+     */
+    public boolean resume(TransferJournal.Entry entry) throws IOException {
+        return requirePool().execute(null, s -> s.resume(entry));
+    }
+
+    /**
+     * Choose the data copy path (pooled buffer, or zero-copy channel for uploads) for transfers.
+     */
+    public void setTransferMode(TransferMode mode) throws IOException {
+        requirePool().setTransferMode(mode);
+    }
+
+    /**
+     * Current data copy path for transfers.
+     */
+    public TransferMode getTransferMode() throws IOException {
+        return requirePool().getTransferMode();
+    }
+
+    /**
+     * Limit on each single transfer, shared by the segments of a pget.
+     */
+    public void setTransferRateLimit(long bytesPerSecond) throws IOException {
+        requirePool().setTransferRateLimit(bytesPerSecond);
+    }
+
+    /**
+     * Limiter shared by all transfers to this server.
+     */
+    public RateLimiter hostRateLimiter() throws IOException {
+        return requirePool().getHostRateLimiter();
+    }
+
+    /**
+     * Measured round trip and bandwidth of this server, and the buffer sizes
+     * its data connections use.
+     */
+    public HostProfile hostProfile() throws IOException {
+        return requirePool().getHostProfile();
+    }
+
+    /**
+     * Per-transfer limit in bytes per second, 0 when unlimited.
+     */
+    public long getTransferRateLimit() throws IOException {
+        return requirePool().getTransferRateLimit();
+    }
+
+    /**
+     * Retry policy for commands that fail on a dropped connection or a transient reply.
+     */
+    public void setRetryPolicy(RetryPolicy policy) throws IOException {
+        requirePool().setRetryPolicy(policy);
+    }
+
+    public RetryPolicy getRetryPolicy() throws IOException {
+        return requirePool().getRetryPolicy();
+    }
+
+    /**
+     * Open the next data connection while a transfer finishes, to save a round trip per file.
+     */
+    public void setPreopenDataConnections(boolean preopen) throws IOException {
+        requirePool().setPreopenDataConnections(preopen);
+    }
+
+    public boolean isPreopenDataConnections() throws IOException {
+        return requirePool().isPreopenDataConnections();
     }
 
     /**
      * Disconnect from the server.
      */
     public void quit() throws IOException {
-        client.disconnect();
+        if (pool != null) {
+            pool.close();
+            if (journal != null) {
+                journal.close();
+            }
+        } else {
+            client.disconnect();
+        }
+    }
+
+    /** Absolute form of a path relative to the current remote directory. */
+    private String absolute(String remotePath) {
+        return remotePath.startsWith("/") ? remotePath : RecursiveDownloader.child(directory, remotePath);
+    }
+
+    private FTPSessionPool requirePool() throws IOException {
+        if (pool == null) {
+            throw new IOException("Not logged in");
+        }
+        return pool;
     }
 }
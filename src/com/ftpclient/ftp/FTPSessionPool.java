@@ -0,0 +1,526 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A pool of warm, logged-in FTPClient sessions to one server.
+ *
+ * Each FTPClient owns a single control connection and must only be used by
+ * one thread at a time, so callers borrow a session for the duration of an
+ * operation and hand it back afterwards. Idle sessions above the minimum
+ * size are closed after the idle timeout; the rest are kept alive with NOOP.
+ * Operations run through {@link #execute} are retried on a fresh session
+ * when theirs dies or ends on a transient reply (see {@link RetryPolicy}).
+ */
+public class FTPSessionPool implements AutoCloseable {
+    public static final int DEFAULT_MIN_SIZE = 1;
+    public static final int DEFAULT_MAX_SIZE = 4;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 30_000;
+
+    /** Idle sessions older than this get a NOOP before being handed out. */
+    private static final long VALIDATE_AFTER_MILLIS = 5_000;
+
+    private final String server;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<IdleSession> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService maintenance;
+    private int totalSessions = 0;    // idle + borrowed + being created
+    private volatile TransferMode transferMode;
+    private volatile TransferJournal journal;
+    private volatile RemoteListingCache listingCache;
+    private volatile long transferRateLimit;   // bytes/s per transfer, 0 for none
+    private volatile RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private volatile boolean preopenDataConnections = true;
+    private final Map<FTPClient, RateLimiter> lentLimiters = new ConcurrentHashMap<>();
+    private boolean closed = false;
+
+    /**
+     * Build a pool around an already logged-in session, which becomes the
+     * first idle member. Further sessions reuse its server and credentials.
+     */
+    public FTPSessionPool(FTPClient seed) {
+        this(seed, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    public FTPSessionPool(FTPClient seed, int minSize, int maxSize, long idleTimeoutMillis) {
+        if (!seed.isLoggedIn()) {
+            throw new IllegalArgumentException("Seed session must be logged in");
+        }
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException(
+                "Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.server = seed.getServer();
+        this.port = seed.getPort();
+        this.username = seed.getUsername();
+        this.password = seed.getPassword();
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.transferMode = seed.getTransferMode();
+        this.journal = seed.getTransferJournal();
+        this.listingCache = seed.getListingCache() != null
+            ? seed.getListingCache() : new RemoteListingCache();
+
+        idle.push(new IdleSession(seed));
+        totalSessions = 1;
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ftp-pool-" + server);
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, idleTimeoutMillis / 2);
+        maintenance.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /** Borrow a session, waiting up to the default timeout for one to free up. */
+    public FTPClient borrow() throws IOException {
+        return borrow(DEFAULT_BORROW_TIMEOUT_MILLIS);
+    }
+
+    /** Borrow a session, waiting up to {@code timeoutMillis} for one to free up. */
+    public FTPClient borrow(long timeoutMillis) throws IOException {
+        FTPClient session = take(timeoutMillis);
+        session.setTransferMode(transferMode);
+        session.setTransferJournal(journal);
+        session.setListingCache(listingCache);
+        session.setPreopenDataConnections(preopenDataConnections);
+        session.setTransferListener(null);   // set by the borrower, if it wants progress
+        // Each borrow is one transfer's worth of work, so it gets a bucket of its own
+        RateLimiter limiter = new RateLimiter(transferRateLimit, 0);
+        session.setRateLimiter(limiter);
+        lentLimiters.put(session, limiter);
+        limiter.setRate(transferRateLimit);   // in case the limit changed meanwhile
+        return session;
+    }
+
+    private FTPClient take(long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            IdleSession candidate = null;
+            boolean mayCreate = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new IOException("Session pool is closed");
+                    }
+                    if (!idle.isEmpty()) {
+                        candidate = idle.pop();
+                        break;
+                    }
+                    if (totalSessions < maxSize) {
+                        totalSessions++;
+                        mayCreate = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new IOException("Timed out waiting for a free FTP session");
+                    }
+                    available.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for an FTP session", e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (mayCreate) {
+                try {
+                    return openSession();
+                } catch (IOException | RuntimeException e) {
+                    discarded();
+                    throw e;
+                }
+            }
+
+            // Sessions that sat idle for a while may have been dropped by the server
+            long idleFor = System.currentTimeMillis() - candidate.since;
+            if (idleFor < VALIDATE_AFTER_MILLIS || isHealthy(candidate.client)) {
+                return candidate.client;
+            }
+            destroy(candidate.client);
+        }
+    }
+
+    /**
+     * Borrow a session already positioned in {@code directory}. CWD is only
+     * sent when the session's cached working directory differs.
+     */
+    public FTPClient borrow(String directory) throws IOException {
+        FTPClient session = borrow();
+        boolean positioned;
+        try {
+            positioned = directory == null
+                || directory.equals(session.getWorkingDirectory())
+                || session.changeDirectory(directory);
+        } catch (IOException | RuntimeException e) {
+            recycle(session);
+            throw e;
+        }
+        if (!positioned) {
+            release(session);
+            throw new IOException("Could not change to directory " + directory);
+        }
+        return session;
+    }
+
+    /** Hand a borrowed session back to the pool. */
+    public void release(FTPClient session) {
+        if (session == null) {
+            return;
+        }
+        lentLimiters.remove(session);
+        lock.lock();
+        try {
+            if (!closed && session.isLoggedIn()) {
+                idle.push(new IdleSession(session));
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        destroy(session);
+    }
+
+    /** Drop a borrowed session that is known to be broken. */
+    public void invalidate(FTPClient session) {
+        if (session != null) {
+            lentLimiters.remove(session);
+            destroy(session);
+        }
+    }
+
+    /**
+     * Run {@code action} on a session positioned in {@code directory} and
+     * return the session afterwards. A session that fails its NOOP after an
+     * error is discarded instead of being returned. If the session died or
+     * the action failed (threw, or returned false or null) on a transient
+     * reply, it runs again on another session as the retry policy allows.
+     * A successful action is never run again.
+     */
+    public <T> T execute(String directory, SessionAction<T> action) throws IOException {
+        RetryPolicy policy = retryPolicy;
+        for (int attempt = 1; ; attempt++) {
+            FTPClient session = borrow(directory);
+            boolean retry;
+            try {
+                session.clearLastReply();
+                T result = action.run(session);
+                retry = !RetryPolicy.succeeded(result) && policy.shouldRetry(session, attempt);
+                if (!retry) {
+                    release(session);
+                    return result;
+                }
+            } catch (IOException e) {
+                retry = !(e instanceof InterruptedIOException) && policy.shouldRetry(session, attempt);
+                if (!retry) {
+                    recycle(session);
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                recycle(session);
+                throw e;
+            }
+            recycle(session);
+            policy.pause(attempt);
+        }
+    }
+
+    /** Return a session after an error, or drop it if it no longer answers. */
+    private void recycle(FTPClient session) {
+        if (isHealthy(session)) {
+            release(session);
+        } else {
+            invalidate(session);
+        }
+    }
+
+    /** Work to perform on a borrowed session. */
+    public interface SessionAction<T> {
+        T run(FTPClient session) throws IOException;
+    }
+
+    /** Number of sessions currently idle in the pool. */
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Number of sessions open or being opened, borrowed or not. */
+    public int getTotalCount() {
+        lock.lock();
+        try {
+            return totalSessions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public TransferMode getTransferMode() {
+        return transferMode;
+    }
+
+    /** Transfer mode applied to every session from its next borrow on. */
+    public void setTransferMode(TransferMode transferMode) {
+        this.transferMode = transferMode;
+    }
+
+    public TransferJournal getTransferJournal() {
+        return journal;
+    }
+
+    /** Journal applied to every session from its next borrow on; null for none. */
+    public void setTransferJournal(TransferJournal journal) {
+        this.journal = journal;
+    }
+
+    public RemoteListingCache getListingCache() {
+        return listingCache;
+    }
+
+    /** Listing cache shared by every session from its next borrow on; null to disable. */
+    public void setListingCache(RemoteListingCache listingCache) {
+        this.listingCache = listingCache;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /** Retry policy for operations started from now on; {@link RetryPolicy#NONE} to disable. */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public boolean isPreopenDataConnections() {
+        return preopenDataConnections;
+    }
+
+    /**
+     * Whether sessions open the next data connection while a transfer
+     * finishes (see {@link FTPClient#setPreopenDataConnections}); on by
+     * default, applied from each session's next borrow on.
+     */
+    public void setPreopenDataConnections(boolean preopenDataConnections) {
+        this.preopenDataConnections = preopenDataConnections;
+    }
+
+    public long getTransferRateLimit() {
+        return transferRateLimit;
+    }
+
+    /**
+     * Limit each transfer on a borrowed session to {@code bytesPerSecond};
+     * 0 for no limit. Transfers already running slow down or speed up at once.
+     */
+    public void setTransferRateLimit(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Rate limit must not be negative");
+        }
+        this.transferRateLimit = bytesPerSecond;
+        for (RateLimiter limiter : lentLimiters.values()) {
+            limiter.setRate(bytesPerSecond);
+        }
+    }
+
+    /** Limiter shared by every transfer to this pool's server. */
+    public RateLimiter getHostRateLimiter() {
+        return RateLimiter.forHost(server, port);
+    }
+
+    /** Link measurements and buffer settings shared by all sessions to this server. */
+    public HostProfile getHostProfile() {
+        return HostProfile.forHost(server, port);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Close idle sessions now; borrowed ones are closed when released. */
+    @Override
+    public void close() {
+        Deque<IdleSession> toClose;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        maintenance.shutdownNow();
+        for (IdleSession s : toClose) {
+            destroy(s.client);
+        }
+    }
+
+    /** Evict sessions idle past the timeout, NOOP the rest, top up to minSize. */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        Deque<IdleSession> toCheck = new ArrayDeque<>();
+        Deque<IdleSession> toEvict = new ArrayDeque<>();
+
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            // Oldest sessions sit at the tail; take them out while they are checked
+            Iterator<IdleSession> it = idle.descendingIterator();
+            int keep = totalSessions;
+            while (it.hasNext()) {
+                IdleSession s = it.next();
+                long idleFor = now - s.since;
+                if (idleFor >= idleTimeoutMillis && keep > minSize) {
+                    it.remove();
+                    toEvict.add(s);
+                    keep--;
+                } else if (idleFor >= VALIDATE_AFTER_MILLIS) {
+                    it.remove();
+                    toCheck.add(s);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (IdleSession s : toEvict) {
+            destroy(s.client);
+        }
+        for (IdleSession s : toCheck) {
+            if (isHealthy(s.client)) {
+                lock.lock();
+                try {
+                    if (!closed) {
+                        // Keepalive does not count as use, so keep the original timestamp
+                        idle.addLast(s);
+                        available.signal();
+                        continue;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            destroy(s.client);
+        }
+
+        warmUp();
+    }
+
+    /** Open sessions until the pool holds at least minSize. */
+    private void warmUp() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || totalSessions >= minSize) {
+                    return;
+                }
+                totalSessions++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                release(openSession());
+            } catch (IOException | RuntimeException e) {
+                discarded();
+                return;
+            }
+        }
+    }
+
+    private FTPClient openSession() throws IOException {
+        FTPClient session = new FTPClient(server, port);
+        session.connect();
+        if (!session.login(username, password)) {
+            session.disconnect();
+            throw new IOException("Login failed for pooled session");
+        }
+        return session;
+    }
+
+    private static boolean isHealthy(FTPClient session) {
+        try {
+            return session.noop();
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void destroy(FTPClient session) {
+        session.disconnect();
+        discarded();
+    }
+
+    private void discarded() {
+        lock.lock();
+        try {
+            totalSessions--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** An idle session and the time it was last handed back. */
+    private static class IdleSession {
+        final FTPClient client;
+        final long since;
+
+        IdleSession(FTPClient client) {
+            this.client = client;
+            this.since = System.currentTimeMillis();
+        }
+    }
+}
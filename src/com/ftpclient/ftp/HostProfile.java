@@ -0,0 +1,223 @@
+package com.ftpclient.ftp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What sessions have learned about the link to one server, and the buffer
+ * sizes its data connections use.
+ *
+ * TCP cannot move more than one window per round trip, so a data
+ * connection needs socket buffers of at least bandwidth × RTT (the
+ * bandwidth-delay product) to fill the link. The round trip is measured
+ * from quick control commands (TYPE, PASV, NOOP and the like) and the
+ * bandwidth from finished transfers. Data connections get twice the
+ * product, within [{@value #MIN_SOCKET_BUFFER}, {@value #MAX_SOCKET_BUFFER}]
+ * bytes, set before they connect so the window scale covers it. Until a
+ * transfer has been measured the link is taken to be
+ * {@value #ASSUMED_BANDWIDTH} bytes/s. A transfer that ran as fast as its
+ * buffers allowed may have been held back by them, so the next one gets
+ * twice as much. Buffers are never made smaller than the operating
+ * system's default; the kernel may also cap them, so the sizes that took
+ * effect are what {@link TransferMetrics.TransferStats} reports.
+ *
+ * Stream mode copies through a buffer of a quarter of the socket buffer,
+ * within [{@value #MIN_COPY_BUFFER}, {@value #MAX_COPY_BUFFER}] bytes.
+ *
+ * Both sizes can be fixed by hand per server, and
+ * {@link #SYSTEM_DEFAULT} leaves the socket buffers to the operating
+ * system (on Linux that keeps receive autotuning on).
+ */
+public class HostProfile {
+    /** Socket buffer setting: size from measurements. */
+    public static final int AUTOMATIC = 0;
+    /** Socket buffer setting: leave the operating system's default alone. */
+    public static final int SYSTEM_DEFAULT = -1;
+
+    static final int MIN_SOCKET_BUFFER = 64 * 1024;
+    static final int MAX_SOCKET_BUFFER = 16 * 1024 * 1024;
+    static final int MIN_COPY_BUFFER = BufferPool.MIN_BUFFER_SIZE;
+    static final int MAX_COPY_BUFFER = BufferPool.MAX_BUFFER_SIZE;
+    /** Bandwidth assumed before any transfer was measured (1 Gbit/s). */
+    static final long ASSUMED_BANDWIDTH = 125_000_000;
+    /** Transfers shorter than this say more about slow start than about the link. */
+    private static final long MIN_SAMPLE_BYTES = 1024 * 1024;
+    private static final int MIN_SAMPLE_ROUND_TRIPS = 4;
+
+    private static final Map<String, HostProfile> HOSTS = new ConcurrentHashMap<>();
+
+    private final String host;
+    private volatile int socketBufferSize = AUTOMATIC;
+    private volatile int copyBufferSize = AUTOMATIC;
+
+    // Estimates; written under the lock, read without it
+    private volatile long smoothedRttNanos;    // 0 until the first sample
+    private volatile long bandwidth;           // bytes per second, 0 until measured
+    private volatile boolean windowLimited;    // last sample ran as fast as its buffers allowed
+    private volatile int lastSocketBuffer;     // socket buffer of that sample
+
+    /** Profile not registered for any server, for tests and tools. */
+    public HostProfile() {
+        this("unknown");
+    }
+
+    private HostProfile(String host) {
+        this.host = host;
+    }
+
+    /** Profile shared by every session to {@code server}:{@code port}. */
+    public static HostProfile forHost(String server, int port) {
+        return HOSTS.computeIfAbsent(server + ":" + port, HostProfile::new);
+    }
+
+    /**
+     * Socket buffer size for new data connections: {@link #AUTOMATIC},
+     * {@link #SYSTEM_DEFAULT}, or bytes.
+     */
+    public void setSocketBufferSize(int bytes) {
+        if (bytes < SYSTEM_DEFAULT) {
+            throw new IllegalArgumentException("Invalid socket buffer size: " + bytes);
+        }
+        this.socketBufferSize = bytes;
+    }
+
+    public int getSocketBufferSize() {
+        return socketBufferSize;
+    }
+
+    /** Stream-mode copy buffer size: {@link #AUTOMATIC} or bytes. */
+    public void setCopyBufferSize(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Invalid copy buffer size: " + bytes);
+        }
+        this.copyBufferSize = bytes;
+    }
+
+    public int getCopyBufferSize() {
+        return copyBufferSize;
+    }
+
+    /** Forget the measurements; the settings stay. */
+    public synchronized void resetEstimates() {
+        smoothedRttNanos = 0;
+        bandwidth = 0;
+        windowLimited = false;
+        lastSocketBuffer = 0;
+    }
+
+    /** Smoothed control connection round trip, or 0 if none was measured. */
+    public long getRttNanos() {
+        return smoothedRttNanos;
+    }
+
+    /** Measured bandwidth in bytes per second, or 0 if no transfer was long enough. */
+    public long getBandwidth() {
+        return bandwidth;
+    }
+
+    /** Bandwidth × RTT in bytes, with the assumed bandwidth until one is measured. */
+    public long getBandwidthDelayProduct() {
+        long rtt = smoothedRttNanos;
+        long rate = bandwidth > 0 ? bandwidth : ASSUMED_BANDWIDTH;
+        return (long) (rate * (rtt / 1e9));
+    }
+
+    /**
+     * Socket buffer for the next data connection, or 0 to leave the
+     * operating system's default. Callers keep the default when it is larger.
+     */
+    int socketBufferFor() {
+        int setting = socketBufferSize;
+        if (setting == SYSTEM_DEFAULT) {
+            return 0;
+        }
+        if (setting > 0) {
+            return setting;
+        }
+        if (smoothedRttNanos == 0) {
+            return 0;   // nothing to go by yet
+        }
+        long wanted = 2 * getBandwidthDelayProduct();
+        if (windowLimited) {
+            wanted = Math.max(wanted, 2L * lastSocketBuffer);
+        }
+        return (int) clamp(wanted, MIN_SOCKET_BUFFER, MAX_SOCKET_BUFFER);
+    }
+
+    /** Stream-mode copy buffer for a data connection with {@code socketBuffer} bytes of buffering. */
+    int copyBufferFor(int socketBuffer) {
+        int setting = copyBufferSize;
+        if (setting > 0) {
+            return setting;
+        }
+        return (int) clamp(Integer.highestOneBit(Math.max(socketBuffer / 4, 1)),
+                           MIN_COPY_BUFFER, MAX_COPY_BUFFER);
+    }
+
+    /**
+     * {@code verb} got its first reply after {@code nanos}. Only commands
+     * the server answers without waiting on disks or logins count as
+     * round trips.
+     */
+    void commandAnswered(String verb, long nanos) {
+        switch (verb) {
+            case "NOOP":
+            case "TYPE":
+            case "PASV":
+            case "EPSV":
+            case "PWD":
+            case "CWD":
+            case "REST":
+            case "SYST":
+            case "FEAT":
+                rttSample(nanos);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Smoothed with gain 1/8, like TCP's own estimator (RFC 6298). */
+    private synchronized void rttSample(long nanos) {
+        smoothedRttNanos = smoothedRttNanos == 0 ? nanos : smoothedRttNanos + (nanos - smoothedRttNanos) / 8;
+    }
+
+    /**
+     * A transfer moved {@code bytes} in {@code nanos} over a data connection
+     * with {@code socketBuffer} bytes of buffering.
+     */
+    synchronized void transferMeasured(long bytes, long nanos, int socketBuffer) {
+        long rtt = smoothedRttNanos;
+        if (bytes < MIN_SAMPLE_BYTES || nanos <= 0 || nanos < MIN_SAMPLE_ROUND_TRIPS * rtt) {
+            return;
+        }
+        long rate = (long) (bytes * 1e9 / nanos);
+        // Newer samples count more, as routes and competing traffic change
+        bandwidth = bandwidth == 0 ? rate : bandwidth + (rate - bandwidth) / 4;
+        // Half the buffer goes to kernel bookkeeping; the other half is the window
+        long windowRate = rtt > 0 && socketBuffer > 0 ? (long) (socketBuffer / 2 * 1e9 / rtt) : 0;
+        windowLimited = windowRate > 0 && rate >= windowRate * 3 / 4;
+        lastSocketBuffer = socketBuffer;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    @Override
+    public String toString() {
+        int socket = socketBufferSize;
+        int copy = copyBufferSize;
+        int tuned = socketBufferFor();
+        return String.format("%s: rtt %s, bandwidth %s, socket buffer %s, copy buffer %s",
+            host,
+            smoothedRttNanos == 0 ? "unknown"
+                : String.format("%.1f ms", smoothedRttNanos / (double) TimeUnit.MILLISECONDS.toNanos(1)),
+            bandwidth == 0 ? "unknown" : bandwidth / 1024 + " KB/s",
+            socket == SYSTEM_DEFAULT ? "system default"
+                : socket > 0 ? socket / 1024 + " KB"
+                : tuned > 0 ? "auto (" + tuned / 1024 + " KB)" : "auto",
+            copy > 0 ? copy / 1024 + " KB" : "auto");
+    }
+}
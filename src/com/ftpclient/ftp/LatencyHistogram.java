@@ -0,0 +1,115 @@
+package com.ftpclient.ftp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in power-of-two microsecond buckets.
+ *
+ * Bucket 0 counts everything under 2 µs, bucket i the range
+ * [2^i, 2^(i+1)) µs, and the last bucket everything longer. Percentiles
+ * are therefore upper bounds accurate to a factor of two, which is plenty
+ * for telling a 1 ms reply from a 40 ms one. Recording is a few atomic
+ * adds and never blocks.
+ */
+public class LatencyHistogram {
+    /** Buckets up to 2^31 µs, about 36 minutes. */
+    public static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /** Count one duration. */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = micros < 2 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // retry until our value is in or a larger one won
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** Forget everything recorded so far. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    /** Consistent-enough copy for reporting; concurrent records may be half in. */
+    public Summary summarize() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = buckets.get(i);
+        }
+        return new Summary(copy, count.sum(), totalNanos.sum(), maxNanos.get());
+    }
+
+    /** Immutable view of a histogram at one point in time. */
+    public static class Summary {
+        private final long[] buckets;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Summary(long[] buckets, long count, long totalNanos, long maxNanos) {
+            this.buckets = buckets;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() { return count; }
+        public double getMeanMillis() { return count == 0 ? 0 : totalNanos / 1e6 / count; }
+        public double getMaxMillis() { return maxNanos / 1e6; }
+        /** Count in bucket {@code i}; see the class comment for the ranges. */
+        public long getBucketCount(int i) { return buckets[i]; }
+
+        /**
+         * Upper bound of the bucket holding the {@code percentile}th duration
+         * (0-100), capped at the largest duration seen; 0 when empty.
+         */
+        public double getPercentileMillis(double percentile) {
+            long total = 0;
+            for (long b : buckets) {
+                total += b;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= Math.max(1, rank)) {
+                    double upperMillis = (2L << i) / 1e3;
+                    return Math.min(upperMillis, getMaxMillis());
+                }
+            }
+            return getMaxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms",
+                count, getMeanMillis(), getPercentileMillis(50), getPercentileMillis(99), getMaxMillis());
+        }
+    }
+}
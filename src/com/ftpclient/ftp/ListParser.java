@@ -0,0 +1,391 @@
+package com.ftpclient.ftp;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+/**
+ * Parser for LIST output lines in Unix ("ls -l"), DOS/IIS and EPLF format.
+ *
+ * Each line is scanned once by index: no regex, no split arrays, and the
+ * only strings created per line are the name and, when it differs from the
+ * previous line's, the permission string. One instance is meant to parse a
+ * whole listing on one thread; it is not thread-safe.
+ */
+public class ListParser {
+    private static final int MAX_TOKENS = 16;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    // Token boundaries of the current line, reused from line to line
+    private final int[] tokenStart = new int[MAX_TOKENS];
+    private final int[] tokenEnd = new int[MAX_TOKENS];
+    private final ZoneId zone;
+    private final long fixedOffsetMillis;     // Long.MIN_VALUE when the zone has DST rules
+    private final int currentYear;
+    private final long latestPlausibleDay;   // epoch day; "Mon dd hh:mm" after this is last year
+    private String lastPermissions = "";
+
+    /** Parser that reads LIST times as the local time zone. */
+    public ListParser() {
+        this(ZoneId.systemDefault());
+    }
+
+    /** Parser that reads LIST times (which carry no zone) as {@code zone}. */
+    public ListParser(ZoneId zone) {
+        this.zone = zone;
+        ZoneRules rules = zone.getRules();
+        this.fixedOffsetMillis = rules.isFixedOffset()
+            ? rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L : Long.MIN_VALUE;
+        LocalDate today = LocalDate.now(zone);
+        this.currentYear = today.getYear();
+        this.latestPlausibleDay = today.toEpochDay() + 1;
+    }
+
+    /**
+     * Parse one LIST line. Returns null for lines that describe no entry
+     * ("total 42", blank lines); lines in an unknown format come back as
+     * {@link RemoteEntry.Type#OTHER} named after the whole line.
+     */
+    public RemoteEntry parse(CharSequence line) {
+        int length = line.length();
+        while (length > 0 && (line.charAt(length - 1) == '\r' || line.charAt(length - 1) == '\n')) {
+            length--;
+        }
+        if (length == 0) {
+            return null;
+        }
+        char first = line.charAt(0);
+        if (first == '+') {
+            return parseEplf(line, length);
+        }
+        int tokens = tokenize(line, length);
+        if (tokens == 0 || (tokens == 2 && regionEquals(line, 0, "total"))) {
+            return null;
+        }
+        if (Character.isDigit(first)) {
+            RemoteEntry dos = parseDos(line, length, tokens);
+            if (dos != null) {
+                return dos;
+            }
+        }
+        RemoteEntry unix = parseUnix(line, length, tokens);
+        if (unix != null) {
+            return unix;
+        }
+        String whole = line.subSequence(0, length).toString();
+        return new RemoteEntry(whole, indexOf(line, length, "<DIR>") >= 0
+            ? RemoteEntry.Type.DIRECTORY : RemoteEntry.Type.OTHER, -1, -1, null, null);
+    }
+
+    // ---- Unix: perms links owner [group] size month day time|year name ----
+
+    private RemoteEntry parseUnix(CharSequence line, int length, int tokens) {
+        RemoteEntry.Type type;
+        switch (line.charAt(0)) {
+            case 'd': type = RemoteEntry.Type.DIRECTORY; break;
+            case 'l': type = RemoteEntry.Type.LINK; break;
+            case '-': type = RemoteEntry.Type.FILE; break;
+            case 'b': case 'c': case 'p': case 's': type = RemoteEntry.Type.OTHER; break;
+            default: return null;
+        }
+        if (tokenEnd[0] < 10) {
+            return null;
+        }
+        // The date is the one fixed landmark; owner or group may be missing
+        for (int m = 3; m + 2 < tokens; m++) {
+            int month = month(line, m);
+            if (month == 0 || !isNumber(line, m + 1)) {
+                continue;
+            }
+            long modify = unixDate(line, month, m + 1, m + 2);
+            if (modify == Long.MIN_VALUE) {
+                continue;
+            }
+            // Exactly one space separates the date from the name; the rest is the name
+            int nameStart = tokenEnd[m + 2] + 1;
+            if (nameStart >= length) {
+                return null;
+            }
+            int nameEnd = length;
+            if (type == RemoteEntry.Type.LINK) {
+                int arrow = indexOf(line, nameStart, length, " -> ");
+                if (arrow > nameStart) {
+                    nameEnd = arrow;
+                }
+            }
+            // Directories and device files ("1,   3") carry no meaningful size
+            long size = type == RemoteEntry.Type.FILE || type == RemoteEntry.Type.LINK
+                ? number(line, m - 1) : -1;
+            return new RemoteEntry(line.subSequence(nameStart, nameEnd).toString(), type, size,
+                                   modify, permissions(line), null);
+        }
+        return null;
+    }
+
+    /** "May 25 12:00" (within the last year) or "May 25 2023". */
+    private long unixDate(CharSequence line, int month, int dayToken, int timeToken) {
+        int day = (int) number(line, dayToken);
+        int start = tokenStart[timeToken], end = tokenEnd[timeToken];
+        if (day < 1 || day > 31) {
+            return Long.MIN_VALUE;
+        }
+        if (end - start == 5 && line.charAt(start + 2) == ':') {
+            int hour = digits(line, start, start + 2);
+            int minute = digits(line, start + 3, start + 5);
+            if (hour < 0 || minute < 0) {
+                return Long.MIN_VALUE;
+            }
+            long epochDay = epochDay(currentYear, month, day);
+            if (epochDay > latestPlausibleDay) {
+                epochDay = epochDay(currentYear - 1, month, day);
+            }
+            return toMillis(epochDay, hour, minute, 0);
+        }
+        if (end - start == 4) {
+            int year = digits(line, start, end);
+            return year < 0 ? Long.MIN_VALUE : toMillis(epochDay(year, month, day), 0, 0, 0);
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /** Permission bits after the type character, shared with the previous line when equal. */
+    private String permissions(CharSequence line) {
+        int start = 1, end = Math.min(tokenEnd[0], 10);
+        String last = lastPermissions;
+        if (last.length() == end - start && regionEquals(line, start, last)) {
+            return last;
+        }
+        lastPermissions = line.subSequence(start, end).toString();
+        return lastPermissions;
+    }
+
+    // ---- DOS/IIS: MM-DD-YY[YY] hh:mm[AM|PM] <DIR>|size name ----
+
+    private RemoteEntry parseDos(CharSequence line, int length, int tokens) {
+        if (tokens < 4) {
+            return null;
+        }
+        int ds = tokenStart[0], de = tokenEnd[0];
+        int dateLength = de - ds;
+        if ((dateLength != 8 && dateLength != 10)
+                || line.charAt(ds + 2) != '-' || line.charAt(ds + 5) != '-') {
+            return null;
+        }
+        int month = digits(line, ds, ds + 2);
+        int day = digits(line, ds + 3, ds + 5);
+        int year = digits(line, ds + 6, de);
+        if (month < 1 || month > 12 || day < 1 || day > 31 || year < 0) {
+            return null;
+        }
+        if (dateLength == 8) {
+            year += year < 70 ? 2000 : 1900;
+        }
+
+        int ts = tokenStart[1], te = tokenEnd[1];
+        int colon = indexOf(line, ts, te, ":");
+        if (colon < 0) {
+            return null;
+        }
+        int hour = digits(line, ts, colon);
+        int minute = digits(line, colon + 1, Math.min(colon + 3, te));
+        if (hour < 0 || minute < 0) {
+            return null;
+        }
+        if (te - colon == 5) {   // "hh:mmAM" / "hh:mmPM"
+            boolean pm = Character.toUpperCase(line.charAt(te - 2)) == 'P';
+            hour = hour % 12 + (pm ? 12 : 0);
+        }
+
+        RemoteEntry.Type type;
+        long size;
+        if (regionEquals(line, tokenStart[2], "<DIR>")) {
+            type = RemoteEntry.Type.DIRECTORY;
+            size = -1;
+        } else {
+            size = number(line, 2);
+            if (size < 0) {
+                return null;
+            }
+            type = RemoteEntry.Type.FILE;
+        }
+        // The name keeps any inner spaces: it runs from its first character to the end
+        String name = line.subSequence(tokenStart[3], length).toString();
+        return new RemoteEntry(name, type, size,
+                               toMillis(epochDay(year, month, day), hour, minute, 0), null, null);
+    }
+
+    // ---- EPLF: +fact,fact,...<TAB>name ----
+
+    private RemoteEntry parseEplf(CharSequence line, int length) {
+        int tab = indexOf(line, 1, length, "\t");
+        if (tab < 0) {
+            return null;
+        }
+        RemoteEntry.Type type = RemoteEntry.Type.OTHER;
+        long size = -1, modify = -1;
+        String id = null, perms = null;
+        int factStart = 1;
+        while (factStart < tab) {
+            int factEnd = indexOf(line, factStart, tab, ",");
+            if (factEnd < 0) {
+                factEnd = tab;
+            }
+            if (factEnd > factStart) {
+                switch (line.charAt(factStart)) {
+                    case '/': type = RemoteEntry.Type.DIRECTORY; break;
+                    case 'r': if (type == RemoteEntry.Type.OTHER) type = RemoteEntry.Type.FILE; break;
+                    case 's': size = parseLong(line, factStart + 1, factEnd); break;
+                    case 'm':
+                        long seconds = parseLong(line, factStart + 1, factEnd);
+                        modify = seconds < 0 ? -1 : seconds * 1000;
+                        break;
+                    case 'i': id = line.subSequence(factStart + 1, factEnd).toString(); break;
+                    case 'u':
+                        if (factEnd - factStart > 1 && line.charAt(factStart + 1) == 'p') {
+                            perms = line.subSequence(factStart + 2, factEnd).toString();
+                        }
+                        break;
+                    default: break;
+                }
+            }
+            factStart = factEnd + 1;
+        }
+        return new RemoteEntry(line.subSequence(tab + 1, length).toString(), type, size,
+                               modify, perms, id);
+    }
+
+    // ---- scanning helpers ----
+
+    /** Record whitespace-separated token boundaries; returns the token count (capped). */
+    private int tokenize(CharSequence line, int length) {
+        int count = 0, i = 0;
+        while (i < length && count < MAX_TOKENS) {
+            while (i < length && (line.charAt(i) == ' ' || line.charAt(i) == '\t')) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            tokenStart[count] = i;
+            while (i < length && line.charAt(i) != ' ' && line.charAt(i) != '\t') {
+                i++;
+            }
+            tokenEnd[count++] = i;
+        }
+        return count;
+    }
+
+    /** 1-12 if token {@code t} is an English month abbreviation, else 0. */
+    private int month(CharSequence line, int t) {
+        int s = tokenStart[t];
+        if (tokenEnd[t] - s != 3) {
+            return 0;
+        }
+        int key = (Character.toLowerCase(line.charAt(s)) << 16)
+                | (Character.toLowerCase(line.charAt(s + 1)) << 8)
+                | Character.toLowerCase(line.charAt(s + 2));
+        switch (key) {
+            case ('j' << 16) | ('a' << 8) | 'n': return 1;
+            case ('f' << 16) | ('e' << 8) | 'b': return 2;
+            case ('m' << 16) | ('a' << 8) | 'r': return 3;
+            case ('a' << 16) | ('p' << 8) | 'r': return 4;
+            case ('m' << 16) | ('a' << 8) | 'y': return 5;
+            case ('j' << 16) | ('u' << 8) | 'n': return 6;
+            case ('j' << 16) | ('u' << 8) | 'l': return 7;
+            case ('a' << 16) | ('u' << 8) | 'g': return 8;
+            case ('s' << 16) | ('e' << 8) | 'p': return 9;
+            case ('o' << 16) | ('c' << 8) | 't': return 10;
+            case ('n' << 16) | ('o' << 8) | 'v': return 11;
+            case ('d' << 16) | ('e' << 8) | 'c': return 12;
+            default: return 0;
+        }
+    }
+
+    private boolean isNumber(CharSequence line, int t) {
+        return number(line, t) >= 0;
+    }
+
+    /** Token {@code t} as a non-negative number, or -1. */
+    private long number(CharSequence line, int t) {
+        return parseLong(line, tokenStart[t], tokenEnd[t]);
+    }
+
+    private static long parseLong(CharSequence line, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int digits(CharSequence line, int start, int end) {
+        return (int) parseLong(line, start, end);
+    }
+
+    private static boolean regionEquals(CharSequence line, int start, String text) {
+        if (start + text.length() > line.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (line.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence line, int length, String text) {
+        return indexOf(line, 0, length, text);
+    }
+
+    private static int indexOf(CharSequence line, int from, int to, String text) {
+        for (int i = from; i + text.length() <= to; i++) {
+            if (regionEquals(line, i, text)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Days since 1970-01-01 for a proleptic Gregorian date (no allocation). */
+    private static long epochDay(int year, int month, int day) {
+        long y = year, m = month;
+        long total = 365 * y;
+        if (y >= 0) {
+            total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        } else {
+            total -= y / -4 - y / -100 + y / -400;
+        }
+        total += (367 * m - 362) / 12;
+        total += day - 1;
+        if (m > 2) {
+            total--;
+            boolean leap = (y % 4 == 0) && (y % 100 != 0 || y % 400 == 0);
+            if (!leap) {
+                total--;
+            }
+        }
+        return total - 719528;   // days from year 0 to 1970
+    }
+
+    /** Local wall-clock time in this parser's zone to epoch millis. */
+    private long toMillis(long epochDay, int hour, int minute, int second) {
+        long localMillis = epochDay * MILLIS_PER_DAY + ((hour * 60L + minute) * 60 + second) * 1000;
+        if (fixedOffsetMillis != Long.MIN_VALUE) {
+            return localMillis - fixedOffsetMillis;
+        }
+        LocalDateTime local = LocalDateTime.of(LocalDate.ofEpochDay(epochDay),
+                                               LocalTime.of(hour % 24, minute, second));
+        return local.atZone(zone).toInstant().toEpochMilli();
+    }
+}
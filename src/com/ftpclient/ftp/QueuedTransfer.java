@@ -0,0 +1,105 @@
+package com.ftpclient.ftp;
+
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One file transfer waiting in, running in or finished by a
+ * {@link TransferQueue}. State changes are made by the queue only.
+ */
+public class QueuedTransfer {
+    public enum State {
+        PENDING, ACTIVE, PAUSED, DONE, FAILED, CANCELLED;
+
+        /** True for states a transfer never leaves. */
+        public boolean isFinal() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final long id;
+    private final TransferJournal.Direction direction;
+    private final FTPSessionPool pool;
+    private final String remotePath;
+    private final String localPath;
+    private final long size;
+    private final CompletableFuture<QueuedTransfer> completion = new CompletableFuture<>();
+    private final RateLimiter rateLimiter;
+    private final TransferProgress progress = new TransferProgress();
+
+    // Guarded by the owning queue
+    private int priority;
+    private State state = State.PENDING;
+    private Exception error;
+    private boolean started;          // bytes may have moved; continue with REST
+    private State stopRequest;        // PAUSED or CANCELLED while active
+    private FTPClient session;        // while active
+    private TransferJournal.Entry journalEntry;   // set once the transfer is journaled
+    private boolean discard;          // cancelled on purpose; drop the journal entry
+
+    QueuedTransfer(long id, TransferJournal.Direction direction, FTPSessionPool pool,
+                   String remotePath, String localPath, long size, int priority) {
+        this.id = id;
+        this.direction = direction;
+        this.pool = pool;
+        this.remotePath = remotePath;
+        this.localPath = localPath;
+        this.size = size;
+        this.priority = priority;
+        this.rateLimiter = new RateLimiter(pool.getTransferRateLimit(), 0);
+    }
+
+    /** Enqueue order; unique within a queue. */
+    public long getId() { return id; }
+    public TransferJournal.Direction getDirection() { return direction; }
+    /** Absolute remote path. */
+    public String getRemotePath() { return remotePath; }
+    public String getLocalPath() { return localPath; }
+    /** Size in bytes, or -1 if unknown. */
+    public long getSize() { return size; }
+    /** Server this transfer counts against for the per-host limit. */
+    public String getHost() { return pool.getServer() + ":" + pool.getPort(); }
+
+    public synchronized int getPriority() { return priority; }
+    public synchronized State getState() { return state; }
+    /** Why the transfer failed, or null. */
+    public synchronized Exception getError() { return error; }
+
+    /** Limit for this transfer alone; starts at the pool's per-transfer limit and may be changed any time. */
+    public RateLimiter getRateLimiter() { return rateLimiter; }
+    /** Bytes moved and speed of the current or last attempt, updated as data flows. */
+    public TransferProgress getProgress() { return progress; }
+
+    /** Completes, never exceptionally, once the transfer is done, failed or cancelled. */
+    public CompletableFuture<QueuedTransfer> completion() {
+        return completion;
+    }
+
+    FTPSessionPool getPool() { return pool; }
+
+    synchronized void setPriority(int priority) { this.priority = priority; }
+    synchronized void setState(State state) { this.state = state; }
+    synchronized void setError(Exception error) { this.error = error; }
+    synchronized boolean isStarted() { return started; }
+    synchronized void setStarted(boolean started) { this.started = started; }
+    synchronized State getStopRequest() { return stopRequest; }
+    synchronized void setStopRequest(State stopRequest) { this.stopRequest = stopRequest; }
+    synchronized FTPClient getSession() { return session; }
+    synchronized void setSession(FTPClient session) { this.session = session; }
+    synchronized TransferJournal.Entry getJournalEntry() { return journalEntry; }
+    synchronized void setJournalEntry(TransferJournal.Entry journalEntry) { this.journalEntry = journalEntry; }
+    synchronized boolean isDiscard() { return discard; }
+    synchronized void setDiscard(boolean discard) { this.discard = discard; }
+
+    @Override
+    public String toString() {
+        String name = direction == TransferJournal.Direction.UPLOAD
+            ? String.valueOf(Paths.get(localPath).getFileName())
+            : RemoteListingCache.nameOf(remotePath);
+        return "[" + getState() + "] "
+            + (direction == TransferJournal.Direction.UPLOAD ? "↑ " : "↓ ") + name
+            + (progress.isRunning() && progress.getFraction() >= 0
+                ? String.format(" %.0f%%", progress.getFraction() * 100) : "")
+            + (rateLimiter.isLimited() ? " (" + rateLimiter + ")" : "");
+    }
+}
@@ -0,0 +1,178 @@
+package com.ftpclient.ftp;
+
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting how many bytes per second pass through it.
+ *
+ * The bucket refills at the configured rate and holds at most the burst
+ * size, so a transfer that was idle may briefly run faster than the rate.
+ * Callers take tokens after (or before) moving data; a caller that takes
+ * more than the bucket holds is made to wait until the debt is paid off,
+ * which keeps the average exact without splitting reads. The rate can be
+ * changed at any time and waiting callers pick the change up at once. A
+ * rate of 0 means unlimited; in that state {@link #acquire(long)} is a
+ * single volatile read.
+ *
+ * Transfers answer to up to three limiters: their own, the one for their
+ * server ({@link #forHost(String, int)}) and the {@link #global()} one.
+ */
+public class RateLimiter {
+    /** Smallest amount moved by one throttled read, write or transferTo call. */
+    private static final long MIN_CHUNK_SIZE = 4 * 1024;
+    /** Largest amount moved by one throttled read, write or transferTo call. */
+    private static final long MAX_CHUNK_SIZE = 1024 * 1024;
+
+    private static final RateLimiter GLOBAL = new RateLimiter();
+    private static final Map<String, RateLimiter> HOSTS = new ConcurrentHashMap<>();
+
+    private volatile long bytesPerSecond;
+    private long burstBytes;       // 0: one second's worth of the rate
+    private double tokens;         // may go negative while callers wait
+    private long refilledAt;       // System.nanoTime() of the last refill
+
+    /** Unlimited until a rate is set. */
+    public RateLimiter() {
+        this(0, 0);
+    }
+
+    /**
+     * @param bytesPerSecond average rate, or 0 for unlimited
+     * @param burstBytes     most bytes let through at once after an idle
+     *                       spell, or 0 for one second's worth of the rate
+     */
+    public RateLimiter(long bytesPerSecond, long burstBytes) {
+        setLimit(bytesPerSecond, burstBytes);
+    }
+
+    /** Limiter shared by every transfer in this process. */
+    public static RateLimiter global() {
+        return GLOBAL;
+    }
+
+    /** Limiter shared by every transfer to {@code server}:{@code port}. */
+    public static RateLimiter forHost(String server, int port) {
+        return HOSTS.computeIfAbsent(server + ":" + port, k -> new RateLimiter());
+    }
+
+    /** Change the rate, keeping the burst setting; 0 lifts the limit. */
+    public synchronized void setRate(long bytesPerSecond) {
+        setLimit(bytesPerSecond, burstBytes);
+    }
+
+    /** Change rate and burst; waiting callers are re-timed against the new values. */
+    public synchronized void setLimit(long bytesPerSecond, long burstBytes) {
+        if (bytesPerSecond < 0 || burstBytes < 0) {
+            throw new IllegalArgumentException(
+                "Invalid limit: rate=" + bytesPerSecond + ", burst=" + burstBytes);
+        }
+        boolean wasUnlimited = this.bytesPerSecond == 0;
+        if (!wasUnlimited) {
+            refill();   // what was earned so far was earned at the old rate
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstBytes = burstBytes;
+        if (wasUnlimited) {
+            // Start full, as if the link had been idle
+            tokens = burst();
+            refilledAt = System.nanoTime();
+        } else {
+            tokens = Math.min(tokens, burst());
+        }
+        notifyAll();
+    }
+
+    /** Bytes per second, or 0 when unlimited. */
+    public long getRate() {
+        return bytesPerSecond;
+    }
+
+    /** Configured burst in bytes; 0 means one second's worth of the rate. */
+    public synchronized long getBurst() {
+        return burstBytes;
+    }
+
+    public boolean isLimited() {
+        return bytesPerSecond > 0;
+    }
+
+    /**
+     * Take {@code bytes} tokens, blocking until the bucket is no longer in
+     * debt. Returns at once while unlimited.
+     */
+    public void acquire(long bytes) throws InterruptedIOException {
+        if (bytesPerSecond == 0) {
+            return;
+        }
+        synchronized (this) {
+            refill();
+            tokens -= bytes;
+            try {
+                long rate;
+                while (tokens < 0 && (rate = bytesPerSecond) > 0) {
+                    long nanos = (long) Math.ceil(-tokens * TimeUnit.SECONDS.toNanos(1) / rate);
+                    TimeUnit.NANOSECONDS.timedWait(this, nanos);
+                    refill();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+        }
+    }
+
+    /**
+     * Amount to move per call so that the wait after each call stays near
+     * a twentieth of a second; {@code unlimited} while no limit is set.
+     */
+    long chunkSize(long unlimited) {
+        long rate = bytesPerSecond;
+        if (rate == 0) {
+            return unlimited;
+        }
+        return Math.min(unlimited, Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, rate / 20)));
+    }
+
+    /** Take {@code bytes} from every non-null limiter in turn. */
+    static void acquire(RateLimiter[] limiters, long bytes) throws InterruptedIOException {
+        for (RateLimiter limiter : limiters) {
+            if (limiter != null) {
+                limiter.acquire(bytes);
+            }
+        }
+    }
+
+    /** Smallest chunk size any of the limiters asks for. */
+    static long chunkSize(RateLimiter[] limiters, long unlimited) {
+        long size = unlimited;
+        for (RateLimiter limiter : limiters) {
+            if (limiter != null) {
+                size = limiter.chunkSize(size);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        long rate = bytesPerSecond;
+        return rate == 0 ? "unlimited" : (rate / 1024) + " KB/s";
+    }
+
+    private long burst() {
+        return burstBytes > 0 ? burstBytes : bytesPerSecond;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long rate = bytesPerSecond;
+        if (rate > 0) {
+            double earned = (now - refilledAt) * (double) rate / TimeUnit.SECONDS.toNanos(1);
+            tokens = Math.min(burst(), tokens + earned);
+        }
+        refilledAt = now;
+    }
+}
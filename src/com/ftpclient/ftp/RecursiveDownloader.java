@@ -0,0 +1,253 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads a whole remote directory tree over a pool of sessions.
+ *
+ * The calling thread walks the tree breadth-first, listing one directory
+ * at a time and creating the matching local directories, while a fixed set
+ * of workers fetch the files it finds in parallel (RETR on their own pooled
+ * sessions). The hand-off queue is bounded, so the walk never runs far
+ * ahead of the downloads on huge trees. A file or directory that fails is
+ * recorded and skipped; the rest of the tree is still fetched.
+ */
+public class RecursiveDownloader {
+    /** Files waiting for a worker before the walk pauses. */
+    static final int QUEUE_CAPACITY = 10_000;
+
+    private static final FileTask END = new FileTask(null, null, 0);
+
+    private final FTPSessionPool pool;
+    private final int parallelism;
+    private volatile boolean cancelled = false;
+
+    /** Downloader using all but one of the pool's sessions for files; the last one lists. */
+    public RecursiveDownloader(FTPSessionPool pool) {
+        this(pool, Math.max(1, pool.getMaxSize() - 1));
+    }
+
+    /**
+     * @param pool        sessions to list and download with
+     * @param parallelism number of files fetched at once
+     */
+    public RecursiveDownloader(FTPSessionPool pool, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.pool = pool;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Download everything below {@code remoteDir} into {@code localDir},
+     * blocking until done. {@code listener} may be null.
+     *
+     * @return the final progress, including every path that failed
+     */
+    public TreeTransferProgress download(String remoteDir, Path localDir,
+                                         TreeTransferListener listener) throws IOException {
+        TreeTransferProgress progress = new TreeTransferProgress();
+        Files.createDirectories(localDir);
+
+        BlockingQueue<FileTask> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "ftp-mirror-" + pool.getServer());
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            running.add(workers.submit(() -> fetchFiles(queue, progress, listener)));
+        }
+
+        try {
+            crawl(remoteDir, localDir, queue, progress, listener);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } finally {
+            progress.scanFinished();
+            notify(listener, progress);
+            if (cancelled) {
+                queue.clear();
+            }
+            // Workers stop at the first END they take, so send one each
+            for (int i = 0; i < parallelism; i++) {
+                putEnd(queue);
+            }
+        }
+
+        try {
+            for (Future<?> f : running) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            queue.clear();
+        } catch (ExecutionException e) {
+            throw new IOException("Download worker failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        if (cancelled) {
+            progress.cancelled();
+        }
+        return progress;
+    }
+
+    /** Stop walking and stop starting new files; files in flight finish. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** Breadth-first walk, handing every file to the workers. */
+    private void crawl(String remoteDir, Path localDir, BlockingQueue<FileTask> queue,
+                       TreeTransferProgress progress, TreeTransferListener listener)
+            throws InterruptedException {
+        Deque<String> remoteDirs = new ArrayDeque<>();
+        Deque<Path> localDirs = new ArrayDeque<>();
+        remoteDirs.add(remoteDir);
+        localDirs.add(localDir);
+
+        while (!remoteDirs.isEmpty() && !cancelled) {
+            String dir = remoteDirs.poll();
+            Path target = localDirs.poll();
+            List<RemoteEntry> entries;
+            try {
+                entries = pool.execute(dir, FTPClient::listEntries);
+            } catch (IOException | RuntimeException e) {
+                progress.failed(dir, e, false);
+                notify(listener, progress);
+                continue;
+            }
+
+            for (RemoteEntry entry : entries) {
+                if (cancelled) {
+                    return;
+                }
+                String name = entry.getName();
+                String remotePath = child(dir, name);
+                if (!isSafeName(name)) {
+                    progress.failed(remotePath, new IOException("Unsafe file name: " + name),
+                                    !entry.isDirectory());
+                    continue;
+                }
+                Path localPath = target.resolve(name);
+                if (entry.isDirectory()) {
+                    try {
+                        Files.createDirectories(localPath);
+                    } catch (IOException e) {
+                        progress.failed(remotePath, e, false);
+                        continue;
+                    }
+                    remoteDirs.add(remotePath);
+                    localDirs.add(localPath);
+                } else if (entry.getType() != RemoteEntry.Type.OTHER) {
+                    progress.fileFound(entry.getSize());
+                    queue.put(new FileTask(remotePath, localPath, entry.getSize()));
+                }
+            }
+        }
+    }
+
+    /** Worker loop: fetch queued files until the end marker arrives. */
+    private void fetchFiles(BlockingQueue<FileTask> queue, TreeTransferProgress progress,
+                            TreeTransferListener listener) {
+        while (true) {
+            FileTask task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == END) {
+                return;
+            }
+            if (cancelled) {
+                continue;
+            }
+            try {
+                boolean ok = pool.execute(null, s ->
+                    s.downloadFile(task.remotePath, task.localPath.toString()));
+                if (ok) {
+                    progress.fileDone(task.size);
+                } else {
+                    progress.failed(task.remotePath, new IOException("Server refused RETR"), true);
+                }
+            } catch (IOException | RuntimeException e) {
+                progress.failed(task.remotePath, e, true);
+            }
+            notify(listener, progress);
+        }
+    }
+
+    private static void notify(TreeTransferListener listener, TreeTransferProgress progress) {
+        if (listener != null) {
+            listener.progressed(progress);
+        }
+    }
+
+    /** Queue an end marker behind the remaining files; an interrupt cancels them instead. */
+    private void putEnd(BlockingQueue<FileTask> queue) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(END);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                cancel();
+                queue.clear();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Absolute remote path of {@code name} inside {@code dir}. */
+    static String child(String dir, String name) {
+        return dir.endsWith("/") ? dir + name : dir + "/" + name;
+    }
+
+    /** Names that cannot escape the target directory once resolved locally. */
+    static boolean isSafeName(String name) {
+        return !name.isEmpty() && !name.equals(".") && !name.equals("..")
+            && name.indexOf('/') < 0 && name.indexOf('\\') < 0 && name.indexOf('\0') < 0;
+    }
+
+    /** One file to fetch. */
+    private static class FileTask {
+        final String remotePath;
+        final Path localPath;
+        final long size;
+
+        FileTask(String remotePath, Path localPath, long size) {
+            this.remotePath = remotePath;
+            this.localPath = localPath;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Uploads a whole local directory tree over a pool of sessions.
+ *
+ * The tree is walked once up front. Then the remote directories are
+ * created parent-first, one depth level at a time with the directories of
+ * a level made in parallel. Finally the files are stored by a fixed set
+ * of workers, each on its own pooled session. A file that fails is
+ * recorded and skipped. Files below a directory that could not be created
+ * are recorded as failed without being tried.
+ */
+public class RecursiveUploader {
+    private final FTPSessionPool pool;
+    private final int parallelism;
+    private volatile boolean cancelled = false;
+
+    /** Uploader storing as many files at once as the pool has sessions. */
+    public RecursiveUploader(FTPSessionPool pool) {
+        this(pool, pool.getMaxSize());
+    }
+
+    /**
+     * @param pool        sessions to create directories and upload with
+     * @param parallelism number of files stored at once
+     */
+    public RecursiveUploader(FTPSessionPool pool, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.pool = pool;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Upload {@code localDir} and everything below it as absolute remote
+     * path {@code remoteDir}, blocking until done. {@code remoteDir} is
+     * created if needed. {@code listener} may be null.
+     *
+     * @return the final progress, including every path that failed
+     */
+    public TreeTransferProgress upload(Path localDir, String remoteDir,
+                                       TreeTransferListener listener) throws IOException {
+        if (!Files.isDirectory(localDir)) {
+            throw new IOException("Not a directory: " + localDir);
+        }
+        String root = remoteDir;
+        while (root.length() > 1 && root.endsWith("/")) {
+            root = root.substring(0, root.length() - 1);
+        }
+        TreeTransferProgress progress = new TreeTransferProgress();
+        LocalTree tree = scan(localDir, root, progress);
+        progress.scanFinished();
+        notify(listener, progress);
+
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "ftp-upload-" + pool.getServer());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Set<String> missing = makeDirectories(tree.directories, workers, progress, listener);
+
+            List<Future<?>> uploads = new ArrayList<>();
+            for (FileTask task : tree.files) {
+                if (missing.contains(RemoteListingCache.parentOf(task.remotePath))) {
+                    progress.failed(task.remotePath,
+                        new IOException("Remote directory could not be created"), true);
+                    continue;
+                }
+                uploads.add(workers.submit(() -> store(task, progress, listener)));
+            }
+            await(uploads);
+        } finally {
+            workers.shutdownNow();
+        }
+        if (cancelled) {
+            progress.cancelled();
+        }
+        return progress;
+    }
+
+    /** Stop starting new directories and files; files in flight finish. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** Walk the local tree, collecting remote directories parent-first and every file. */
+    private LocalTree scan(Path localDir, String remoteDir, TreeTransferProgress progress)
+            throws IOException {
+        LocalTree tree = new LocalTree();
+        Map<Path, String> remoteOf = new HashMap<>();
+        Files.walkFileTree(localDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                String remote = dir.equals(localDir) ? remoteDir
+                    : RecursiveDownloader.child(remoteOf.get(dir.getParent()), dir.getFileName().toString());
+                remoteOf.put(dir, remote);
+                tree.directories.add(remote);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String remote = RecursiveDownloader.child(remoteOf.get(file.getParent()),
+                                                          file.getFileName().toString());
+                // Links to files are uploaded as the file; anything else is not transferable
+                if (attrs.isRegularFile() || Files.isRegularFile(file)) {
+                    long size = attrs.isRegularFile() ? attrs.size() : file.toFile().length();
+                    progress.fileFound(size);
+                    tree.files.add(new FileTask(file, remote, size));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                progress.failed(file.toString(), e, true);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return tree;
+    }
+
+    /**
+     * Create the directories level by level, each level in parallel.
+     * Returns the directories that do not exist afterwards.
+     */
+    Set<String> makeDirectories(Set<String> directories, ExecutorService workers,
+                                        TreeTransferProgress progress,
+                                        TreeTransferListener listener) throws IOException {
+        TreeMap<Integer, List<String>> levels = new TreeMap<>();
+        for (String dir : directories) {
+            if (!dir.equals("/")) {
+                levels.computeIfAbsent(depth(dir), d -> new ArrayList<>()).add(dir);
+            }
+        }
+
+        Set<String> missing = Collections.synchronizedSet(new HashSet<>());
+        for (List<String> level : levels.values()) {
+            List<Future<?>> pending = new ArrayList<>();
+            for (String dir : level) {
+                if (missing.contains(RemoteListingCache.parentOf(dir))) {
+                    missing.add(dir);
+                    continue;
+                }
+                pending.add(workers.submit(() -> {
+                    if (cancelled || !ensureDirectory(dir, progress)) {
+                        missing.add(dir);
+                        notify(listener, progress);
+                    }
+                }));
+            }
+            await(pending);
+        }
+        return missing;
+    }
+
+    /** MKD, treating a directory that is already there as success. */
+    private boolean ensureDirectory(String dir, TreeTransferProgress progress) {
+        try {
+            boolean ok = pool.execute(null, s -> s.makeDirectory(dir) || s.changeDirectory(dir));
+            if (!ok) {
+                progress.failed(dir, new IOException("Could not create remote directory"), false);
+            }
+            return ok;
+        } catch (IOException | RuntimeException e) {
+            progress.failed(dir, e, false);
+            return false;
+        }
+    }
+
+    private void store(FileTask task, TreeTransferProgress progress, TreeTransferListener listener) {
+        if (cancelled) {
+            return;
+        }
+        try {
+            boolean ok = pool.execute(null, s ->
+                s.uploadFile(task.localPath.toString(), task.remotePath));
+            if (ok) {
+                progress.fileDone(task.size);
+            } else {
+                progress.failed(task.remotePath, new IOException("Server refused STOR"), true);
+            }
+        } catch (IOException | RuntimeException e) {
+            progress.failed(task.remotePath, e, true);
+        }
+        notify(listener, progress);
+    }
+
+    /** Wait for every task; an interrupt cancels whatever has not started. */
+    private void await(List<Future<?>> tasks) throws IOException {
+        try {
+            for (Future<?> f : tasks) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } catch (ExecutionException e) {
+            throw new IOException("Upload worker failed", e.getCause());
+        }
+    }
+
+    private static int depth(String remotePath) {
+        int depth = 0;
+        for (int i = 0; i < remotePath.length(); i++) {
+            if (remotePath.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    private static void notify(TreeTransferListener listener, TreeTransferProgress progress) {
+        if (listener != null) {
+            listener.progressed(progress);
+        }
+    }
+
+    /** Result of the local walk. */
+    private static class LocalTree {
+        final Set<String> directories = new LinkedHashSet<>();
+        final List<FileTask> files = new ArrayList<>();
+    }
+
+    /** One file to store. */
+    private static class FileTask {
+        final Path localPath;
+        final String remotePath;
+        final long size;
+
+        FileTask(Path localPath, String remotePath, long size) {
+            this.localPath = localPath;
+            this.remotePath = remotePath;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.ftpclient.ftp;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+
+/**
+ * One file, directory or link in a remote directory listing.
+ *
+ * Built from an MLSD/MLST fact line when the server supports it (exact
+ * size and UTC modify time), otherwise from a LIST line by ListParser,
+ * where some fields may be unknown. Unknown numbers are -1, unknown
+ * strings are null.
+ */
+public class RemoteEntry {
+    public enum Type { FILE, DIRECTORY, LINK, OTHER }
+
+    private final String name;
+    private final Type type;
+    private final long size;
+    private final long modifyTime;
+    private final String permissions;
+    private final String uniqueId;
+
+    public RemoteEntry(String name, Type type, long size, long modifyTime,
+                       String permissions, String uniqueId) {
+        this.name = name;
+        this.type = type;
+        this.size = size;
+        this.modifyTime = modifyTime;
+        this.permissions = permissions;
+        this.uniqueId = uniqueId;
+    }
+
+    /**
+     * Parse an MLSD line or MLST fact line, e.g.
+     * {@code type=file;size=1024;modify=20240525120000; notes.txt}.
+     * Returns null for the "." and ".." entries (cdir/pdir).
+     */
+    public static RemoteEntry fromFacts(String line) {
+        String text = line.startsWith(" ") ? line.substring(1) : line;
+        int split = text.indexOf(' ');
+        if (split < 0) {
+            throw new IllegalArgumentException("Invalid MLSx line: " + line);
+        }
+        String name = text.substring(split + 1);
+        Type type = Type.OTHER;
+        long size = -1;
+        long modify = -1;
+        String perms = null;
+        String unique = null;
+
+        for (String fact : text.substring(0, split).split(";")) {
+            int eq = fact.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String key = fact.substring(0, eq).toLowerCase(Locale.ROOT);
+            String value = fact.substring(eq + 1);
+            switch (key) {
+                case "type":
+                    String t = value.toLowerCase(Locale.ROOT);
+                    if (t.equals("cdir") || t.equals("pdir")) {
+                        return null;
+                    }
+                    if (t.equals("file")) {
+                        type = Type.FILE;
+                    } else if (t.equals("dir")) {
+                        type = Type.DIRECTORY;
+                    } else if (t.startsWith("os.unix=slink") || t.startsWith("os.unix=symlink")) {
+                        type = Type.LINK;
+                    }
+                    break;
+                case "size":
+                case "sizd":
+                    size = parseLong(value);
+                    break;
+                case "modify":
+                    modify = parseTimeVal(value);
+                    break;
+                case "perm":
+                    perms = value;
+                    break;
+                case "unique":
+                    unique = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new RemoteEntry(name, type, size, modify, perms, unique);
+    }
+
+    /** File name, without any directory part. */
+    public String getName() { return name; }
+    public Type getType() { return type; }
+    /** Size in bytes, or -1 if unknown. */
+    public long getSize() { return size; }
+    /** Last modification as epoch millis, or -1 if unknown. */
+    public long getModifyTime() { return modifyTime; }
+    /** MLSx "perm" fact or LIST permission bits, or null. */
+    public String getPermissions() { return permissions; }
+    /** MLSx "unique" fact, or null. */
+    public String getUniqueId() { return uniqueId; }
+
+    public boolean isDirectory() {
+        return type == Type.DIRECTORY;
+    }
+
+    public boolean isFile() {
+        return type == Type.FILE;
+    }
+
+    @Override
+    public String toString() {
+        return (isDirectory() ? "[DIR] " : "[FILE] ") + name;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** RFC 3659 time-val: YYYYMMDDHHMMSS[.sss], always UTC. */
+    static long parseTimeVal(String value) {
+        if (value.length() < 14) {
+            return -1;
+        }
+        try {
+            LocalDateTime time = LocalDateTime.of(
+                Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(4, 6)),
+                Integer.parseInt(value.substring(6, 8)), Integer.parseInt(value.substring(8, 10)),
+                Integer.parseInt(value.substring(10, 12)), Integer.parseInt(value.substring(12, 14)));
+            long millis = time.toInstant(ZoneOffset.UTC).toEpochMilli();
+            if (value.length() > 15 && value.charAt(14) == '.') {
+                String fraction = (value.substring(15) + "00").substring(0, 3);
+                millis += Integer.parseInt(fraction);
+            }
+            return millis;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
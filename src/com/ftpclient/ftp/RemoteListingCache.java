@@ -0,0 +1,168 @@
+package com.ftpclient.ftp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recently fetched directory listings, keyed by server and absolute path.
+ *
+ * Entries expire after a TTL and the least recently used directory is
+ * dropped once the cache is full. FTPClient keeps it in step with its own
+ * changes (MKD, DELE, RMD, uploads), so only changes made by other clients
+ * can be up to a TTL late. Meant to be shared by the sessions of one
+ * account; accounts that see different trees need separate caches.
+ */
+public class RemoteListingCache {
+    public static final long DEFAULT_TTL_MILLIS = 30_000;
+    public static final int DEFAULT_MAX_DIRECTORIES = 256;
+    /** Larger listings are not cached; holding them would defeat streaming. */
+    public static final int MAX_CACHED_ENTRIES = 100_000;
+
+    private final long ttlMillis;
+    private final int maxDirectories;
+    private final LinkedHashMap<String, Listing> listings;
+
+    public RemoteListingCache() {
+        this(DEFAULT_TTL_MILLIS, DEFAULT_MAX_DIRECTORIES);
+    }
+
+    public RemoteListingCache(long ttlMillis, int maxDirectories) {
+        if (ttlMillis < 0 || maxDirectories < 1) {
+            throw new IllegalArgumentException(
+                "Invalid cache settings: ttl=" + ttlMillis + ", max=" + maxDirectories);
+        }
+        this.ttlMillis = ttlMillis;
+        this.maxDirectories = maxDirectories;
+        // Access order turns iteration order into least-recently-used first
+        this.listings = new LinkedHashMap<String, Listing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+                return size() > RemoteListingCache.this.maxDirectories;
+            }
+        };
+    }
+
+    /** The cached listing of {@code directory}, or null if absent or expired. */
+    public synchronized List<RemoteEntry> get(String host, int port, String directory) {
+        String key = key(host, port, directory);
+        Listing listing = listings.get(key);
+        if (listing == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - listing.fetchedAt > ttlMillis) {
+            listings.remove(key);
+            return null;
+        }
+        return listing.entries;
+    }
+
+    /** Remember the listing of {@code directory}, unless it is too large. */
+    public synchronized void put(String host, int port, String directory, List<RemoteEntry> entries) {
+        if (entries.size() > MAX_CACHED_ENTRIES) {
+            return;
+        }
+        listings.put(key(host, port, directory),
+                     new Listing(Collections.unmodifiableList(new ArrayList<>(entries))));
+    }
+
+    /** Drop the listing of {@code directory}. */
+    public synchronized void invalidate(String host, int port, String directory) {
+        listings.remove(key(host, port, directory));
+    }
+
+    /** Drop the listing of {@code directory} and of everything below it. */
+    public synchronized void invalidateTree(String host, int port, String directory) {
+        String key = key(host, port, directory);
+        String below = key.endsWith("/") ? key : key + "/";
+        listings.keySet().removeIf(k -> k.equals(key) || k.startsWith(below));
+    }
+
+    /**
+     * Remove {@code name} from the cached listing of {@code directory}, if
+     * cached, keeping the rest of the listing and its age.
+     */
+    public synchronized void removeEntry(String host, int port, String directory, String name) {
+        String key = key(host, port, directory);
+        Listing listing = listings.get(key);
+        if (listing == null) {
+            return;
+        }
+        List<RemoteEntry> remaining = new ArrayList<>(listing.entries.size());
+        for (RemoteEntry entry : listing.entries) {
+            if (!entry.getName().equals(name)) {
+                remaining.add(entry);
+            }
+        }
+        listings.put(key, new Listing(Collections.unmodifiableList(remaining), listing.fetchedAt));
+    }
+
+    /** Drop listings past their TTL. */
+    public synchronized void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Listing> it = listings.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().fetchedAt > ttlMillis) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        listings.clear();
+    }
+
+    public synchronized int size() {
+        return listings.size();
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public int getMaxDirectories() {
+        return maxDirectories;
+    }
+
+    /** Parent directory of an absolute remote path ("/" for top-level names). */
+    static String parentOf(String path) {
+        String p = normalize(path);
+        int slash = p.lastIndexOf('/');
+        return slash <= 0 ? "/" : p.substring(0, slash);
+    }
+
+    /** Last element of an absolute remote path. */
+    static String nameOf(String path) {
+        String p = normalize(path);
+        return p.substring(p.lastIndexOf('/') + 1);
+    }
+
+    private static String key(String host, int port, String directory) {
+        return host + ":" + port + normalize(directory);
+    }
+
+    private static String normalize(String path) {
+        String p = path.startsWith("/") ? path : "/" + path;
+        while (p.length() > 1 && p.endsWith("/")) {
+            p = p.substring(0, p.length() - 1);
+        }
+        return p;
+    }
+
+    private static class Listing {
+        final List<RemoteEntry> entries;
+        final long fetchedAt;
+
+        Listing(List<RemoteEntry> entries) {
+            this(entries, System.currentTimeMillis());
+        }
+
+        Listing(List<RemoteEntry> entries, long fetchedAt) {
+            this.entries = entries;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Incremental FTP reply parser for non-blocking control connections.
+ *
+ * Bytes are fed in whatever chunks the socket delivers; complete replies
+ * come out as they are recognised. A multi-line reply starts with "xyz-"
+ * and only ends at a line beginning "xyz " with the same code, so text
+ * lines in between may look like anything.
+ */
+final class ReplyParser {
+    /** Longest reply line accepted before the connection is considered broken. */
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final Charset charset;
+    private byte[] line = new byte[128];
+    private int lineLength = 0;
+    private int multiLineCode = -1;           // code of an open "xyz-" reply, else -1
+    private final List<String> lines = new ArrayList<>();
+
+    ReplyParser(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Consume every remaining byte of {@code buffer} and return the replies
+     * completed by it, in order (often none, usually one).
+     */
+    List<FTPResponse> feed(ByteBuffer buffer) throws IOException {
+        List<FTPResponse> replies = null;
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n') {
+                FTPResponse reply = endOfLine();
+                if (reply != null) {
+                    if (replies == null) {
+                        replies = new ArrayList<>(1);
+                    }
+                    replies.add(reply);
+                }
+            } else {
+                append(b);
+            }
+        }
+        return replies != null ? replies : Collections.<FTPResponse>emptyList();
+    }
+
+    private void append(byte b) throws IOException {
+        if (lineLength == line.length) {
+            if (lineLength >= MAX_LINE_LENGTH) {
+                throw new IOException("FTP reply line exceeds " + MAX_LINE_LENGTH + " bytes");
+            }
+            line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE_LENGTH));
+        }
+        line[lineLength++] = b;
+    }
+
+    private FTPResponse endOfLine() throws IOException {
+        int length = lineLength;
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        String text = new String(line, 0, length, charset);
+        lineLength = 0;
+
+        if (multiLineCode < 0) {
+            if (text.isEmpty()) {
+                return null;   // stray blank line between replies
+            }
+            int code = parseCode(text);
+            if (code < 0) {
+                throw new IOException("Invalid FTP reply line: " + text);
+            }
+            lines.add(text);
+            if (text.length() > 3 && text.charAt(3) == '-') {
+                multiLineCode = code;
+                return null;
+            }
+            return complete();
+        }
+
+        lines.add(text);
+        if (parseCode(text) == multiLineCode && (text.length() == 3 || text.charAt(3) == ' ')) {
+            return complete();
+        }
+        return null;
+    }
+
+    private FTPResponse complete() {
+        FTPResponse reply = FTPResponse.parse(String.join("\r\n", lines));
+        lines.clear();
+        multiLineCode = -1;
+        return reply;
+    }
+
+    /** The leading three-digit code of {@code text}, or -1. */
+    private static int parseCode(String text) {
+        if (text.length() < 3) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+}
@@ -0,0 +1,245 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single FTP session that outlives its control connection.
+ *
+ * Operations go through {@link #execute}. When the connection dies (421,
+ * a reset, a closed socket) the session connects again, logs in with the
+ * stored credentials and restores the working directory and TYPE, then
+ * retries the operation with exponential backoff. Operations that end on
+ * a transient 4xx reply are retried the same way (see {@link RetryPolicy}).
+ * While idle, a NOOP goes out every keepalive interval so the server and
+ * any NAT in between keep the connection open; a failed keepalive
+ * reconnects at once instead of waiting for the next operation.
+ *
+ * A retried operation runs again from its start, so it should be safe to
+ * repeat: resumeDownload rather than downloadFile for large files.
+ * For many parallel sessions use {@link FTPSessionPool}, which replaces
+ * dead sessions and retries in the same way.
+ */
+public class ResilientSession implements AutoCloseable {
+    public static final long DEFAULT_KEEPALIVE_MILLIS = 60_000;
+
+    private final String server;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final long keepaliveMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService keepalive;
+    private final AtomicInteger reconnects = new AtomicInteger();
+    private volatile RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private volatile boolean closed = false;
+
+    // Guarded by lock
+    private FTPClient client;
+    private String directory;     // working directory to restore, null for the login directory
+    private String type;          // TYPE to restore, null for the server default
+    private long lastUsed = System.nanoTime();
+    private boolean loginRejected = false;
+
+    /** Wrap a logged-in session, with the default keepalive interval. */
+    public ResilientSession(FTPClient client) {
+        this(client, DEFAULT_KEEPALIVE_MILLIS);
+    }
+
+    /** Wrap a logged-in session; {@code keepaliveMillis} of 0 turns keepalive off. */
+    public ResilientSession(FTPClient client, long keepaliveMillis) {
+        if (!client.isLoggedIn()) {
+            throw new IllegalArgumentException("Session must be logged in");
+        }
+        if (keepaliveMillis < 0) {
+            throw new IllegalArgumentException("Keepalive interval must not be negative");
+        }
+        this.client = client;
+        this.server = client.getServer();
+        this.port = client.getPort();
+        this.username = client.getUsername();
+        this.password = client.getPassword();
+        this.keepaliveMillis = keepaliveMillis;
+        remember();
+
+        if (keepaliveMillis > 0) {
+            keepalive = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ftp-keepalive-" + server);
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1_000, keepaliveMillis / 2);
+            keepalive.scheduleWithFixedDelay(this::keepAlive, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            keepalive = null;
+        }
+    }
+
+    /**
+     * Run {@code action} on the session; when it fails (throws, or returns
+     * false or null), reconnect and retry as the retry policy allows.
+     * Returns the result of the last attempt, or throws its exception.
+     * Calls from several threads run one after another.
+     */
+    public <T> T execute(FTPSessionPool.SessionAction<T> action) throws IOException {
+        lock.lock();
+        try {
+            RetryPolicy policy = retryPolicy;
+            for (int attempt = 1; ; attempt++) {
+                T result = null;
+                IOException failure = null;
+                try {
+                    if (!client.isLoggedIn()) {
+                        reconnect();
+                    }
+                    client.clearLastReply();
+                    result = action.run(client);
+                } catch (IOException e) {
+                    failure = e;
+                }
+                if (closed || loginRejected || failure instanceof InterruptedIOException
+                        || (failure == null && RetryPolicy.succeeded(result))
+                        || !policy.shouldRetry(client, attempt)) {
+                    remember();
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return result;
+                }
+                policy.pause(attempt);
+            }
+        } finally {
+            lastUsed = System.nanoTime();
+            lock.unlock();
+        }
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /** Retry policy for operations started from now on. */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /** How often the connection was replaced since this session was created. */
+    public int getReconnectCount() {
+        return reconnects.get();
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Stop the keepalive and log out; waits for a running operation to finish. */
+    @Override
+    public void close() {
+        closed = true;
+        if (keepalive != null) {
+            keepalive.shutdownNow();
+        }
+        lock.lock();
+        try {
+            client.disconnect();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Replace the dead connection with a new one in the same state. */
+    private void reconnect() throws IOException {
+        if (closed) {
+            throw new IOException("Session is closed");
+        }
+        FTPClient old = client;
+        old.abort();
+        FTPClient fresh = new FTPClient(server, port);
+        fresh.setTransferMode(old.getTransferMode());
+        fresh.setStreamBufferSize(old.getStreamBufferSize());
+        fresh.setTransferJournal(old.getTransferJournal());
+        fresh.setListingCache(old.getListingCache());
+        fresh.setRateLimiter(old.getRateLimiter());
+        fresh.setTransferListener(old.getTransferListener());
+        fresh.setPreopenDataConnections(old.isPreopenDataConnections());
+        client = fresh;
+
+        fresh.connect();
+        if (!fresh.login(username, password)) {
+            loginRejected = true;
+            fresh.disconnect();
+            throw new IOException("Login failed on reconnect. Response: " + fresh.getLastReply());
+        }
+        reconnects.incrementAndGet();
+        if (directory != null && !fresh.changeDirectory(directory)) {
+            throw new IOException("Could not restore working directory " + directory
+                + ". Response: " + fresh.getLastReply());
+        }
+        if (type != null && !fresh.setType(type)) {
+            throw new IOException("Could not restore type " + type + ". Response: " + fresh.getLastReply());
+        }
+    }
+
+    /** Note the state a reconnect has to restore, while the connection is still up. */
+    private void remember() {
+        if (!client.isLoggedIn()) {
+            return;
+        }
+        String known = client.getKnownWorkingDirectory();
+        if (known == null) {
+            // The operation changed directory; one PWD now saves guessing later
+            try {
+                known = client.getWorkingDirectory();
+            } catch (IOException e) {
+                known = null;
+            }
+        }
+        if (known != null) {
+            directory = known;
+        }
+        if (client.getType() != null) {
+            type = client.getType();
+        }
+    }
+
+    /** NOOP an idle connection; reconnect if it no longer answers. */
+    private void keepAlive() {
+        if (closed || !lock.tryLock()) {
+            return;   // busy sessions need no keepalive
+        }
+        try {
+            if (System.nanoTime() - lastUsed < TimeUnit.MILLISECONDS.toNanos(keepaliveMillis)) {
+                return;
+            }
+            boolean alive;
+            try {
+                alive = client.isLoggedIn() && client.noop();
+            } catch (IOException | RuntimeException e) {
+                alive = false;
+            }
+            if (!alive && !loginRejected) {
+                try {
+                    reconnect();
+                } catch (IOException | RuntimeException e) {
+                    // The next operation tries again, with backoff
+                }
+            }
+            lastUsed = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.ftpclient.ftp;
+
+import java.io.InterruptedIOException;
+
+/**
+ * When and how patiently a failed FTP operation is tried again.
+ *
+ * An operation is retried if its session lost the control connection or
+ * if the last reply was a transient negative one that is worth waiting
+ * out (421, 425, 426, 450, 451). Attempt n is followed by a pause of
+ * initialBackoff * 2^(n-1), capped at maxBackoff. There is no jitter, so
+ * runs against a test server are repeatable.
+ */
+public final class RetryPolicy {
+    /** Four attempts, 1 s, 2 s and 4 s apart. */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(4, 1_000, 30_000);
+    /** A single attempt. */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * @param maxAttempts          attempts in total, including the first
+     * @param initialBackoffMillis pause after the first failed attempt
+     * @param maxBackoffMillis     longest pause between two attempts
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1 || initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Invalid retry policy: attempts=" + maxAttempts
+                + ", backoff=" + initialBackoffMillis + ".." + maxBackoffMillis + " ms");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /** Pause after failed attempt {@code attempt} (1-based). */
+    public long backoffMillis(int attempt) {
+        long backoff = initialBackoffMillis;
+        for (int i = 1; i < attempt && backoff < maxBackoffMillis; i++) {
+            backoff *= 2;
+        }
+        return Math.min(backoff, maxBackoffMillis);
+    }
+
+    /** Whether {@code reply} is a transient failure that a later attempt may get past. */
+    public static boolean isTransient(FTPResponse reply) {
+        if (reply == null) {
+            return false;
+        }
+        switch (reply.getCode()) {
+            case 421:   // service not available, closing control connection
+            case 425:   // can't open data connection
+            case 426:   // connection closed, transfer aborted
+            case 450:   // file unavailable (busy)
+            case 451:   // local error in processing
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Whether an operation that returned {@code result} did its work: any
+     * result but null or false. Operations that succeeded are never retried,
+     * whatever reply their session ended on.
+     */
+    static boolean succeeded(Object result) {
+        return result != null && !Boolean.FALSE.equals(result);
+    }
+
+    /**
+     * Whether the operation that just failed on {@code session} should be
+     * tried again: attempts are left and the session died or ended on a
+     * transient reply. Sessions ended by {@link FTPClient#abort()} are never
+     * retried.
+     */
+    boolean shouldRetry(FTPClient session, int attempt) {
+        if (attempt >= maxAttempts || session.isAborted() || Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        return !session.isLoggedIn() || isTransient(session.getLastReply());
+    }
+
+    /** Sleep for the backoff that follows failed attempt {@code attempt}. */
+    void pause(int attempt) throws InterruptedIOException {
+        try {
+            Thread.sleep(backoffMillis(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return maxAttempts + " attempt(s), backoff " + initialBackoffMillis + ".." + maxBackoffMillis + " ms";
+    }
+}
@@ -0,0 +1,23 @@
+package com.ftpclient.ftp;
+
+import java.util.Comparator;
+
+/**
+ * Order in which a {@link TransferQueue} starts pending transfers: the
+ * smallest element by this comparator goes first. Ties are broken by
+ * enqueue order, so a policy only has to say what it cares about.
+ */
+public interface SchedulingPolicy extends Comparator<QueuedTransfer> {
+    /** First in, first out. */
+    SchedulingPolicy FIFO = (a, b) -> Long.compare(a.getId(), b.getId());
+
+    /** Highest priority first, FIFO among equals. */
+    SchedulingPolicy PRIORITY = (a, b) -> Integer.compare(b.getPriority(), a.getPriority());
+
+    /** Smallest file first, unknown sizes last; keeps short jobs from waiting behind big ones. */
+    SchedulingPolicy SHORTEST_FIRST = (a, b) -> {
+        long x = a.getSize() < 0 ? Long.MAX_VALUE : a.getSize();
+        long y = b.getSize() < 0 ? Long.MAX_VALUE : b.getSize();
+        return Long.compare(x, y);
+    };
+}
@@ -0,0 +1,180 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads one remote file as several byte ranges fetched in parallel.
+ * Each range runs over its own logged-in session (REST + RETR) and is
+ * written straight into a preallocated local file at its offset.
+ */
+public class SegmentedDownloader {
+    public static final int DEFAULT_SEGMENT_COUNT = 4;
+    public static final long DEFAULT_MIN_SEGMENT_SIZE = 8L * 1024 * 1024;
+
+    private final FTPClient client;
+    private final int segmentCount;
+    private final long minSegmentSize;
+
+    /** Downloader with the default segment count and minimum segment size. */
+    public SegmentedDownloader(FTPClient client) {
+        this(client, DEFAULT_SEGMENT_COUNT, DEFAULT_MIN_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param client         logged-in session; it fetches the first range itself
+     * @param segmentCount   maximum number of parallel ranges
+     * @param minSegmentSize ranges are never smaller than this many bytes
+     */
+    public SegmentedDownloader(FTPClient client, int segmentCount, long minSegmentSize) {
+        if (segmentCount < 1) {
+            throw new IllegalArgumentException("segmentCount must be at least 1");
+        }
+        if (minSegmentSize < 1) {
+            throw new IllegalArgumentException("minSegmentSize must be positive");
+        }
+        this.client = client;
+        this.segmentCount = segmentCount;
+        this.minSegmentSize = minSegmentSize;
+    }
+
+    /** Download {@code remoteFile} to {@code localFile}, splitting it when large enough. */
+    public boolean download(String remoteFile, String localFile) throws IOException {
+        long size = client.getFileSize(remoteFile);
+        int segments = planSegmentCount(size);
+        if (segments <= 1) {
+            return client.downloadFile(remoteFile, localFile);
+        }
+
+        // Extra sessions log in at the home directory, so follow the primary
+        String directory = client.printWorkingDirectory();
+        List<Segment> plan = split(size, segments);
+        ExecutorService workers = Executors.newFixedThreadPool(segments - 1);
+
+        try (RandomAccessFile file = new RandomAccessFile(localFile, "rw")) {
+            file.setLength(size);
+            FileChannel channel = file.getChannel();
+
+            List<Future<Long>> pending = new ArrayList<>();
+            for (int i = 1; i < plan.size(); i++) {
+                Segment segment = plan.get(i);
+                pending.add(workers.submit(
+                    () -> fetchOnSibling(directory, remoteFile, channel, segment)));
+            }
+
+            // The primary session fetches the first range while the others run
+            Segment first = plan.get(0);
+            try {
+                first.received = fetch(client, remoteFile, channel, first);
+            } catch (IOException e) {
+                if (!client.isLoggedIn()) {
+                    throw e;
+                }
+                first.received = 0;   // refused or cut off; fetched again below
+            }
+
+            for (int i = 1; i < plan.size(); i++) {
+                Segment segment = plan.get(i);
+                try {
+                    segment.received = pending.get(i - 1).get();
+                } catch (ExecutionException e) {
+                    segment.received = 0;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Segmented download interrupted", e);
+                }
+            }
+
+            // Anything a sibling failed to deliver is retried on the primary
+            for (Segment segment : plan) {
+                if (segment.received < segment.length) {
+                    Segment rest = new Segment(segment.offset + segment.received,
+                                               segment.length - segment.received);
+                    segment.received += fetch(client, remoteFile, channel, rest);
+                }
+            }
+
+            channel.force(false);
+            verify(plan, size, file.length());
+            return true;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /** Number of ranges to use for a file of {@code size} bytes. */
+    int planSegmentCount(long size) {
+        if (size <= 0) {
+            return 1;
+        }
+        long bySize = size / minSegmentSize;
+        return (int) Math.max(1, Math.min(segmentCount, bySize));
+    }
+
+    /** Split {@code size} bytes into {@code count} contiguous ranges. */
+    static List<Segment> split(long size, int count) {
+        List<Segment> segments = new ArrayList<>(count);
+        long base = size / count;
+        long offset = 0;
+        for (int i = 0; i < count; i++) {
+            long length = (i == count - 1) ? size - offset : base;
+            segments.add(new Segment(offset, length));
+            offset += length;
+        }
+        return segments;
+    }
+
+    private long fetchOnSibling(String directory, String remoteFile,
+                                FileChannel channel, Segment segment) throws IOException {
+        FTPClient sibling = client.openSiblingSession();
+        try {
+            if (!sibling.changeDirectory(directory)) {
+                throw new IOException("Could not change to " + directory);
+            }
+            return fetch(sibling, remoteFile, channel, segment);
+        } finally {
+            sibling.disconnect();
+        }
+    }
+
+    private static long fetch(FTPClient session, String remoteFile,
+                              FileChannel channel, Segment segment) throws IOException {
+        return session.downloadRange(remoteFile, channel, segment.offset, segment.length);
+    }
+
+    /** Check every range arrived in full and the file matches the SIZE reply. */
+    private static void verify(List<Segment> plan, long expectedSize, long actualSize)
+            throws IOException {
+        long total = 0;
+        for (Segment segment : plan) {
+            if (segment.received != segment.length) {
+                throw new IOException("Segment at offset " + segment.offset + " incomplete: "
+                    + segment.received + " of " + segment.length + " bytes");
+            }
+            total += segment.received;
+        }
+        if (total != expectedSize || actualSize != expectedSize) {
+            throw new IOException("Size mismatch: expected " + expectedSize
+                + " bytes, received " + total + ", file has " + actualSize);
+        }
+    }
+
+    /** One byte range of the remote file. */
+    static class Segment {
+        final long offset;
+        final long length;
+        long received;
+
+        Segment(long offset, long length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,616 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Brings one side of a local/remote directory pair up to date with the
+ * other, transferring only what differs.
+ *
+ * Both trees are walked first, the remote one a directory level at a time
+ * with the listings of a level fetched in parallel. Files are compared by
+ * size, then by modification time. MLSD gives exact times; when a listing
+ * has none, MDTM is asked for files whose sizes match. The resulting
+ * {@link ChangeSet} can be inspected before {@link #apply} transfers new
+ * and modified files in parallel and, if enabled, deletes whatever the
+ * source no longer has.
+ */
+public class SyncEngine {
+    /** Which side is the source: UPLOAD makes the server match the local tree. */
+    public enum Direction { UPLOAD, DOWNLOAD }
+
+    /** Modification times closer than this count as equal (FAT stores 2 s steps). */
+    public static final long DEFAULT_TIME_TOLERANCE_MILLIS = 2_000;
+
+    private final FTPSessionPool pool;
+    private final int parallelism;
+    private final RecursiveUploader directories;
+    private volatile boolean deleteExtraneous = false;
+    private volatile long timeToleranceMillis = DEFAULT_TIME_TOLERANCE_MILLIS;
+    private volatile boolean cancelled = false;
+
+    /** Engine using as many sessions at once as the pool has. */
+    public SyncEngine(FTPSessionPool pool) {
+        this(pool, pool.getMaxSize());
+    }
+
+    /**
+     * @param pool        sessions to list, transfer and delete with
+     * @param parallelism number of listings or files handled at once
+     */
+    public SyncEngine(FTPSessionPool pool, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.pool = pool;
+        this.parallelism = parallelism;
+        this.directories = new RecursiveUploader(pool, parallelism);
+    }
+
+    /** Compare and apply in one go; see {@link #compare} and {@link #apply}. */
+    public TreeTransferProgress sync(Path localDir, String remoteDir, Direction direction,
+                                     TreeTransferListener listener) throws IOException {
+        return apply(compare(localDir, remoteDir, direction), listener);
+    }
+
+    /**
+     * Walk both trees and work out what {@link #apply} would change at
+     * the destination. {@code remoteDir} is absolute. A destination root
+     * that does not exist yet is treated as empty.
+     */
+    public ChangeSet compare(Path localDir, String remoteDir, Direction direction) throws IOException {
+        String root = remoteDir;
+        while (root.length() > 1 && root.endsWith("/")) {
+            root = root.substring(0, root.length() - 1);
+        }
+        ChangeSet changes = new ChangeSet(direction, localDir, root);
+
+        boolean localExists = Files.isDirectory(localDir);
+        if (!localExists && direction == Direction.UPLOAD) {
+            throw new IOException("Not a directory: " + localDir);
+        }
+        String absolute = root;
+        changes.remoteRootExists = pool.execute(null, s -> s.changeDirectory(absolute));
+        if (!changes.remoteRootExists && direction == Direction.DOWNLOAD) {
+            throw new IOException("No such remote directory: " + root);
+        }
+        changes.localRootExists = localExists;
+
+        ExecutorService workers = newWorkers("ftp-sync-");
+        try {
+            Map<String, Node> local = localExists ? scanLocal(localDir) : new LinkedHashMap<>();
+            Map<String, Node> remote = changes.remoteRootExists
+                ? scanRemote(root, workers, changes) : new LinkedHashMap<>();
+            Map<String, Node> source = direction == Direction.UPLOAD ? local : remote;
+            Map<String, Node> target = direction == Direction.UPLOAD ? remote : local;
+
+            List<String> undecided = new ArrayList<>();
+            for (Map.Entry<String, Node> e : source.entrySet()) {
+                String path = e.getKey();
+                Node from = e.getValue();
+                Node to = target.get(path);
+                if (to == null) {
+                    changes.added.add(new Change(Change.Kind.NEW, path, from));
+                } else if (from.directory != to.directory) {
+                    changes.conflicts.add(new Change(Change.Kind.CONFLICT, path, from));
+                } else if (!from.directory) {
+                    if (from.size < 0 || to.size < 0 || from.size != to.size) {
+                        changes.modified.add(new Change(Change.Kind.MODIFIED, path, from));
+                    } else if (from.modifyTime < 0 || to.modifyTime < 0) {
+                        undecided.add(path);
+                    } else if (isNewer(from, to)) {
+                        changes.modified.add(new Change(Change.Kind.MODIFIED, path, from));
+                    }
+                }
+            }
+            resolveTimes(undecided, remote, root, workers);
+            for (String path : undecided) {
+                Node from = source.get(path);
+                Node to = target.get(path);
+                // Without a time on both sides equal sizes are all we have
+                if (from.modifyTime >= 0 && to.modifyTime >= 0 && isNewer(from, to)) {
+                    changes.modified.add(new Change(Change.Kind.MODIFIED, path, from));
+                }
+            }
+
+            for (Map.Entry<String, Node> e : target.entrySet()) {
+                if (!source.containsKey(e.getKey())) {
+                    Node node = e.getValue();
+                    changes.deleted.add(new Change(Change.Kind.DELETED, e.getKey(), node));
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return changes;
+    }
+
+    /**
+     * Make the destination match: create new directories, transfer new and
+     * modified files in parallel and, if {@link #setDeleteExtraneous} is on,
+     * delete extraneous files and then directories, deepest first.
+     */
+    public TreeTransferProgress apply(ChangeSet changes, TreeTransferListener listener) throws IOException {
+        TreeTransferProgress progress = new TreeTransferProgress();
+        List<Change> files = new ArrayList<>();
+        List<String> newDirs = new ArrayList<>();
+        for (Change c : changes.added) {
+            if (c.isDirectory()) {
+                newDirs.add(c.getPath());
+            } else {
+                files.add(c);
+            }
+        }
+        files.addAll(changes.modified);
+        for (Change c : files) {
+            progress.fileFound(c.getSize());
+        }
+        for (Change c : changes.conflicts) {
+            progress.failed(c.getPath(), new IOException(
+                "File on one side and directory on the other, or unsafe name"), !c.isDirectory());
+        }
+        progress.scanFinished();
+        notify(listener, progress);
+
+        ExecutorService workers = newWorkers("ftp-sync-");
+        try {
+            Set<String> missing = changes.direction == Direction.UPLOAD
+                ? makeRemoteDirectories(changes, newDirs, workers, progress, listener)
+                : makeLocalDirectories(changes, newDirs, progress);
+
+            List<Future<?>> transfers = new ArrayList<>();
+            for (Change c : files) {
+                if (missing.contains(RemoteListingCache.parentOf("/" + c.getPath()))) {
+                    progress.failed(c.getPath(), new IOException("Parent directory could not be created"), true);
+                    continue;
+                }
+                transfers.add(workers.submit(() -> transfer(changes, c, progress, listener)));
+            }
+            await(transfers);
+
+            if (deleteExtraneous && !cancelled) {
+                deleteExtraneous(changes, workers, progress, listener);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        if (cancelled) {
+            progress.cancelled();
+        }
+        return progress;
+    }
+
+    /** Stop starting new listings, transfers and deletions; files in flight finish. */
+    public void cancel() {
+        cancelled = true;
+        directories.cancel();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDeleteExtraneous() {
+        return deleteExtraneous;
+    }
+
+    /** Also delete destination files and directories the source does not have. Off by default. */
+    public void setDeleteExtraneous(boolean deleteExtraneous) {
+        this.deleteExtraneous = deleteExtraneous;
+    }
+
+    public long getTimeToleranceMillis() {
+        return timeToleranceMillis;
+    }
+
+    /** Modification times closer than this are treated as equal. */
+    public void setTimeToleranceMillis(long timeToleranceMillis) {
+        if (timeToleranceMillis < 0) {
+            throw new IllegalArgumentException("timeToleranceMillis must not be negative");
+        }
+        this.timeToleranceMillis = timeToleranceMillis;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Uploads leave the remote copy newer than its source, downloads copy
+     * the remote time onto the local file, so "source is newer" means the
+     * source changed since the last sync in both directions.
+     */
+    private boolean isNewer(Node source, Node target) {
+        return source.modifyTime > target.modifyTime + timeToleranceMillis;
+    }
+
+    /** Local tree as "a/b/c" relative paths, parents before children. */
+    private Map<String, Node> scanLocal(Path localDir) throws IOException {
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        // A partial view of the source could turn into deletions, so errors end the walk
+        Files.walkFileTree(localDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(localDir)) {
+                    nodes.put(relative(localDir, dir), new Node(true, -1, -1));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() || Files.isRegularFile(file)) {
+                    BasicFileAttributes target = attrs.isRegularFile() ? attrs
+                        : Files.readAttributes(file, BasicFileAttributes.class);
+                    nodes.put(relative(localDir, file),
+                              new Node(false, target.size(), target.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return nodes;
+    }
+
+    /** Remote tree as relative paths, listing each directory level in parallel. */
+    private Map<String, Node> scanRemote(String root, ExecutorService workers, ChangeSet changes)
+            throws IOException {
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        List<String> level = Collections.singletonList("");
+        while (!level.isEmpty()) {
+            if (cancelled) {
+                throw new IOException("Sync cancelled");
+            }
+            List<Future<List<RemoteEntry>>> listings = new ArrayList<>();
+            for (String dir : level) {
+                String absolute = remotePath(root, dir);
+                listings.add(workers.submit(() -> pool.execute(absolute, FTPClient::listEntries)));
+            }
+            List<String> next = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                String dir = level.get(i);
+                for (RemoteEntry entry : get(listings.get(i))) {
+                    String path = dir.isEmpty() ? entry.getName() : dir + "/" + entry.getName();
+                    if (!RecursiveDownloader.isSafeName(entry.getName())) {
+                        changes.conflicts.add(new Change(Change.Kind.CONFLICT, path,
+                            new Node(entry.isDirectory(), entry.getSize(), entry.getModifyTime())));
+                    } else if (entry.isDirectory()) {
+                        nodes.put(path, new Node(true, -1, -1));
+                        next.add(path);
+                    } else if (entry.getType() != RemoteEntry.Type.OTHER) {
+                        nodes.put(path, new Node(false, entry.getSize(), entry.getModifyTime()));
+                    }
+                }
+            }
+            level = next;
+        }
+        return nodes;
+    }
+
+    /** Ask MDTM for remote files whose listing carried no time. */
+    private void resolveTimes(List<String> paths, Map<String, Node> remote, String root,
+                              ExecutorService workers) throws IOException {
+        List<Future<Long>> times = new ArrayList<>();
+        List<Node> nodes = new ArrayList<>();
+        for (String path : paths) {
+            Node node = remote.get(path);
+            if (node.modifyTime < 0) {
+                String absolute = remotePath(root, path);
+                times.add(workers.submit(() -> pool.execute(null, s -> s.getModificationTime(absolute))));
+                nodes.add(node);
+            }
+        }
+        for (int i = 0; i < times.size(); i++) {
+            nodes.get(i).modifyTime = get(times.get(i));
+        }
+    }
+
+    private Set<String> makeRemoteDirectories(ChangeSet changes, List<String> newDirs,
+                                              ExecutorService workers, TreeTransferProgress progress,
+                                              TreeTransferListener listener) throws IOException {
+        Set<String> wanted = new LinkedHashSet<>();
+        if (!changes.remoteRootExists) {
+            wanted.add(changes.remoteRoot);
+        }
+        for (String dir : newDirs) {
+            wanted.add(remotePath(changes.remoteRoot, dir));
+        }
+        Set<String> missing = new HashSet<>();
+        for (String dir : directories.makeDirectories(wanted, workers, progress, listener)) {
+            if (dir.equals(changes.remoteRoot)) {
+                missing.add("/");
+            } else {
+                missing.add(changes.remoteRoot.equals("/") ? dir : dir.substring(changes.remoteRoot.length()));
+            }
+        }
+        return missing;
+    }
+
+    private Set<String> makeLocalDirectories(ChangeSet changes, List<String> newDirs,
+                                             TreeTransferProgress progress) {
+        Set<String> missing = new HashSet<>();
+        try {
+            Files.createDirectories(changes.localRoot);
+        } catch (IOException e) {
+            progress.failed(changes.localRoot.toString(), e, false);
+            missing.add("/");
+            return missing;
+        }
+        for (String dir : newDirs) {
+            String key = "/" + dir;
+            if (missing.contains(RemoteListingCache.parentOf(key))) {
+                missing.add(key);
+                continue;
+            }
+            try {
+                Files.createDirectories(changes.localRoot.resolve(dir));
+            } catch (IOException e) {
+                progress.failed(dir, e, false);
+                missing.add(key);
+            }
+        }
+        return missing;
+    }
+
+    private void transfer(ChangeSet changes, Change change, TreeTransferProgress progress,
+                          TreeTransferListener listener) {
+        if (cancelled) {
+            return;
+        }
+        String remote = remotePath(changes.remoteRoot, change.getPath());
+        Path local = changes.localRoot.resolve(change.getPath());
+        try {
+            boolean ok;
+            if (changes.direction == Direction.UPLOAD) {
+                ok = pool.execute(null, s -> s.uploadFile(local.toString(), remote));
+            } else {
+                ok = pool.execute(null, s -> {
+                    if (!s.downloadFile(remote, local.toString())) {
+                        return false;
+                    }
+                    // Keep the server's time so the next compare sees the files as equal
+                    long modified = change.getModifyTime() >= 0
+                        ? change.getModifyTime() : s.getModificationTime(remote);
+                    if (modified >= 0) {
+                        Files.setLastModifiedTime(local, FileTime.fromMillis(modified));
+                    }
+                    return true;
+                });
+            }
+            if (ok) {
+                progress.fileDone(change.getSize());
+            } else {
+                progress.failed(change.getPath(), new IOException("Server refused the transfer"), true);
+            }
+        } catch (IOException | RuntimeException e) {
+            progress.failed(change.getPath(), e, true);
+        }
+        notify(listener, progress);
+    }
+
+    /** Delete extraneous files in parallel, then directories deepest first. */
+    private void deleteExtraneous(ChangeSet changes, ExecutorService workers,
+                                  TreeTransferProgress progress, TreeTransferListener listener)
+            throws IOException {
+        List<Future<?>> pending = new ArrayList<>();
+        List<Change> dirs = new ArrayList<>();
+        for (Change c : changes.deleted) {
+            if (c.isDirectory()) {
+                dirs.add(c);
+            } else {
+                pending.add(workers.submit(() -> delete(changes, c, progress, listener)));
+            }
+        }
+        await(pending);
+
+        dirs.sort(Comparator.comparingInt((Change c) -> depth(c.getPath())).reversed());
+        int i = 0;
+        while (i < dirs.size()) {
+            // Siblings at one depth can go together; parents wait for their children
+            int depth = depth(dirs.get(i).getPath());
+            pending.clear();
+            while (i < dirs.size() && depth(dirs.get(i).getPath()) == depth) {
+                Change c = dirs.get(i++);
+                pending.add(workers.submit(() -> delete(changes, c, progress, listener)));
+            }
+            await(pending);
+        }
+    }
+
+    private void delete(ChangeSet changes, Change change, TreeTransferProgress progress,
+                        TreeTransferListener listener) {
+        if (cancelled) {
+            return;
+        }
+        try {
+            boolean ok;
+            if (changes.direction == Direction.UPLOAD) {
+                String remote = remotePath(changes.remoteRoot, change.getPath());
+                ok = pool.execute(null, s -> change.isDirectory()
+                    ? s.removeDirectory(remote) : s.deleteFile(remote));
+            } else {
+                ok = Files.deleteIfExists(changes.localRoot.resolve(change.getPath()));
+            }
+            if (ok) {
+                progress.fileDeleted();
+            } else {
+                progress.failed(change.getPath(), new IOException("Could not delete"), false);
+            }
+        } catch (IOException | RuntimeException e) {
+            progress.failed(change.getPath(), e, false);
+        }
+        notify(listener, progress);
+    }
+
+    private ExecutorService newWorkers(String prefix) {
+        return Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, prefix + pool.getServer());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Wait for every task; an interrupt cancels whatever has not started. */
+    private void await(List<Future<?>> tasks) throws IOException {
+        for (Future<?> f : tasks) {
+            get(f);
+        }
+    }
+
+    private <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new IOException("Interrupted while syncing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Sync worker failed", e.getCause());
+        }
+    }
+
+    private static String remotePath(String root, String relative) {
+        return relative.isEmpty() ? root : RecursiveDownloader.child(root, relative);
+    }
+
+    private static String relative(Path root, Path path) {
+        StringBuilder sb = new StringBuilder();
+        for (Path name : root.relativize(path)) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(name);
+        }
+        return sb.toString();
+    }
+
+    private static int depth(String path) {
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    private static void notify(TreeTransferListener listener, TreeTransferProgress progress) {
+        if (listener != null) {
+            listener.progressed(progress);
+        }
+    }
+
+    /** Size and time of one file or directory on either side. */
+    private static class Node {
+        final boolean directory;
+        final long size;
+        long modifyTime;
+
+        Node(boolean directory, long size, long modifyTime) {
+            this.directory = directory;
+            this.size = size;
+            this.modifyTime = modifyTime;
+        }
+    }
+
+    /** What a sync would change at the destination, as paths relative to the roots. */
+    public static class ChangeSet {
+        private final Direction direction;
+        private final Path localRoot;
+        private final String remoteRoot;
+        private final List<Change> added = new ArrayList<>();
+        private final List<Change> modified = new ArrayList<>();
+        private final List<Change> deleted = new ArrayList<>();
+        private final List<Change> conflicts = new ArrayList<>();
+        private boolean remoteRootExists;
+        private boolean localRootExists;
+
+        ChangeSet(Direction direction, Path localRoot, String remoteRoot) {
+            this.direction = direction;
+            this.localRoot = localRoot;
+            this.remoteRoot = remoteRoot;
+        }
+
+        public Direction getDirection() { return direction; }
+        public Path getLocalRoot() { return localRoot; }
+        public String getRemoteRoot() { return remoteRoot; }
+        /** Files and directories the destination does not have yet, parents first. */
+        public List<Change> getAdded() { return Collections.unmodifiableList(added); }
+        /** Files whose size differs or that changed at the source since the last sync. */
+        public List<Change> getModified() { return Collections.unmodifiableList(modified); }
+        /** Destination files and directories the source does not have. */
+        public List<Change> getDeleted() { return Collections.unmodifiableList(deleted); }
+        /** Paths that cannot be synced: a file on one side and a directory on the other. */
+        public List<Change> getConflicts() { return Collections.unmodifiableList(conflicts); }
+        /** True if the destination root has to be created. */
+        public boolean isDestinationMissing() {
+            return direction == Direction.UPLOAD ? !remoteRootExists : !localRootExists;
+        }
+
+        /** True if nothing would be transferred or deleted. */
+        public boolean isEmpty() {
+            return added.isEmpty() && modified.isEmpty() && deleted.isEmpty() && conflicts.isEmpty()
+                && !isDestinationMissing();
+        }
+
+        @Override
+        public String toString() {
+            return added.size() + " new, " + modified.size() + " modified, "
+                + deleted.size() + " extraneous"
+                + (conflicts.isEmpty() ? "" : ", " + conflicts.size() + " conflicting");
+        }
+    }
+
+    /** One path in a change set. */
+    public static class Change {
+        public enum Kind { NEW, MODIFIED, DELETED, CONFLICT }
+
+        private final Kind kind;
+        private final String path;
+        private final boolean directory;
+        private final long size;
+        private final long modifyTime;
+
+        Change(Kind kind, String path, Node node) {
+            this.kind = kind;
+            this.path = path;
+            this.directory = node.directory;
+            this.size = node.size;
+            this.modifyTime = node.modifyTime;
+        }
+
+        public Kind getKind() { return kind; }
+        /** Path relative to the sync roots, "/"-separated. */
+        public String getPath() { return path; }
+        public boolean isDirectory() { return directory; }
+        /** Size in bytes, or -1 for directories and unknown sizes. */
+        public long getSize() { return size; }
+        /** Modification time (epoch millis) on the side it was found, or -1 if unknown. */
+        public long getModifyTime() { return modifyTime; }
+
+        @Override
+        public String toString() {
+            return kind + " " + path + (directory ? "/" : "");
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.ftpclient.ftp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only on-disk record of in-flight transfers, so that transfers cut
+ * short by a dropped connection or a crash can be resumed after a restart.
+ *
+ * Each line is one record: BEGIN (what is being transferred), OFFSET (bytes
+ * confirmed so far) or DONE. On open the file is replayed, a torn last line
+ * is ignored, and the file is compacted down to the unfinished entries.
+ *
+ * One process at a time owns a journal file: opening takes an exclusive
+ * lock on a sibling ".lock" file and fails if another process (or another
+ * journal in this one) holds it, since compaction replaces the file under
+ * any other writer.
+ */
+public class TransferJournal {
+    public enum Direction { DOWNLOAD, UPLOAD }
+
+    private static final String BEGIN = "BEGIN";
+    private static final String OFFSET = "OFFSET";
+    private static final String DONE = "DONE";
+
+    /**
+     * Lock files held in this process. Checked before opening the lock file
+     * again: closing any channel to a file drops the process's lock on it.
+     */
+    private static final Set<Path> HELD = ConcurrentHashMap.newKeySet();
+
+    private final Path file;
+    private final Path lockFile;
+    private final Map<String, Entry> unfinished = new LinkedHashMap<>();
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private FileOutputStream out;
+    private BufferedWriter writer;
+    private long nextId = 1;           // above every id in the file
+
+    /**
+     * Open (or create) the journal at {@code file}. Throws if another
+     * process has it open.
+     */
+    public TransferJournal(Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        lockFile = file.resolveSibling(file.getFileName() + ".lock").toAbsolutePath().normalize();
+        if (!HELD.add(lockFile)) {
+            throw new IOException("Transfer journal " + file + " is already in use");
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock held = channel.tryLock();
+            if (held == null) {
+                throw new IOException("Transfer journal " + file + " is in use by another process");
+            }
+            lockChannel = channel;
+            lock = held;
+            replay();
+            compact();
+            out = new FileOutputStream(file.toFile(), true);
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();   // releases the lock
+            }
+            HELD.remove(lockFile);
+            throw e;
+        }
+    }
+
+    /** The journal in the user's home directory (~/.ftpclient/transfers.journal). */
+    public static TransferJournal openDefault() throws IOException {
+        return new TransferJournal(
+            Paths.get(System.getProperty("user.home"), ".ftpclient", "transfers.journal"));
+    }
+
+    /** Record the start of a transfer and return its entry. */
+    public synchronized Entry begin(Direction direction, String host, int port, String user,
+                                    String remotePath, String localPath, long expectedSize)
+            throws IOException {
+        Entry entry = new Entry(Long.toString(nextId++), direction, host, port, user,
+                                remotePath, localPath, expectedSize);
+        append(BEGIN, entry.id, direction.name(), host, Integer.toString(port), user,
+               remotePath, localPath, Long.toString(expectedSize));
+        unfinished.put(entry.id, entry);
+        return entry;
+    }
+
+    /** Record that the first {@code offset} bytes of the transfer are safely in place. */
+    public synchronized void checkpoint(Entry entry, long offset) throws IOException {
+        entry.confirmedOffset = offset;
+        append(OFFSET, entry.id, Long.toString(offset));
+    }
+
+    /** Record that the transfer finished (or was abandoned on purpose). */
+    public synchronized void complete(Entry entry) throws IOException {
+        if (unfinished.remove(entry.id) != null) {
+            append(DONE, entry.id);
+        }
+    }
+
+    /** All transfers that began but never completed. */
+    public synchronized List<Entry> getUnfinished() {
+        return Collections.unmodifiableList(new ArrayList<>(unfinished.values()));
+    }
+
+    /** Unfinished transfers against one server and account. */
+    public synchronized List<Entry> getUnfinished(String host, int port, String user) {
+        List<Entry> matches = new ArrayList<>();
+        for (Entry e : unfinished.values()) {
+            if (e.host.equals(host) && e.port == port && e.user.equals(user)) {
+                matches.add(e);
+            }
+        }
+        return matches;
+    }
+
+    public synchronized void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            if (lockChannel.isOpen()) {
+                lockChannel.close();   // releases the lock
+                HELD.remove(lockFile);
+            }
+        }
+    }
+
+    private void append(String... fields) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            line.append(escape(fields[i]));
+        }
+        writer.write(line.toString());
+        writer.write('\n');
+        writer.flush();
+        // Offsets are only worth something if they survive a crash
+        out.getFD().sync();
+    }
+
+    /** Rebuild the unfinished set from the file; unreadable lines are skipped. */
+    private void replay() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split("\t", -1);
+                for (int i = 0; i < f.length; i++) {
+                    f[i] = unescape(f[i]);
+                }
+                try {
+                    if (BEGIN.equals(f[0]) && f.length == 9) {
+                        noteId(f[1]);
+                        unfinished.put(f[1], new Entry(f[1], Direction.valueOf(f[2]), f[3],
+                            Integer.parseInt(f[4]), f[5], f[6], f[7], Long.parseLong(f[8])));
+                    } else if (OFFSET.equals(f[0]) && f.length == 3) {
+                        Entry e = unfinished.get(f[1]);
+                        if (e != null) {
+                            e.confirmedOffset = Long.parseLong(f[2]);
+                        }
+                    } else if (DONE.equals(f[0]) && f.length == 2) {
+                        unfinished.remove(f[1]);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Torn write from a crash; the entry stays as last confirmed
+                }
+            }
+        }
+    }
+
+    /** Keep new ids above {@code id}, so they never meet an entry from an earlier run. */
+    private void noteId(String id) {
+        try {
+            nextId = Math.max(nextId, Long.parseLong(id) + 1);
+        } catch (NumberFormatException e) {
+            // Not one of ours; it cannot collide with a numeric id
+        }
+    }
+
+    /** Rewrite the file with just the unfinished entries (atomic replace). */
+    private void compact() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        FileOutputStream tmpOut = new FileOutputStream(tmp.toFile());
+        try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(tmpOut, StandardCharsets.UTF_8))) {
+            for (Entry e : unfinished.values()) {
+                w.write(String.join("\t", BEGIN, escape(e.id), e.direction.name(),
+                    escape(e.host), Integer.toString(e.port), escape(e.user),
+                    escape(e.remotePath), escape(e.localPath), Long.toString(e.expectedSize)));
+                w.write('\n');
+                w.write(String.join("\t", OFFSET, escape(e.id), Long.toString(e.confirmedOffset)));
+                w.write('\n');
+            }
+            w.flush();
+            // On disk before it replaces the old file, or a crash could leave an empty journal
+            tmpOut.getChannel().force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** One journaled transfer. Paths are absolute. */
+    public static class Entry {
+        private final String id;
+        private final Direction direction;
+        private final String host;
+        private final int port;
+        private final String user;
+        private final String remotePath;
+        private final String localPath;
+        private final long expectedSize;
+        private volatile long confirmedOffset;
+
+        Entry(String id, Direction direction, String host, int port, String user,
+              String remotePath, String localPath, long expectedSize) {
+            this.id = id;
+            this.direction = direction;
+            this.host = host;
+            this.port = port;
+            this.user = user;
+            this.remotePath = remotePath;
+            this.localPath = localPath;
+            this.expectedSize = expectedSize;
+        }
+
+        public String getId() { return id; }
+        public Direction getDirection() { return direction; }
+        public String getHost() { return host; }
+        public int getPort() { return port; }
+        public String getUser() { return user; }
+        public String getRemotePath() { return remotePath; }
+        public String getLocalPath() { return localPath; }
+        /** Size in bytes when known at start, otherwise -1. */
+        public long getExpectedSize() { return expectedSize; }
+        public long getConfirmedOffset() { return confirmedOffset; }
+
+        @Override
+        public String toString() {
+            String size = expectedSize >= 0 ? Long.toString(expectedSize) : "?";
+            return direction.name().toLowerCase() + " " + remotePath + " <-> " + localPath
+                + " (" + confirmedOffset + "/" + size + " bytes)";
+        }
+    }
+}
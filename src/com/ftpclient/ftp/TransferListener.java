@@ -0,0 +1,31 @@
+package com.ftpclient.ftp;
+
+/**
+ * Notified as a single-file download or upload on an {@link FTPClient}
+ * moves data. Every {@link #started} is followed by exactly one
+ * {@link #completed} or {@link #failed}; a transfer refused before its data
+ * connection opened reports nothing. Range downloads (the segments of a
+ * segmented download) are not reported.
+ *
+ * Called on the transfer's own thread, {@link #bytesTransferred} once per
+ * chunk copied, so implementations must return at once: record the
+ * position and let a display sample it at its own pace, as
+ * {@link TransferProgress} does.
+ */
+public interface TransferListener {
+    /**
+     * The data connection is open. Positions are file offsets:
+     * {@code offset} bytes were already in place (a resumed transfer) and
+     * {@code size} is the whole file, or -1 if the server did not say.
+     */
+    void started(TransferJournal.Direction direction, String remotePath, long offset, long size);
+
+    /** The first {@code position} bytes of the file have been transferred. */
+    void bytesTransferred(long position);
+
+    /** The server confirmed the transfer, which ended at {@code position}. */
+    void completed(long position);
+
+    /** The transfer stopped at {@code position} because of {@code error}. */
+    void failed(long position, Exception error);
+}
@@ -0,0 +1,422 @@
+package com.ftpclient.ftp;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide counters for every FTPClient session.
+ *
+ * Sessions report the round trip of each command (by verb), the class of
+ * each reply, the time from PASV to an open data connection, and the bytes
+ * moved by each data transfer. Recording is lock-free except when a
+ * transfer ends. Read the numbers with {@link #snapshot()}, or over JMX:
+ * the shared instance registers itself as {@value #OBJECT_NAME}.
+ */
+public class TransferMetrics implements TransferMetricsMXBean {
+    public static final String OBJECT_NAME = "com.ftpclient:type=TransferMetrics";
+    /** Finished transfers kept for {@link Snapshot#getRecentTransfers()}. */
+    public static final int RECENT_TRANSFERS = 100;
+
+    private static final TransferMetrics GLOBAL = new TransferMetrics();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(GLOBAL, new ObjectName(OBJECT_NAME));
+        } catch (JMException | RuntimeException e) {
+            // Metrics still work through snapshot(), just not over JMX
+            System.err.println("Transfer metrics not registered with JMX: " + e.getMessage());
+        }
+    }
+
+    private final Map<String, LatencyHistogram> commands = new ConcurrentHashMap<>();
+    private final LatencyHistogram dataSetup = new LatencyHistogram();
+    private final AtomicLongArray replyClasses = new AtomicLongArray(6);   // index = code / 100
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private final LongAdder bytesUploaded = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Set<Transfer> active = ConcurrentHashMap.newKeySet();
+    private final Deque<TransferStats> recent = new ArrayDeque<>();   // guarded by itself
+
+    /** Metrics shared by every session in this process. */
+    public static TransferMetrics global() {
+        return GLOBAL;
+    }
+
+    /** A command with verb {@code verb} got its first reply after {@code nanos}. */
+    void commandCompleted(String verb, long nanos) {
+        commands.computeIfAbsent(verb, v -> new LatencyHistogram()).record(nanos);
+    }
+
+    /** A reply with {@code code} arrived on a control connection. */
+    void replyReceived(int code) {
+        int replyClass = code / 100;
+        if (replyClass >= 1 && replyClass <= 5) {
+            replyClasses.incrementAndGet(replyClass);
+        }
+    }
+
+    /** A data connection opened {@code nanos} after PASV was sent. */
+    void dataConnected(long nanos) {
+        dataSetup.record(nanos);
+    }
+
+    /** A data transfer is about to move bytes; report them on the result. */
+    Transfer transferStarted(TransferJournal.Direction direction, String remotePath) {
+        Transfer transfer = new Transfer(direction, remotePath);
+        active.add(transfer);
+        return transfer;
+    }
+
+    /** {@code transfer} ended, completely or not. */
+    void transferFinished(Transfer transfer, boolean ok) {
+        if (!active.remove(transfer)) {
+            return;
+        }
+        long bytes = transfer.bytes;
+        if (transfer.direction == TransferJournal.Direction.UPLOAD) {
+            bytesUploaded.add(bytes);
+        } else {
+            bytesDownloaded.add(bytes);
+        }
+        (ok ? completed : failed).increment();
+        TransferStats stats = transfer.stats(true, ok);
+        synchronized (recent) {
+            if (recent.size() == RECENT_TRANSFERS) {
+                recent.removeFirst();
+            }
+            recent.addLast(stats);
+        }
+    }
+
+    /** Everything recorded so far, including transfers still running. */
+    public Snapshot snapshot() {
+        Map<String, LatencyHistogram.Summary> latency = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> e : commands.entrySet()) {
+            latency.put(e.getKey(), e.getValue().summarize());
+        }
+        long[] replies = new long[6];
+        for (int i = 1; i <= 5; i++) {
+            replies[i] = replyClasses.get(i);
+        }
+        List<TransferStats> running = new ArrayList<>();
+        for (Transfer transfer : active) {
+            running.add(transfer.stats(false, false));
+        }
+        List<TransferStats> finished;
+        synchronized (recent) {
+            finished = new ArrayList<>(recent);
+        }
+        // Transfers still running count towards the byte totals as well
+        long down = bytesDownloaded.sum(), up = bytesUploaded.sum();
+        for (TransferStats stats : running) {
+            if (stats.getDirection() == TransferJournal.Direction.UPLOAD) {
+                up += stats.getBytes();
+            } else {
+                down += stats.getBytes();
+            }
+        }
+        return new Snapshot(System.currentTimeMillis(), latency, dataSetup.summarize(), replies,
+                            down, up, completed.sum(), failed.sum(), running, finished);
+    }
+
+    @Override
+    public void reset() {
+        commands.clear();
+        dataSetup.reset();
+        for (int i = 0; i < 6; i++) {
+            replyClasses.set(i, 0);
+        }
+        bytesDownloaded.reset();
+        bytesUploaded.reset();
+        completed.reset();
+        failed.reset();
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+
+    // MXBean attributes
+
+    @Override
+    public Map<String, Long> getCommandCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        snapshot().getCommandLatency().forEach((verb, s) -> counts.put(verb, s.getCount()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getCommandMeanLatencyMillis() {
+        Map<String, Double> means = new TreeMap<>();
+        snapshot().getCommandLatency().forEach((verb, s) -> means.put(verb, s.getMeanMillis()));
+        return means;
+    }
+
+    @Override
+    public Map<String, Double> getCommandP99LatencyMillis() {
+        Map<String, Double> p99 = new TreeMap<>();
+        snapshot().getCommandLatency().forEach((verb, s) -> p99.put(verb, s.getPercentileMillis(99)));
+        return p99;
+    }
+
+    @Override
+    public double getDataConnectionSetupMeanMillis() {
+        return dataSetup.summarize().getMeanMillis();
+    }
+
+    @Override
+    public double getDataConnectionSetupP99Millis() {
+        return dataSetup.summarize().getPercentileMillis(99);
+    }
+
+    @Override
+    public Map<String, Long> getRepliesByClass() {
+        return snapshot().getRepliesByClass();
+    }
+
+    @Override
+    public long getErrorReplies() {
+        return replyClasses.get(4) + replyClasses.get(5);
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return snapshot().getBytesDownloaded();
+    }
+
+    @Override
+    public long getBytesUploaded() {
+        return snapshot().getBytesUploaded();
+    }
+
+    @Override
+    public long getTransfersCompleted() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getTransfersFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public int getActiveTransfers() {
+        return active.size();
+    }
+
+    @Override
+    public double getActiveThroughputBytesPerSecond() {
+        return snapshot().getActiveThroughput();
+    }
+
+    @Override
+    public double getRecentThroughputBytesPerSecond() {
+        return snapshot().getRecentThroughput();
+    }
+
+    /**
+     * One data transfer in progress. Only the thread running the transfer
+     * adds bytes, so a volatile counter is enough for readers.
+     */
+    static final class Transfer {
+        private final TransferJournal.Direction direction;
+        private final String remotePath;
+        private final long startNanos = System.nanoTime();
+        private volatile long bytes;
+        private volatile int socketBuffer;   // as the kernel reports it, 0 if unknown
+        private volatile int copyBuffer;     // 0 for channel-mode (transferTo) uploads
+
+        private Transfer(TransferJournal.Direction direction, String remotePath) {
+            this.direction = direction;
+            this.remotePath = remotePath;
+        }
+
+        /** {@code n} more bytes went over the data connection. */
+        void moved(long n) {
+            bytes += n;
+        }
+
+        /** The transfer runs with these buffer sizes (bytes). */
+        void buffers(int socketBuffer, int copyBuffer) {
+            this.socketBuffer = socketBuffer;
+            this.copyBuffer = copyBuffer;
+        }
+
+        int socketBuffer() {
+            return socketBuffer;
+        }
+
+        long bytes() {
+            return bytes;
+        }
+
+        long elapsedNanos() {
+            return System.nanoTime() - startNanos;
+        }
+
+        private TransferStats stats(boolean finished, boolean ok) {
+            return new TransferStats(direction, remotePath, bytes, System.nanoTime() - startNanos,
+                                     socketBuffer, copyBuffer, finished, ok);
+        }
+    }
+
+    /** Bytes and rate of one transfer, running or finished. */
+    public static class TransferStats {
+        private final TransferJournal.Direction direction;
+        private final String remotePath;
+        private final long bytes;
+        private final long elapsedNanos;
+        private final int socketBuffer;
+        private final int copyBuffer;
+        private final boolean finished;
+        private final boolean ok;
+
+        TransferStats(TransferJournal.Direction direction, String remotePath, long bytes,
+                      long elapsedNanos, int socketBuffer, int copyBuffer,
+                      boolean finished, boolean ok) {
+            this.direction = direction;
+            this.remotePath = remotePath;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.socketBuffer = socketBuffer;
+            this.copyBuffer = copyBuffer;
+            this.finished = finished;
+            this.ok = ok;
+        }
+
+        public TransferJournal.Direction getDirection() { return direction; }
+        public String getRemotePath() { return remotePath; }
+        public long getBytes() { return bytes; }
+        public long getElapsedMillis() { return TimeUnit.NANOSECONDS.toMillis(elapsedNanos); }
+        /** Receive buffer of a download's, send buffer of an upload's data connection. */
+        public int getSocketBufferSize() { return socketBuffer; }
+        /** Stream-mode copy buffer; 0 when the kernel copied (channel mode). */
+        public int getCopyBufferSize() { return copyBuffer; }
+        public boolean isFinished() { return finished; }
+        /** Whether a finished transfer moved everything it was asked to. */
+        public boolean isOk() { return ok; }
+
+        /** Average rate since the data connection opened. */
+        public double getBytesPerSecond() {
+            return elapsedNanos <= 0 ? 0 : bytes * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s: %d bytes in %d ms (%.1f KB/s), buffers %d KB socket, %s%s",
+                direction == TransferJournal.Direction.UPLOAD ? "↑" : "↓", remotePath, bytes,
+                getElapsedMillis(), getBytesPerSecond() / 1024, socketBuffer / 1024,
+                copyBuffer > 0 ? copyBuffer / 1024 + " KB copy" : "kernel copy",
+                finished && !ok ? " failed" : "");
+        }
+    }
+
+    /** Immutable copy of all metrics at one moment. */
+    public static class Snapshot {
+        private final long takenAtMillis;
+        private final Map<String, LatencyHistogram.Summary> commandLatency;
+        private final LatencyHistogram.Summary dataConnectionSetup;
+        private final long[] replies;
+        private final long bytesDownloaded;
+        private final long bytesUploaded;
+        private final long transfersCompleted;
+        private final long transfersFailed;
+        private final List<TransferStats> activeTransfers;
+        private final List<TransferStats> recentTransfers;
+
+        Snapshot(long takenAtMillis, Map<String, LatencyHistogram.Summary> commandLatency,
+                 LatencyHistogram.Summary dataConnectionSetup, long[] replies,
+                 long bytesDownloaded, long bytesUploaded, long transfersCompleted,
+                 long transfersFailed, List<TransferStats> activeTransfers,
+                 List<TransferStats> recentTransfers) {
+            this.takenAtMillis = takenAtMillis;
+            this.commandLatency = Collections.unmodifiableMap(commandLatency);
+            this.dataConnectionSetup = dataConnectionSetup;
+            this.replies = replies;
+            this.bytesDownloaded = bytesDownloaded;
+            this.bytesUploaded = bytesUploaded;
+            this.transfersCompleted = transfersCompleted;
+            this.transfersFailed = transfersFailed;
+            this.activeTransfers = Collections.unmodifiableList(activeTransfers);
+            this.recentTransfers = Collections.unmodifiableList(recentTransfers);
+        }
+
+        /** System.currentTimeMillis() when the snapshot was taken. */
+        public long getTakenAtMillis() { return takenAtMillis; }
+        /** Round trip to the first reply, by command verb. */
+        public Map<String, LatencyHistogram.Summary> getCommandLatency() { return commandLatency; }
+        /** PASV sent to data connection open. */
+        public LatencyHistogram.Summary getDataConnectionSetup() { return dataConnectionSetup; }
+        /** Bytes received, including transfers still running. */
+        public long getBytesDownloaded() { return bytesDownloaded; }
+        /** Bytes sent, including transfers still running. */
+        public long getBytesUploaded() { return bytesUploaded; }
+        public long getTransfersCompleted() { return transfersCompleted; }
+        public long getTransfersFailed() { return transfersFailed; }
+        public List<TransferStats> getActiveTransfers() { return activeTransfers; }
+        /** The last {@value TransferMetrics#RECENT_TRANSFERS} finished transfers, oldest first. */
+        public List<TransferStats> getRecentTransfers() { return recentTransfers; }
+
+        /** Replies of class {@code replyClass} (1-5). */
+        public long getReplies(int replyClass) {
+            return replyClass >= 1 && replyClass <= 5 ? replies[replyClass] : 0;
+        }
+
+        /** Replies per class, keyed "1xx" to "5xx". */
+        public Map<String, Long> getRepliesByClass() {
+            Map<String, Long> byClass = new LinkedHashMap<>();
+            for (int i = 1; i <= 5; i++) {
+                byClass.put(i + "xx", replies[i]);
+            }
+            return byClass;
+        }
+
+        /** Combined rate of the transfers that were running. */
+        public double getActiveThroughput() {
+            double sum = 0;
+            for (TransferStats stats : activeTransfers) {
+                sum += stats.getBytesPerSecond();
+            }
+            return sum;
+        }
+
+        /** Bytes over time of the recent finished transfers taken together. */
+        public double getRecentThroughput() {
+            long bytes = 0, millis = 0;
+            for (TransferStats stats : recentTransfers) {
+                bytes += stats.getBytes();
+                millis += stats.getElapsedMillis();
+            }
+            return millis == 0 ? 0 : bytes * 1000.0 / millis;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Transfers: %d done, %d failed, %d running (%.1f KB/s)%n",
+                transfersCompleted, transfersFailed, activeTransfers.size(), getActiveThroughput() / 1024));
+            sb.append(String.format("Bytes: %d down, %d up%n", bytesDownloaded, bytesUploaded));
+            sb.append("Replies: ").append(getRepliesByClass()).append(System.lineSeparator());
+            sb.append("Data connection setup: ").append(dataConnectionSetup).append(System.lineSeparator());
+            for (Map.Entry<String, LatencyHistogram.Summary> e : commandLatency.entrySet()) {
+                sb.append(String.format("  %-5s %s%n", e.getKey(), e.getValue()));
+            }
+            return sb.toString().trim();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.ftpclient.ftp;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link TransferMetrics}, registered as
+ * {@value TransferMetrics#OBJECT_NAME}. Every attribute is computed from a
+ * fresh snapshot, so a console polling it can graph values as they change.
+ */
+public interface TransferMetricsMXBean {
+    /** Replies received per command verb. */
+    Map<String, Long> getCommandCounts();
+
+    /** Mean time from sending a command to its first reply, per verb. */
+    Map<String, Double> getCommandMeanLatencyMillis();
+
+    /** 99th percentile command round trip per verb (upper bucket bound). */
+    Map<String, Double> getCommandP99LatencyMillis();
+
+    /** Mean time from sending PASV to the data connection being open. */
+    double getDataConnectionSetupMeanMillis();
+
+    double getDataConnectionSetupP99Millis();
+
+    /** Replies per class, keyed "1xx" to "5xx". */
+    Map<String, Long> getRepliesByClass();
+
+    /** 4xx and 5xx replies together. */
+    long getErrorReplies();
+
+    long getBytesDownloaded();
+
+    long getBytesUploaded();
+
+    long getTransfersCompleted();
+
+    long getTransfersFailed();
+
+    int getActiveTransfers();
+
+    /** Combined average rate of the transfers now running. */
+    double getActiveThroughputBytesPerSecond();
+
+    /** Mean rate of the recently finished transfers. */
+    double getRecentThroughputBytesPerSecond();
+
+    /** Clear every counter and histogram; running transfers keep being tracked. */
+    void reset();
+}
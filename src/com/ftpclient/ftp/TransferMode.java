@@ -0,0 +1,20 @@
+package com.ftpclient.ftp;
+
+/**
+ * How file data is copied between the local disk and the data connection.
+ */
+public enum TransferMode {
+    /** Reads and writes through a pooled direct buffer (see {@link BufferPool}). */
+    STREAM,
+    /**
+     * Uploads with FileChannel.transferTo, so the kernel moves the bytes.
+     * Downloads go through a pooled buffer as in STREAM: the JDK's
+     * transferFrom from a socket copies through an 8 KB buffer of its own.
+     */
+    CHANNEL;
+
+    /** Parse a mode name case-insensitively, e.g. from the CLI. */
+    public static TransferMode fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
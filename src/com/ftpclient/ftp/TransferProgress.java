@@ -0,0 +1,138 @@
+package com.ftpclient.ftp;
+
+/**
+ * A {@link TransferListener} that keeps the latest state of one transfer
+ * for a display to sample whenever it redraws.
+ *
+ * The transfer thread only writes volatile fields, so reporting a chunk
+ * costs one store however often the copy loop reports; no callback, lock
+ * or event queue sits between the copy loop and the display. The rate is
+ * worked out on the reading side, from the positions seen at least
+ * {@value #RATE_SAMPLE_MILLIS} ms apart, smoothed so that the remaining
+ * time does not jump with every burst.
+ */
+public class TransferProgress implements TransferListener {
+    private static final long RATE_SAMPLE_MILLIS = 250;
+    private static final long RATE_SAMPLE_NANOS = RATE_SAMPLE_MILLIS * 1_000_000;
+    /** Weight of the newest rate sample; about a two-second memory at four samples a second. */
+    private static final double RATE_GAIN = 0.125;
+
+    // Written by the transfer thread
+    private volatile TransferJournal.Direction direction;
+    private volatile String remotePath;
+    private volatile long startPosition;
+    private volatile long size = -1;
+    private volatile long position;
+    private volatile long startNanos;
+    private volatile boolean running;
+    private volatile boolean completed;
+    private volatile Exception error;
+
+    // Rate estimate; reader side, under the lock
+    private long sampleNanos;
+    private long samplePosition;
+    private double smoothedRate = -1;
+
+    @Override
+    public synchronized void started(TransferJournal.Direction direction, String remotePath,
+                                     long offset, long size) {
+        this.direction = direction;
+        this.remotePath = remotePath;
+        this.startPosition = offset;
+        this.size = size;
+        this.position = offset;
+        this.completed = false;
+        this.error = null;
+        this.startNanos = System.nanoTime();
+        sampleNanos = startNanos;
+        samplePosition = offset;
+        smoothedRate = -1;
+        running = true;
+    }
+
+    @Override
+    public void bytesTransferred(long position) {
+        this.position = position;
+    }
+
+    @Override
+    public void completed(long position) {
+        this.position = position;
+        completed = true;
+        running = false;
+    }
+
+    @Override
+    public void failed(long position, Exception error) {
+        this.position = position;
+        this.error = error;
+        running = false;
+    }
+
+    /** Direction of the current or last transfer, or null before the first. */
+    public TransferJournal.Direction getDirection() { return direction; }
+    public String getRemotePath() { return remotePath; }
+    /** Whether a transfer has started and not yet ended. */
+    public boolean isRunning() { return running; }
+    /** Whether the last transfer was confirmed by the server. */
+    public boolean isCompleted() { return completed; }
+    /** Why the last transfer failed, or null. */
+    public Exception getError() { return error; }
+    /** Bytes of the file in place, including any a resume started from. */
+    public long getPosition() { return position; }
+    /** Whole file size in bytes, or -1 if unknown. */
+    public long getSize() { return size; }
+
+    /** Share of the file in place, from 0 to 1, or -1 if the size is unknown. */
+    public double getFraction() {
+        long total = size;
+        if (total < 0) {
+            return -1;
+        }
+        return total == 0 ? 1 : Math.min(1, (double) position / total);
+    }
+
+    /**
+     * Current speed in bytes per second, or 0 before anything moved. Takes
+     * a new sample when the last one is old enough, so it is meant to be
+     * called from one display, at most about once per frame.
+     */
+    public synchronized long getBytesPerSecond() {
+        long now = System.nanoTime();
+        long current = position;
+        long elapsed = now - sampleNanos;
+        if (running && elapsed >= RATE_SAMPLE_NANOS) {
+            double rate = (current - samplePosition) * 1e9 / elapsed;
+            smoothedRate = smoothedRate < 0 ? rate : smoothedRate + (rate - smoothedRate) * RATE_GAIN;
+            sampleNanos = now;
+            samplePosition = current;
+        }
+        if (smoothedRate >= 0) {
+            return (long) smoothedRate;
+        }
+        // No full sample yet: the average so far
+        long sinceStart = now - startNanos;
+        return sinceStart > 0 ? (long) ((current - startPosition) * 1e9 / sinceStart) : 0;
+    }
+
+    /** Seconds left at the current speed, or -1 if the size or the speed is unknown. */
+    public long getSecondsRemaining() {
+        long rate = getBytesPerSecond();
+        long total = size;
+        if (total < 0 || rate <= 0) {
+            return -1;
+        }
+        return Math.max(0, total - position) / rate;
+    }
+
+    @Override
+    public String toString() {
+        double fraction = getFraction();
+        return String.format("%s%s, %d KB/s%s",
+            fraction >= 0 ? String.format("%.0f%% of %d KB", fraction * 100, size / 1024)
+                          : position / 1024 + " KB",
+            running ? "" : completed ? " (done)" : error != null ? " (failed)" : "",
+            getBytesPerSecond() / 1024,
+            running && getSecondsRemaining() >= 0 ? ", " + getSecondsRemaining() + " s left" : "");
+    }
+}
@@ -0,0 +1,449 @@
+package com.ftpclient.ftp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Schedules file transfers across one or more servers.
+ *
+ * Transfers wait as PENDING until the scheduling policy picks them and
+ * both the global and the per-host limit have room; they then run as
+ * ACTIVE on a session borrowed from their server's pool and end as DONE,
+ * FAILED or CANCELLED. Pausing an active transfer aborts it; resuming it
+ * later continues from where it stopped (REST) under the same journal
+ * entry. Cancelling a transfer drops its journal entry, so it is not
+ * offered for resume again; {@link #cancelAll()} keeps them.
+ * Listeners hear about every state change, on queue threads.
+ */
+public class TransferQueue implements AutoCloseable {
+    public static final int DEFAULT_MAX_ACTIVE = 4;
+    public static final int DEFAULT_MAX_PER_HOST = 2;
+
+    /** Told about every state change of every transfer. */
+    public interface Listener {
+        void transferChanged(QueuedTransfer transfer);
+    }
+
+    private final List<QueuedTransfer> transfers = new ArrayList<>();   // enqueue order
+    private final Map<String, Integer> activePerHost = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService workers;
+    private final boolean ownsWorkers;
+    private TreeSet<QueuedTransfer> pending;
+    private SchedulingPolicy policy;
+    private int maxActive;
+    private int maxPerHost;
+    private int active = 0;
+    private long nextId = 1;
+    private boolean paused = false;
+    private boolean closed = false;
+
+    /** FIFO queue with the default limits. */
+    public TransferQueue() {
+        this(SchedulingPolicy.FIFO, DEFAULT_MAX_ACTIVE, DEFAULT_MAX_PER_HOST);
+    }
+
+    /**
+     * @param policy     order in which pending transfers start
+     * @param maxActive  transfers running at once over all servers
+     * @param maxPerHost transfers running at once against one server
+     */
+    public TransferQueue(SchedulingPolicy policy, int maxActive, int maxPerHost) {
+        this(policy, maxActive, maxPerHost, Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "ftp-queue");
+            t.setDaemon(true);
+            return t;
+        }), true);
+    }
+
+    /** Queue running transfers on the caller's executor, which the caller also shuts down. */
+    public TransferQueue(SchedulingPolicy policy, int maxActive, int maxPerHost, ExecutorService workers) {
+        this(policy, maxActive, maxPerHost, workers, false);
+    }
+
+    private TransferQueue(SchedulingPolicy policy, int maxActive, int maxPerHost,
+                          ExecutorService workers, boolean ownsWorkers) {
+        if (maxActive < 1 || maxPerHost < 1) {
+            throw new IllegalArgumentException(
+                "Invalid limits: maxActive=" + maxActive + ", maxPerHost=" + maxPerHost);
+        }
+        this.policy = policy;
+        this.pending = new TreeSet<>(order(policy));
+        this.maxActive = maxActive;
+        this.maxPerHost = maxPerHost;
+        this.workers = workers;
+        this.ownsWorkers = ownsWorkers;
+    }
+
+    /** Queue a download of absolute {@code remotePath}; {@code size} may be -1. */
+    public QueuedTransfer enqueueDownload(FTPSessionPool pool, String remotePath, String localPath,
+                                          long size, int priority) {
+        return enqueue(TransferJournal.Direction.DOWNLOAD, pool, remotePath, localPath, size, priority);
+    }
+
+    /** Queue an upload of {@code localPath} to absolute {@code remotePath}. */
+    public QueuedTransfer enqueueUpload(FTPSessionPool pool, String localPath, String remotePath,
+                                        int priority) {
+        long size;
+        try {
+            size = Files.size(Paths.get(localPath));
+        } catch (IOException e) {
+            size = -1;   // the upload itself will report the problem
+        }
+        return enqueue(TransferJournal.Direction.UPLOAD, pool, remotePath, localPath, size, priority);
+    }
+
+    private QueuedTransfer enqueue(TransferJournal.Direction direction, FTPSessionPool pool,
+                                   String remotePath, String localPath, long size, int priority) {
+        QueuedTransfer transfer;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Transfer queue is closed");
+            }
+            transfer = new QueuedTransfer(nextId++, direction, pool, remotePath, localPath,
+                                          size, priority);
+            transfers.add(transfer);
+            pending.add(transfer);
+        }
+        changed(transfer);
+        schedule();
+        return transfer;
+    }
+
+    /** Stop starting transfers; those already running carry on. */
+    public void pause() {
+        synchronized (this) {
+            paused = true;
+        }
+    }
+
+    /** Start transfers again after {@link #pause()}. */
+    public void resume() {
+        synchronized (this) {
+            paused = false;
+        }
+        schedule();
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /** Hold a pending transfer back, or stop an active one so it can continue later. */
+    public void pause(QueuedTransfer transfer) {
+        stop(transfer, QueuedTransfer.State.PAUSED);
+    }
+
+    /** Put a paused transfer back in line. */
+    public void resume(QueuedTransfer transfer) {
+        synchronized (this) {
+            if (transfer.getState() != QueuedTransfer.State.PAUSED) {
+                return;
+            }
+            transfer.setState(QueuedTransfer.State.PENDING);
+            pending.add(transfer);
+        }
+        changed(transfer);
+        schedule();
+    }
+
+    /**
+     * Drop a transfer that has not finished, aborting it if it is running.
+     * Its journal entry goes too, so it is not offered for resume later.
+     */
+    public void cancel(QueuedTransfer transfer) {
+        stop(transfer, QueuedTransfer.State.CANCELLED, true);
+    }
+
+    /**
+     * Cancel every transfer that has not finished, e.g. on disconnect.
+     * Journal entries stay, so interrupted transfers can be resumed next time.
+     */
+    public void cancelAll() {
+        for (QueuedTransfer transfer : getTransfers()) {
+            stop(transfer, QueuedTransfer.State.CANCELLED, false);
+        }
+    }
+
+    private void stop(QueuedTransfer transfer, QueuedTransfer.State target) {
+        stop(transfer, target, false);
+    }
+
+    private void stop(QueuedTransfer transfer, QueuedTransfer.State target, boolean discard) {
+        FTPClient session = null;
+        synchronized (this) {
+            QueuedTransfer.State state = transfer.getState();
+            if (state == QueuedTransfer.State.ACTIVE) {
+                // The worker sees the request once the aborted transfer fails
+                transfer.setStopRequest(target);
+                transfer.setDiscard(discard);
+                session = transfer.getSession();
+            } else if (state == QueuedTransfer.State.PENDING
+                       || (state == QueuedTransfer.State.PAUSED && target == QueuedTransfer.State.CANCELLED)) {
+                pending.remove(transfer);
+                transfer.setState(target);
+            } else {
+                return;
+            }
+        }
+        if (session != null) {
+            session.abort();
+        } else if (transfer.getState() != QueuedTransfer.State.ACTIVE) {
+            if (discard) {
+                discardJournalEntry(transfer);
+            }
+            changed(transfer);
+        }
+    }
+
+    /** Change the priority of a transfer; only matters while it is pending. */
+    public void setPriority(QueuedTransfer transfer, int priority) {
+        synchronized (this) {
+            // The pending set is ordered by priority, so take it out while it changes
+            boolean queued = pending.remove(transfer);
+            transfer.setPriority(priority);
+            if (queued) {
+                pending.add(transfer);
+            }
+        }
+        changed(transfer);
+    }
+
+    /** Forget transfers that are done, failed or cancelled. */
+    public synchronized void removeFinished() {
+        transfers.removeIf(t -> t.getState().isFinal());
+    }
+
+    /** Every known transfer in enqueue order. */
+    public synchronized List<QueuedTransfer> getTransfers() {
+        return new ArrayList<>(transfers);
+    }
+
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized SchedulingPolicy getPolicy() {
+        return policy;
+    }
+
+    /** Reorder the pending transfers by a new policy. */
+    public void setPolicy(SchedulingPolicy policy) {
+        synchronized (this) {
+            TreeSet<QueuedTransfer> reordered = new TreeSet<>(order(policy));
+            reordered.addAll(pending);
+            this.policy = policy;
+            this.pending = reordered;
+        }
+        schedule();
+    }
+
+    public synchronized int getMaxActive() {
+        return maxActive;
+    }
+
+    public void setMaxActive(int maxActive) {
+        if (maxActive < 1) {
+            throw new IllegalArgumentException("maxActive must be at least 1");
+        }
+        synchronized (this) {
+            this.maxActive = maxActive;
+        }
+        schedule();
+    }
+
+    public synchronized int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    /** Limit per server; never more than the server's session pool can lend. */
+    public void setMaxPerHost(int maxPerHost) {
+        if (maxPerHost < 1) {
+            throw new IllegalArgumentException("maxPerHost must be at least 1");
+        }
+        synchronized (this) {
+            this.maxPerHost = maxPerHost;
+        }
+        schedule();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Cancel everything and, if we created them, stop the worker threads. */
+    @Override
+    public void close() {
+        cancelAll();
+        synchronized (this) {
+            closed = true;
+        }
+        if (ownsWorkers) {
+            workers.shutdown();
+        }
+    }
+
+    /** Start as many pending transfers as the limits allow, in policy order. */
+    private void schedule() {
+        List<QueuedTransfer> starting = new ArrayList<>();
+        synchronized (this) {
+            if (paused || closed) {
+                return;
+            }
+            Iterator<QueuedTransfer> it = pending.iterator();
+            while (it.hasNext() && active < maxActive) {
+                QueuedTransfer transfer = it.next();
+                String host = transfer.getHost();
+                int running = activePerHost.getOrDefault(host, 0);
+                if (running >= Math.min(maxPerHost, transfer.getPool().getMaxSize())) {
+                    continue;
+                }
+                it.remove();
+                activePerHost.put(host, running + 1);
+                active++;
+                transfer.setState(QueuedTransfer.State.ACTIVE);
+                transfer.setStopRequest(null);
+                starting.add(transfer);
+            }
+        }
+        for (QueuedTransfer transfer : starting) {
+            changed(transfer);
+            workers.execute(() -> run(transfer));
+        }
+    }
+
+    private void run(QueuedTransfer transfer) {
+        FTPSessionPool pool = transfer.getPool();
+        boolean ok = false;
+        Exception error = null;
+        FTPClient session = null;
+        try {
+            session = pool.borrow();
+            session.setRateLimiter(transfer.getRateLimiter());
+            session.setTransferListener(transfer.getProgress());
+            synchronized (this) {
+                transfer.setSession(session);
+            }
+            if (transfer.getStopRequest() == null) {
+                ok = transfer(transfer, session);
+            }
+        } catch (IOException | RuntimeException e) {
+            error = e;
+        } finally {
+            synchronized (this) {
+                transfer.setSession(null);
+            }
+            if (session != null && session.getJournalEntry() != null) {
+                transfer.setJournalEntry(session.getJournalEntry());
+            }
+        }
+        if (session != null) {
+            // An aborted session is no longer logged in, and release() drops it
+            if (error != null && session.isLoggedIn()) {
+                recycle(pool, session);
+            } else {
+                pool.release(session);
+            }
+        }
+        finished(transfer, ok, error);
+    }
+
+    private static boolean transfer(QueuedTransfer transfer, FTPClient session) throws IOException {
+        boolean resume = transfer.isStarted();
+        transfer.setStarted(true);
+        if (resume && transfer.getJournalEntry() != null) {
+            // Same entry as before the pause, rather than a second one beside it
+            return session.resume(transfer.getJournalEntry());
+        }
+        if (transfer.getDirection() == TransferJournal.Direction.DOWNLOAD) {
+            return resume ? session.resumeDownload(transfer.getRemotePath(), transfer.getLocalPath())
+                          : session.downloadFile(transfer.getRemotePath(), transfer.getLocalPath());
+        }
+        return resume ? session.resumeUpload(transfer.getLocalPath(), transfer.getRemotePath())
+                      : session.uploadFile(transfer.getLocalPath(), transfer.getRemotePath());
+    }
+
+    private void finished(QueuedTransfer transfer, boolean ok, Exception error) {
+        boolean discard;
+        synchronized (this) {
+            active--;
+            activePerHost.merge(transfer.getHost(), -1, Integer::sum);
+            QueuedTransfer.State stop = transfer.getStopRequest();
+            discard = stop == QueuedTransfer.State.CANCELLED && !ok && transfer.isDiscard();
+            transfer.setStopRequest(null);
+            transfer.setDiscard(false);
+            if (stop != null && !ok) {
+                transfer.setState(stop);
+            } else if (ok) {
+                transfer.setState(QueuedTransfer.State.DONE);
+            } else {
+                transfer.setState(QueuedTransfer.State.FAILED);
+                transfer.setError(error != null ? error
+                    : new IOException("Server refused the transfer"));
+            }
+        }
+        if (discard) {
+            discardJournalEntry(transfer);
+        }
+        changed(transfer);
+        schedule();
+    }
+
+    /** Mark a cancelled transfer's journal entry complete so it is not offered for resume. */
+    private static void discardJournalEntry(QueuedTransfer transfer) {
+        TransferJournal journal = transfer.getPool().getTransferJournal();
+        TransferJournal.Entry entry = transfer.getJournalEntry();
+        if (journal == null || entry == null) {
+            return;
+        }
+        try {
+            journal.complete(entry);
+        } catch (IOException e) {
+            // The entry stays and is offered for resume on the next connect
+        }
+    }
+
+    private void changed(QueuedTransfer transfer) {
+        for (Listener listener : listeners) {
+            listener.transferChanged(transfer);
+        }
+        if (transfer.getState().isFinal()) {
+            transfer.completion().complete(transfer);
+        }
+    }
+
+    private static void recycle(FTPSessionPool pool, FTPClient session) {
+        try {
+            if (session.noop()) {
+                pool.release(session);
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            // fall through and drop it
+        }
+        pool.invalidate(session);
+    }
+
+    private static Comparator<QueuedTransfer> order(SchedulingPolicy policy) {
+        return policy.thenComparingLong(QueuedTransfer::getId);
+    }
+}
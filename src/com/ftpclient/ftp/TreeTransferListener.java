@@ -0,0 +1,10 @@
+package com.ftpclient.ftp;
+
+/**
+ * Notified as a recursive transfer makes progress: after each file
+ * finishes or fails and once the tree has been fully walked. Called from
+ * worker threads.
+ */
+public interface TreeTransferListener {
+    void progressed(TreeTransferProgress progress);
+}
@@ -0,0 +1,109 @@
+package com.ftpclient.ftp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregate progress of a recursive (whole directory tree) transfer.
+ *
+ * Totals grow while the tree is still being walked, so percentages are
+ * only final once {@link #isScanFinished()} is true. Safe to read from
+ * any thread while the transfer runs.
+ */
+public class TreeTransferProgress {
+    private final AtomicLong filesFound = new AtomicLong();
+    private final AtomicLong bytesFound = new AtomicLong();
+    private final AtomicLong filesDone = new AtomicLong();
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicLong filesFailed = new AtomicLong();
+    private final AtomicLong filesDeleted = new AtomicLong();
+    private final List<Failure> failures = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean scanFinished = false;
+    private volatile boolean cancelled = false;
+
+    void fileFound(long size) {
+        filesFound.incrementAndGet();
+        if (size > 0) {
+            bytesFound.addAndGet(size);
+        }
+    }
+
+    void fileDone(long size) {
+        filesDone.incrementAndGet();
+        if (size > 0) {
+            bytesDone.addAndGet(size);
+        }
+    }
+
+    void fileDeleted() {
+        filesDeleted.incrementAndGet();
+    }
+
+    void failed(String path, Exception cause, boolean isFile) {
+        if (isFile) {
+            filesFailed.incrementAndGet();
+        }
+        failures.add(new Failure(path, cause));
+    }
+
+    void scanFinished() {
+        scanFinished = true;
+    }
+
+    void cancelled() {
+        cancelled = true;
+    }
+
+    public long getFilesFound() { return filesFound.get(); }
+    public long getBytesFound() { return bytesFound.get(); }
+    public long getFilesDone() { return filesDone.get(); }
+    public long getBytesDone() { return bytesDone.get(); }
+    public long getFilesFailed() { return filesFailed.get(); }
+    /** Extraneous files and directories removed by a sync. */
+    public long getFilesDeleted() { return filesDeleted.get(); }
+    /** True once every directory has been walked and all files are counted. */
+    public boolean isScanFinished() { return scanFinished; }
+    public boolean isCancelled() { return cancelled; }
+
+    /** Files and directories that could not be transferred, in the order they failed. */
+    public List<Failure> getFailures() {
+        synchronized (failures) {
+            return new ArrayList<>(failures);
+        }
+    }
+
+    /** True if the transfer ran to the end with nothing failed or skipped. */
+    public boolean isComplete() {
+        return scanFinished && !cancelled && failures.isEmpty()
+            && filesDone.get() == filesFound.get();
+    }
+
+    @Override
+    public String toString() {
+        return filesDone.get() + "/" + filesFound.get() + (scanFinished ? "" : "+") + " files, "
+            + bytesDone.get() + "/" + bytesFound.get() + " bytes"
+            + (filesDeleted.get() > 0 ? ", " + filesDeleted.get() + " deleted" : "")
+            + (filesFailed.get() > 0 ? ", " + filesFailed.get() + " failed" : "");
+    }
+
+    /** One path that failed and why. */
+    public static class Failure {
+        private final String path;
+        private final Exception cause;
+
+        Failure(String path, Exception cause) {
+            this.path = path;
+            this.cause = cause;
+        }
+
+        public String getPath() { return path; }
+        public Exception getCause() { return cause; }
+
+        @Override
+        public String toString() {
+            return path + ": " + cause.getMessage();
+        }
+    }
+}
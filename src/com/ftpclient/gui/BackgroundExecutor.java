@@ -0,0 +1,107 @@
+package com.ftpclient.gui;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.ftpclient.ftp.AsyncFTPClient;
+
+/**
+ * BackgroundExecutor - the one executor behind all of the GUI's background work
+ *
+ * Connecting, listings, navigation, folder transfers and the transfer queue all
+ * run here. On runtimes with virtual threads every task gets its own; otherwise
+ * a fixed pool of daemon threads works through a queue, so rapid clicking lines
+ * tasks up instead of piling up blocked threads.
+ *
+ * Work is tracked in {@link Scope}s that are cancelled as a unit, for example
+ * everything that belongs to a connection when the user disconnects.
+ */
+class BackgroundExecutor implements AutoCloseable {
+
+    // Platform threads used when the runtime has no virtual threads
+    static final int MAX_PLATFORM_THREADS = 16;
+
+    // How long close() waits for cancelled tasks to wind down
+    private static final long SHUTDOWN_WAIT_MILLIS = 2000;
+
+    private final ExecutorService executor = AsyncFTPClient.newDefaultExecutor(MAX_PLATFORM_THREADS);
+    private final Set<Scope> scopes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The shared executor, for handing to AsyncFTPClient and TransferQueue
+     * @return Executor that stays usable until close()
+     */
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Creates a scope whose work is cancelled together
+     * @param name Shown in toString, for debugging
+     * @return Empty scope, cancelled again on close()
+     */
+    Scope newScope(String name) {
+        Scope scope = new Scope(name);
+        scopes.add(scope);
+        return scope;
+    }
+
+    /**
+     * Cancels every scope and stops the executor
+     * Waits briefly so aborted transfers can release their sockets
+     */
+    @Override
+    public void close() {
+        for (Scope scope : scopes) {
+            scope.cancel();
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(SHUTDOWN_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A group of running operations that end together
+     * Futures leave the scope by themselves once they complete
+     */
+    static final class Scope {
+        private final String name;
+        private final Set<CompletableFuture<?>> running = ConcurrentHashMap.newKeySet();
+
+        private Scope(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Adds an operation to this scope
+         * @param future Operation to cancel along with the scope
+         * @return The same future, for chaining
+         */
+        <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+            running.add(future);
+            future.whenComplete((value, error) -> running.remove(future));
+            return future;
+        }
+
+        /**
+         * Cancels everything still running in this scope
+         * The scope stays usable for new work afterwards
+         */
+        void cancel() {
+            for (CompletableFuture<?> future : running) {
+                future.cancel(true);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + running.size() + " running)";
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.ftpclient.gui;
 
 import javafx.scene.control.ButtonType;
+import javafx.animation.AnimationTimer;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.FileChooser;
@@ -9,11 +10,29 @@ import javafx.collections.ObservableList;
 import javafx.application.Platform;
 import javafx.scene.control.Alert; 
 import javafx.scene.control.TextInputDialog;
+import javafx.scene.layout.VBox;
 import java.util.Optional;
 
+import com.ftpclient.ftp.AsyncFTPClient;
 import com.ftpclient.ftp.FTPClient;
+import com.ftpclient.ftp.QueuedTransfer;
+import com.ftpclient.ftp.RateLimiter;
+import com.ftpclient.ftp.RemoteEntry;
+import com.ftpclient.ftp.SchedulingPolicy;
+import com.ftpclient.ftp.SyncEngine;
+import com.ftpclient.ftp.TransferQueue;
+import com.ftpclient.ftp.TransferJournal;
+import com.ftpclient.ftp.TransferProgress;
+import com.ftpclient.ftp.TreeTransferListener;
+import com.ftpclient.ftp.TreeTransferProgress;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * MainController - JavaFX Controller for the FTP Client GUI
@@ -37,13 +56,13 @@ public class MainController {
 
     // Main file browser lists - dual-pane interface
     @FXML private ListView<String> clientFileList;  // Local filesystem browser
-    @FXML private ListView<String> serverFileList;  // Remote FTP server browser
+    @FXML private ListView<RemoteEntry> serverFileList;  // Remote FTP server browser
 
     // Status display labels
     @FXML private Label leftStatusLabel;   // Connection and operation status
     @FXML private Label rightStatusLabel;  // File listing and directory info
 
-    // Menu bar items (File, Edit, Help menus)
+    // Menu bar items (File, Edit, Transfers, Help menus)
     @FXML private MenuItem newMenuItem, openMenuItem, closeMenuItem;
     @FXML private MenuItem saveMenuItem, saveAsMenuItem, revertMenuItem;
     @FXML private MenuItem preferencesMenuItem, quitMenuItem;
@@ -51,6 +70,7 @@ public class MainController {
     @FXML private MenuItem copyMenuItem, pasteMenuItem, deleteMenuItem;
     @FXML private MenuItem selectAllMenuItem, unselectAllMenuItem;
     @FXML private MenuItem aboutMenuItem;
+    @FXML private MenuItem speedLimitsMenuItem;
 
     // Local directory navigation controls
     @FXML private Button clientGoButton;           // Navigate to selected/typed directory
@@ -77,14 +97,46 @@ public class MainController {
     @FXML private Button downloadButton;      // Download selected server file
     @FXML private ProgressBar transferProgressBar; // Progress indicator
     @FXML private Button deleteButton;        // Delete selected file/folder
+    @FXML private Button syncButton;          // Sync current local and server folders
+
+    // Transfer queue panel
+    @FXML private ListView<QueuedTransfer> transferQueueList;  // Pending, active and finished transfers
+    @FXML private ChoiceBox<String> queuePolicyChoice;         // Order in which pending transfers start
+    @FXML private Button queuePauseAllButton;                  // Stops/starts the whole queue
 
     // ================= INTERNAL STATE VARIABLES =================
     
-    private FTPClient ftpClient;                    // FTP connection handler
+    private AsyncFTPClient asyncClient;            // Non-blocking operations over pooled FTP sessions
+    private TransferJournal transferJournal;       // On-disk record of unfinished transfers
     private FileChooser downloadFileChooser;       // File save dialog for downloads
     private FileChooser uploadFileChooser;         // File open dialog for uploads
     private String currentLocalDirectory = ".";    // Current local working directory
     private String currentServerDirectory = "/";   // Current server working directory
+    private final BackgroundExecutor background = new BackgroundExecutor();  // Runs all FTP work
+    private final BackgroundExecutor.Scope connectionWork = background.newScope("connection");  // Ends on disconnect
+    private final BackgroundExecutor.Scope navigationWork = background.newScope("navigation");  // Pending server CWD
+    private final BackgroundExecutor.Scope listingWork = background.newScope("listing");  // Streaming server listing
+    // Schedules single-file transfers, on the shared executor
+    private final TransferQueue transferQueue = new TransferQueue(SchedulingPolicy.FIFO,
+        TransferQueue.DEFAULT_MAX_ACTIVE, TransferQueue.DEFAULT_MAX_PER_HOST, background.getExecutor());
+    private final AtomicBoolean queueRefreshPending = new AtomicBoolean();
+    private final List<QueuedTransfer> activeTransfers = new ArrayList<>();  // FX thread only
+    private long lastQueueRedraw;                  // System.nanoTime() of the last progress redraw of the queue list
+    // Samples active transfers once per frame while any run; the copy loops never wait on the FX thread
+    private final AnimationTimer transferProgressTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            showTransferProgress(now);
+        }
+    };
+
+    // Server listings reach the list view in batches rather than per entry
+    private static final int FIRST_LISTING_BATCH = 50;      // Roughly one screen
+    private static final int LISTING_BATCH = 1000;
+    private static final long LISTING_BATCH_NANOS = 100_000_000L;  // 100 ms
+
+    // Percentages in the transfer queue list are redrawn less often than the progress bar
+    private static final long QUEUE_PROGRESS_REDRAW_NANOS = 500_000_000L;  // 500 ms
 
     // ================= INITIALIZATION =================
 
@@ -104,6 +156,26 @@ public class MainController {
         leftStatusLabel.setText("Ready");
         rightStatusLabel.setText("Disconnected");
 
+        // Open the transfer journal so interrupted transfers can be resumed
+        try {
+            transferJournal = TransferJournal.openDefault();
+        } catch (IOException e) {
+            leftStatusLabel.setText("Transfer journal unavailable: " + e.getMessage());
+        }
+
+        // Transfer queue view, refreshed at most once per frame however busy the queue is
+        queuePolicyChoice.getItems().addAll("First in, first out", "Priority", "Smallest first");
+        queuePolicyChoice.getSelectionModel().selectFirst();
+        queuePolicyChoice.setOnAction(event -> handleQueuePolicy());
+        transferQueue.addListener(transfer -> {
+            if (queueRefreshPending.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    queueRefreshPending.set(false);
+                    refreshTransferQueue();
+                });
+            }
+        });
+
         // Setup file selection listeners for details panel updates
         clientFileList.getSelectionModel().selectedItemProperty().addListener(
             (observable, oldValue, newValue) -> displayLocalFileDetails(newValue)
@@ -126,8 +198,8 @@ public class MainController {
         // Setup double-click navigation for server files
         serverFileList.setOnMouseClicked(event -> {
             if (event.getClickCount() == 2) {
-                String selectedItem = serverFileList.getSelectionModel().getSelectedItem();
-                if (selectedItem != null && selectedItem.startsWith("d")) { // Unix-style directory indicator
+                RemoteEntry selectedItem = serverFileList.getSelectionModel().getSelectedItem();
+                if (selectedItem != null && selectedItem.isDirectory()) {
                     handleServerDirectoryNavigation(selectedItem);
                 }
             }
@@ -176,51 +248,35 @@ public class MainController {
         connectButton.setDisable(true);
         leftStatusLabel.setText("Connecting to " + serverIP + ":" + finalPort + "...");
         
-        // Perform connection in background thread
-        new Thread(() -> {
-            try {
-                ftpClient = new FTPClient(serverIP, finalPort);
-                boolean connected = ftpClient.connect();
-                
-                if (connected) {
-                    boolean loggedIn = ftpClient.login(username, password);
-                    
-                    // Update GUI on JavaFX Application Thread
-                    Platform.runLater(() -> {
-                        if (loggedIn) {
-                            // Successful connection - enable server features
-                            leftStatusLabel.setText("Connected to " + serverIP);
-                            rightStatusLabel.setText("Logged in as " + username);
-                            connectButton.setDisable(true); 
-                            disconnectButton.setDisable(false);
-                            loadServerFiles();
-                            serverGoButton.setDisable(false);
-                            serverUpButton.setDisable(false);
-                            serverNewFolderButton.setDisable(false);
-                        } else {
-                            // Authentication failed
-                            leftStatusLabel.setText("Login failed");
-                            connectButton.setDisable(false);
-                            ftpClient = null;
-                        }
-                    });
-                } else {
-                    // Connection failed
-                    Platform.runLater(() -> {
-                        leftStatusLabel.setText("Connection failed");
-                        connectButton.setDisable(false);
-                        ftpClient = null;
-                    });
-                }
-            } catch (IOException e) {
-                // Network error occurred
-                Platform.runLater(() -> {
-                    leftStatusLabel.setText("Error: " + e.getMessage());
-                    connectButton.setDisable(false);
-                    ftpClient = null;
-                });
-            }
-        }).start();
+        // Connect and log in without blocking the GUI; callbacks run on the FX thread
+        CompletableFuture<AsyncFTPClient> connecting =
+            AsyncFTPClient.connect(serverIP, finalPort, username, password, background.getExecutor());
+        
+        // The first session already knows its home directory, so this costs no round trip
+        CompletableFuture<String> homeDirectory = connecting.thenCompose(client -> {
+            client.getPool().setTransferJournal(transferJournal);
+            return client.submit(null, FTPClient::getWorkingDirectory);
+        });
+        
+        onFxThread(connectionWork.track(homeDirectory), home -> {
+            // Successful connection - enable server features
+            asyncClient = connecting.join();
+            currentServerDirectory = home;
+            leftStatusLabel.setText("Connected to " + serverIP);
+            rightStatusLabel.setText("Logged in as " + username);
+            connectButton.setDisable(true); 
+            disconnectButton.setDisable(false);
+            loadServerFiles();
+            serverGoButton.setDisable(false);
+            serverUpButton.setDisable(false);
+            serverNewFolderButton.setDisable(false);
+            offerResumeOfInterruptedTransfers(serverIP, finalPort, username);
+        }, error -> {
+            // Network error or authentication failure
+            connecting.thenAccept(AsyncFTPClient::close);
+            leftStatusLabel.setText("Error: " + error.getMessage());
+            connectButton.setDisable(false);
+        });
     }
 
     /**
@@ -229,9 +285,14 @@ public class MainController {
      */
     @FXML
     void handleDisconnect() {
-        if (ftpClient != null) {
-            ftpClient.disconnect();
-            ftpClient = null;
+        // Stop everything started for this connection before closing its sessions
+        transferQueue.cancelAll();
+        navigationWork.cancel();
+        listingWork.cancel();
+        connectionWork.cancel();
+        if (asyncClient != null) {
+            asyncClient.close();
+            asyncClient = null;
         }
         
         // Reset GUI to disconnected state
@@ -290,28 +351,48 @@ public class MainController {
 
     /**
      * Loads and displays files from the current FTP server directory
-     * Runs in background thread to prevent GUI blocking during network operations
-     * Uses FTP LIST command through FTPClient.listFiles()
+     * Entries stream in from a background thread and are appended in batches,
+     * so the first screen shows up long before a large listing has finished
+     * Uses MLSD (or LIST) through FTPClient.listEntries()
      */
     private void loadServerFiles() {
-        if (ftpClient == null || !ftpClient.isLoggedIn()) {
+        if (!isServerConnected()) {
             return;
         }
         
-        new Thread(() -> {
-            try {
-                List<String> files = ftpClient.listFiles();
-                Platform.runLater(() -> {
-                    ObservableList<String> items = FXCollections.observableArrayList(files);
-                    serverFileList.setItems(items);
-                    rightStatusLabel.setText("Files loaded (" + files.size() + " items)");
-                });
-            } catch (IOException e) {
-                Platform.runLater(() -> {
-                    rightStatusLabel.setText("Error loading files: " + e.getMessage());
-                });
+        // A newer listing replaces any that is still streaming
+        listingWork.cancel();
+        ObservableList<RemoteEntry> items = FXCollections.observableArrayList();
+        serverFileList.setItems(items);
+        rightStatusLabel.setText("Loading files...");
+        
+        ListingBatcher batcher = new ListingBatcher(items);
+        CompletableFuture<Integer> listing = asyncClient.listEntries(currentServerDirectory, batcher)
+            .thenApply(count -> {
+                batcher.flush();
+                return count;
+            });
+        
+        onFxThread(listingWork.track(listing), count -> {
+            if (serverFileList.getItems() == items) {
+                rightStatusLabel.setText("Files loaded (" + count + " items)");
+            }
+        }, error -> {
+            if (serverFileList.getItems() == items) {
+                rightStatusLabel.setText("Error loading files: " + error.getMessage());
             }
-        }).start();
+        });
+    }
+
+    /**
+     * Reloads the server listing from the server itself, bypassing the cache
+     * Used when the user explicitly asks for a refresh
+     */
+    private void refreshServerFiles() {
+        if (isServerConnected()) {
+            asyncClient.invalidateListing(currentServerDirectory);
+        }
+        loadServerFiles();
     }
 
     /**
@@ -320,7 +401,7 @@ public class MainController {
      */
     @FXML
     void handleListFiles() {
-        loadServerFiles();
+        refreshServerFiles();
     }
 
     /**
@@ -330,7 +411,7 @@ public class MainController {
     @FXML
     void handleRefreshFiles() {
         loadLocalFiles();
-        loadServerFiles();
+        refreshServerFiles();
         leftStatusLabel.setText("File lists refreshed");
     }
 
@@ -343,7 +424,7 @@ public class MainController {
      */
     @FXML
     void handleDownloadFile() {
-        String selectedFile = serverFileList.getSelectionModel().getSelectedItem();
+        RemoteEntry selectedFile = serverFileList.getSelectionModel().getSelectedItem();
         if (selectedFile == null) {
             leftStatusLabel.setText("Please select a file to download");
             return;
@@ -355,28 +436,10 @@ public class MainController {
         }
         File file = downloadFileChooser.showSaveDialog(null);
         
-        if (file != null && ftpClient != null) {
-            // Perform download in background thread
-            new Thread(() -> {
-                try {
-                    Platform.runLater(() -> 
-                        leftStatusLabel.setText("Downloading " + selectedFile + "..."));
-                    
-                    boolean success = ftpClient.downloadFile(selectedFile, file.getAbsolutePath());
-                    
-                    Platform.runLater(() -> {
-                        if (success) {
-                            leftStatusLabel.setText("Download completed: " + file.getName());
-                            loadLocalFiles(); // Refresh local file list
-                        } else {
-                            leftStatusLabel.setText("Download failed");
-                        }
-                    });
-                } catch (IOException e) {
-                    Platform.runLater(() -> 
-                        leftStatusLabel.setText("Download error: " + e.getMessage()));
-                }
-            }).start();
+        if (file != null && isServerConnected()) {
+            queueTransfer(transferQueue.enqueueDownload(asyncClient.getPool(),
+                serverPath(selectedFile.getName()), file.getAbsolutePath(), selectedFile.getSize(), 0),
+                this::loadLocalFiles);
         }
     }
 
@@ -393,28 +456,10 @@ public class MainController {
         }
         File file = uploadFileChooser.showOpenDialog(null);
         
-        if (file != null && ftpClient != null) {
-            // Perform upload in background thread
-            new Thread(() -> {
-                try {
-                    Platform.runLater(() -> 
-                        leftStatusLabel.setText("Uploading " + file.getName() + "..."));
-                    
-                    boolean success = ftpClient.uploadFile(file.getAbsolutePath(), file.getName());
-                    
-                    Platform.runLater(() -> {
-                        if (success) {
-                            leftStatusLabel.setText("Upload completed: " + file.getName());
-                            loadServerFiles(); // Refresh server file list
-                        } else {
-                            leftStatusLabel.setText("Upload failed");
-                        }
-                    });
-                } catch (IOException e) {
-                    Platform.runLater(() -> 
-                        leftStatusLabel.setText("Upload error: " + e.getMessage()));
-                }
-            }).start();
+        if (file != null && isServerConnected()) {
+            queueTransfer(transferQueue.enqueueUpload(asyncClient.getPool(),
+                file.getAbsolutePath(), serverPath(file.getName()), 0),
+                this::loadServerFiles);
         }
     }
 
@@ -435,34 +480,18 @@ public class MainController {
         String fileName = selectedFile.replaceFirst("^\\[(DIR|FILE)\\] ", "");
         File file = new File(currentLocalDirectory, fileName);
         
-        // Validate file exists and is not a directory
-        if (file.exists() && !file.isDirectory() && ftpClient != null) {
-            new Thread(() -> {
-                try {
-                    Platform.runLater(() -> {
-                        transferStatusLabel.setText("Uploading...");
-                        leftStatusLabel.setText("Uploading " + file.getName() + "...");
-                    });
-                    
-                    boolean success = ftpClient.uploadFile(file.getAbsolutePath(), file.getName());
-                    
-                    Platform.runLater(() -> {
-                        if (success) {
-                            transferStatusLabel.setText("Upload completed");
-                            leftStatusLabel.setText("Upload completed: " + file.getName());
-                            loadServerFiles();
-                        } else {
-                            transferStatusLabel.setText("Upload failed");
-                            leftStatusLabel.setText("Upload failed");
-                        }
-                    });
-                } catch (IOException e) {
-                    Platform.runLater(() -> {
-                        transferStatusLabel.setText("Upload error");
-                        leftStatusLabel.setText("Upload error: " + e.getMessage());
-                    });
-                }
-            }).start();
+        if (file.isDirectory()) {
+            if (isServerConnected()) {
+                uploadDirectory(file);
+            }
+            return;
+        }
+        
+        // Validate file exists
+        if (file.exists() && isServerConnected()) {
+            queueTransfer(transferQueue.enqueueUpload(asyncClient.getPool(),
+                file.getAbsolutePath(), serverPath(file.getName()), 0),
+                this::loadServerFiles);
         }
     }
 
@@ -473,50 +502,601 @@ public class MainController {
      */
     @FXML
     void handleDownloadSelected() {
-        String selectedFile = serverFileList.getSelectionModel().getSelectedItem();
-        if (selectedFile == null) {
+        RemoteEntry entry = serverFileList.getSelectionModel().getSelectedItem();
+        if (entry == null) {
             leftStatusLabel.setText("Please select a file to download");
             return;
         }
         
-        // Parse server file listing to extract actual filename
-        ParsedServerFile parsedFile = parseServerFileDetails(selectedFile);
+        if (entry.isDirectory()) {
+            if (isServerConnected()) {
+                downloadDirectory(entry);
+            }
+            return;
+        }
+        
+        if (isServerConnected()) {
+            // Download to current local directory with original filename
+            String localPath = new File(currentLocalDirectory, entry.getName()).getAbsolutePath();
+            queueTransfer(transferQueue.enqueueDownload(asyncClient.getPool(),
+                serverPath(entry.getName()), localPath, entry.getSize(), 0),
+                this::loadLocalFiles);
+        }
+    }
+
+    /**
+     * Downloads a server folder and everything below it into the current local directory
+     * Files are fetched several at a time over the session pool; the progress bar and
+     * status label show the running totals, and failed files are reported at the end
+     * @param entry Selected server folder
+     */
+    private void downloadDirectory(RemoteEntry entry) {
+        String remotePath = serverPath(entry.getName());
+        File localDir = new File(currentLocalDirectory, entry.getName());
+        
+        transferStatusLabel.setText("Downloading folder...");
+        leftStatusLabel.setText("Downloading " + entry.getName() + "/ ...");
+        transferProgressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        transferProgressBar.setVisible(true);
+        
+        CompletableFuture<TreeTransferProgress> download = asyncClient.downloadTree(
+            remotePath, localDir.toPath(), treeProgressListener("Downloaded"));
+        onFxThread(connectionWork.track(download), progress -> {
+            showTreeProgress(progress, "Downloaded");
+            if (progress.isComplete()) {
+                transferStatusLabel.setText("Download completed");
+                leftStatusLabel.setText("Downloaded " + progress.getFilesDone() + " file(s) from " + entry.getName());
+            } else {
+                transferStatusLabel.setText("Download finished with errors");
+                leftStatusLabel.setText(progress.getFailures().size() + " item(s) failed in " + entry.getName()
+                    + (progress.getFailures().isEmpty() ? "" : ", first: " + progress.getFailures().get(0)));
+            }
+            loadLocalFiles();
+        }, error -> {
+            transferProgressBar.setProgress(0);
+            transferStatusLabel.setText("Download error");
+            leftStatusLabel.setText("Download error: " + error.getMessage());
+        });
+    }
+
+    /**
+     * Uploads a local folder and everything below it into the current server directory
+     * Remote folders are created first, then files are stored several at a time over
+     * the session pool; failed files are reported at the end
+     * @param folder Selected local folder
+     */
+    private void uploadDirectory(File folder) {
+        String remotePath = serverPath(folder.getName());
+        
+        transferStatusLabel.setText("Uploading folder...");
+        leftStatusLabel.setText("Uploading " + folder.getName() + "/ ...");
+        transferProgressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        transferProgressBar.setVisible(true);
         
-        if (parsedFile.isDirectory) {
-            leftStatusLabel.setText("Cannot download a directory");
+        CompletableFuture<TreeTransferProgress> upload = asyncClient.uploadTree(
+            folder.toPath(), remotePath, treeProgressListener("Uploaded"));
+        onFxThread(connectionWork.track(upload), progress -> {
+            showTreeProgress(progress, "Uploaded");
+            if (progress.isComplete()) {
+                transferStatusLabel.setText("Upload completed");
+                leftStatusLabel.setText("Uploaded " + progress.getFilesDone() + " file(s) from " + folder.getName());
+            } else {
+                transferStatusLabel.setText("Upload finished with errors");
+                leftStatusLabel.setText(progress.getFailures().size() + " item(s) failed in " + folder.getName()
+                    + (progress.getFailures().isEmpty() ? "" : ", first: " + progress.getFailures().get(0)));
+            }
+            loadServerFiles();
+        }, error -> {
+            transferProgressBar.setProgress(0);
+            transferStatusLabel.setText("Upload error");
+            leftStatusLabel.setText("Upload error: " + error.getMessage());
+        });
+    }
+
+    /**
+     * Synchronizes the current local folder with the current server folder
+     * Asks for the direction first, then previews the change set and only transfers
+     * new and modified files; extraneous files are deleted only when requested
+     */
+    @FXML
+    void handleSync() {
+        if (!isServerConnected()) {
+            leftStatusLabel.setText("Connect to a server first");
             return;
         }
         
-        if (ftpClient != null) {
-            new Thread(() -> {
-                try {
-                    Platform.runLater(() -> {
-                        transferStatusLabel.setText("Downloading...");
-                        leftStatusLabel.setText("Downloading " + parsedFile.name + "...");
-                    });
-                    
-                    // Download to current local directory with original filename
-                    String localPath = new File(currentLocalDirectory, parsedFile.name).getAbsolutePath();
-                    boolean success = ftpClient.downloadFile(parsedFile.name, localPath);
-                    
-                    Platform.runLater(() -> {
-                        if (success) {
-                            transferStatusLabel.setText("Download completed");
-                            leftStatusLabel.setText("Download completed: " + parsedFile.name);
-                            loadLocalFiles();
-                        } else {
-                            transferStatusLabel.setText("Download failed");
-                            leftStatusLabel.setText("Download failed");
+        ButtonType upload = new ButtonType("Local → Server");
+        ButtonType download = new ButtonType("Server → Local");
+        CheckBox deleteBox = new CheckBox("Delete files the source does not have");
+        Alert directionAlert = new Alert(Alert.AlertType.CONFIRMATION, "", upload, download, ButtonType.CANCEL);
+        directionAlert.setTitle("Sync Folders");
+        directionAlert.setHeaderText("Sync " + currentLocalDirectory + " with " + currentServerDirectory);
+        directionAlert.getDialogPane().setContent(new VBox(10,
+            new Label("Only new and modified files are transferred."), deleteBox));
+        
+        Optional<ButtonType> choice = directionAlert.showAndWait();
+        if (!choice.isPresent() || choice.get() == ButtonType.CANCEL) {
+            return;
+        }
+        SyncEngine.Direction direction = choice.get() == upload
+            ? SyncEngine.Direction.UPLOAD : SyncEngine.Direction.DOWNLOAD;
+        boolean deleteExtraneous = deleteBox.isSelected();
+        
+        transferStatusLabel.setText("Comparing folders...");
+        transferProgressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        transferProgressBar.setVisible(true);
+        final AsyncFTPClient client = asyncClient;
+        onFxThread(connectionWork.track(
+                client.compareTrees(new File(currentLocalDirectory).toPath(), currentServerDirectory, direction)),
+            changes -> confirmSync(client, changes, deleteExtraneous),
+            error -> {
+                transferProgressBar.setVisible(false);
+                transferStatusLabel.setText("Sync error");
+                leftStatusLabel.setText("Sync error: " + error.getMessage());
+            });
+    }
+
+    /**
+     * Shows what a sync would change and applies it once the user agrees
+     * @param client Client the change set was computed with
+     * @param changes Differences between the two folders
+     * @param deleteExtraneous Whether destination files missing from the source are deleted
+     */
+    private void confirmSync(AsyncFTPClient client, SyncEngine.ChangeSet changes, boolean deleteExtraneous) {
+        if (changes.isEmpty() || (!deleteExtraneous && changes.getAdded().isEmpty()
+                && changes.getModified().isEmpty() && changes.getConflicts().isEmpty()
+                && !changes.isDestinationMissing())) {
+            transferProgressBar.setVisible(false);
+            transferStatusLabel.setText("Already in sync");
+            leftStatusLabel.setText("Nothing to sync: " + changes);
+            return;
+        }
+        
+        Alert confirmAlert = new Alert(Alert.AlertType.CONFIRMATION);
+        confirmAlert.setTitle("Sync Folders");
+        confirmAlert.setHeaderText("Changes: " + changes);
+        confirmAlert.setContentText(deleteExtraneous && !changes.getDeleted().isEmpty()
+            ? changes.getDeleted().size() + " extraneous item(s) will be deleted. Continue?"
+            : "Transfer the new and modified files?");
+        Optional<ButtonType> result = confirmAlert.showAndWait();
+        if (!result.isPresent() || result.get() != ButtonType.OK) {
+            transferProgressBar.setVisible(false);
+            transferStatusLabel.setText("Sync cancelled");
+            return;
+        }
+        
+        transferStatusLabel.setText("Syncing...");
+        onFxThread(connectionWork.track(
+                client.applyChanges(changes, deleteExtraneous, treeProgressListener("Synced"))), progress -> {
+            showTreeProgress(progress, "Synced");
+            if (progress.isComplete()) {
+                transferStatusLabel.setText("Sync completed");
+                leftStatusLabel.setText("Synced " + progress.getFilesDone() + " file(s), deleted "
+                    + progress.getFilesDeleted() + " item(s)");
+            } else {
+                transferStatusLabel.setText("Sync finished with errors");
+                leftStatusLabel.setText(progress.getFailures().size() + " item(s) failed"
+                    + (progress.getFailures().isEmpty() ? "" : ", first: " + progress.getFailures().get(0)));
+            }
+            loadLocalFiles();
+            loadServerFiles();
+        }, error -> {
+            transferProgressBar.setProgress(0);
+            transferStatusLabel.setText("Sync error");
+            leftStatusLabel.setText("Sync error: " + error.getMessage());
+        });
+    }
+
+    /**
+     * Creates a listener that forwards folder transfer progress to the transfer panel
+     * Workers report after every file, so a repaint is only queued when none is pending
+     * @param verb Past-tense action shown in the status label
+     * @return Listener safe to call from any thread
+     */
+    private TreeTransferListener treeProgressListener(String verb) {
+        AtomicBoolean updatePending = new AtomicBoolean();
+        return progress -> {
+            if (updatePending.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    updatePending.set(false);
+                    showTreeProgress(progress, verb);
+                });
+            }
+        };
+    }
+
+    /**
+     * Shows aggregate progress of a folder transfer in the transfer panel
+     * Progress is measured in bytes once sizes are known, otherwise in files
+     * @param progress Running totals of the folder transfer
+     * @param verb Past-tense action shown in the status label
+     */
+    private void showTreeProgress(TreeTransferProgress progress, String verb) {
+        long files = progress.getFilesFound();
+        long bytes = progress.getBytesFound();
+        if (!progress.isScanFinished() || files == 0) {
+            transferProgressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        } else if (bytes > 0) {
+            transferProgressBar.setProgress((double) progress.getBytesDone() / bytes);
+        } else {
+            transferProgressBar.setProgress((double) progress.getFilesDone() / files);
+        }
+        transferStatusLabel.setText(verb + " " + progress.getFilesDone() + "/" + files
+            + (progress.isScanFinished() ? "" : "+") + " files ("
+            + formatFileSize(progress.getBytesDone()) + ")");
+    }
+
+    // ================= TRANSFER QUEUE =================
+
+    /**
+     * Follows a queued transfer and reports its outcome in the status labels
+     * The queue decides when it starts, so several may be waiting at once
+     * @param transfer Transfer just added to the queue
+     * @param onDone Refresh to run if the transfer succeeds
+     */
+    private void queueTransfer(QueuedTransfer transfer, Runnable onDone) {
+        String verb = transfer.getDirection() == TransferJournal.Direction.UPLOAD ? "Upload" : "Download";
+        String name = transfer.getDirection() == TransferJournal.Direction.UPLOAD
+            ? new File(transfer.getLocalPath()).getName() : transfer.getRemotePath();
+        transferStatusLabel.setText(verb + " queued");
+        leftStatusLabel.setText(verb + " queued: " + name);
+        
+        onFxThread(transfer.completion(), done -> {
+            if (done.getState() == QueuedTransfer.State.DONE) {
+                transferStatusLabel.setText(verb + " completed");
+                leftStatusLabel.setText(verb + " completed: " + name);
+                onDone.run();
+            } else if (done.getState() == QueuedTransfer.State.CANCELLED) {
+                transferStatusLabel.setText(verb + " cancelled");
+                leftStatusLabel.setText(verb + " cancelled: " + name);
+            } else {
+                transferStatusLabel.setText(verb + " failed");
+                leftStatusLabel.setText(verb + " failed: " + name
+                    + (done.getError() != null ? " (" + done.getError().getMessage() + ")" : ""));
+            }
+        }, error -> leftStatusLabel.setText(verb + " error: " + error.getMessage()));
+    }
+
+    /**
+     * Redraws the transfer queue list from the queue's current state
+     * Keeps the selection on the same transfer where possible
+     */
+    private void refreshTransferQueue() {
+        QueuedTransfer selected = transferQueueList.getSelectionModel().getSelectedItem();
+        List<QueuedTransfer> transfers = transferQueue.getTransfers();
+        transferQueueList.getItems().setAll(transfers);
+        if (selected != null) {
+            transferQueueList.getSelectionModel().select(selected);
+        }
+        queuePauseAllButton.setText(transferQueue.isPaused() ? "Start Queue" : "Pause Queue");
+
+        activeTransfers.clear();
+        for (QueuedTransfer transfer : transfers) {
+            if (transfer.getState() == QueuedTransfer.State.ACTIVE) {
+                activeTransfers.add(transfer);
+            }
+        }
+        if (!activeTransfers.isEmpty()) {
+            transferProgressBar.setVisible(true);
+            transferProgressTimer.start();
+        }
+    }
+
+    /**
+     * Shows combined progress, speed and time left of the running queued transfers
+     * Called once per frame by the progress timer, which stops itself when none are left
+     * @param now Frame time in nanoseconds
+     */
+    private void showTransferProgress(long now) {
+        long done = 0, total = 0, bytesPerSecond = 0;
+        boolean sized = true;
+        int running = 0, uploads = 0;
+        for (QueuedTransfer transfer : activeTransfers) {
+            if (transfer.getState() != QueuedTransfer.State.ACTIVE) {
+                continue;
+            }
+            TransferProgress progress = transfer.getProgress();
+            long size = progress.getSize() >= 0 ? progress.getSize() : transfer.getSize();
+            running++;
+            if (transfer.getDirection() == TransferJournal.Direction.UPLOAD) {
+                uploads++;
+            }
+            bytesPerSecond += progress.getBytesPerSecond();
+            done += progress.getPosition();
+            if (size >= 0) {
+                total += size;
+            } else {
+                sized = false;
+            }
+        }
+        if (running == 0) {
+            // The outcome labels are set by queueTransfer
+            transferProgressTimer.stop();
+            transferProgressBar.setProgress(0);
+            transferProgressBar.setVisible(false);
+            return;
+        }
+
+        transferProgressBar.setProgress(sized && total > 0
+            ? Math.min(1, (double) done / total) : ProgressBar.INDETERMINATE_PROGRESS);
+        String verb = uploads == running ? "Uploading" : uploads == 0 ? "Downloading" : "Transferring";
+        StringBuilder text = new StringBuilder(verb);
+        if (running > 1) {
+            text.append(' ').append(running).append(" files");
+        }
+        text.append(": ").append(formatFileSize(done));
+        if (sized) {
+            text.append(" of ").append(formatFileSize(total));
+        }
+        text.append(", ").append(formatFileSize(bytesPerSecond)).append("/s");
+        if (sized && bytesPerSecond > 0) {
+            text.append(", ").append(formatDuration(Math.max(0, total - done) / bytesPerSecond)).append(" left");
+        }
+        transferStatusLabel.setText(text.toString());
+
+        if (now - lastQueueRedraw >= QUEUE_PROGRESS_REDRAW_NANOS) {
+            lastQueueRedraw = now;
+            transferQueueList.refresh();
+        }
+    }
+
+    /**
+     * Stops or restarts the whole queue; running transfers are not interrupted
+     */
+    @FXML
+    void handleQueuePauseAll() {
+        if (transferQueue.isPaused()) {
+            transferQueue.resume();
+        } else {
+            transferQueue.pause();
+        }
+        refreshTransferQueue();
+    }
+
+    /**
+     * Pauses the selected transfer; an active one continues from where it stopped when resumed
+     */
+    @FXML
+    void handleQueuePause() {
+        QueuedTransfer selected = transferQueueList.getSelectionModel().getSelectedItem();
+        if (selected != null) {
+            transferQueue.pause(selected);
+        }
+    }
+
+    /**
+     * Puts the selected paused transfer back in line
+     */
+    @FXML
+    void handleQueueResume() {
+        QueuedTransfer selected = transferQueueList.getSelectionModel().getSelectedItem();
+        if (selected != null) {
+            transferQueue.resume(selected);
+        }
+    }
+
+    /**
+     * Cancels the selected transfer, aborting it if it is running
+     */
+    @FXML
+    void handleQueueCancel() {
+        QueuedTransfer selected = transferQueueList.getSelectionModel().getSelectedItem();
+        if (selected != null) {
+            transferQueue.cancel(selected);
+        }
+    }
+
+    /**
+     * Moves the selected transfer ahead of every other one and switches to priority order
+     */
+    @FXML
+    void handleQueuePrioritize() {
+        QueuedTransfer selected = transferQueueList.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            return;
+        }
+        int highest = 0;
+        for (QueuedTransfer transfer : transferQueue.getTransfers()) {
+            highest = Math.max(highest, transfer.getPriority());
+        }
+        transferQueue.setPriority(selected, highest + 1);
+        queuePolicyChoice.getSelectionModel().select("Priority");
+    }
+
+    /**
+     * Sets a speed limit for the selected transfer alone
+     * A running transfer speeds up or slows down immediately
+     */
+    @FXML
+    void handleQueueLimit() {
+        QueuedTransfer selected = transferQueueList.getSelectionModel().getSelectedItem();
+        if (selected == null || selected.getState().isFinal()) {
+            return;
+        }
+        long current = selected.getRateLimiter().getRate();
+        TextInputDialog dialog = new TextInputDialog(current == 0 ? "" : String.valueOf(current / 1024));
+        dialog.setTitle("Limit Transfer");
+        dialog.setHeaderText("Speed limit for " + selected + " in KB/s");
+        dialog.setContentText("Leave empty for no limit:");
+        
+        Optional<String> result = dialog.showAndWait();
+        if (result.isPresent()) {
+            try {
+                selected.getRateLimiter().setRate(parseRateLimit(result.get()));
+                refreshTransferQueue();
+            } catch (IllegalArgumentException e) {
+                leftStatusLabel.setText("Invalid speed limit: " + result.get());
+            }
+        }
+    }
+
+    /**
+     * Removes finished, failed and cancelled transfers from the list
+     */
+    @FXML
+    void handleQueueClearFinished() {
+        transferQueue.removeFinished();
+        refreshTransferQueue();
+    }
+
+    /**
+     * Applies the scheduling policy chosen in the queue panel
+     */
+    private void handleQueuePolicy() {
+        String choice = queuePolicyChoice.getValue();
+        if ("Priority".equals(choice)) {
+            transferQueue.setPolicy(SchedulingPolicy.PRIORITY);
+        } else if ("Smallest first".equals(choice)) {
+            transferQueue.setPolicy(SchedulingPolicy.SHORTEST_FIRST);
+        } else {
+            transferQueue.setPolicy(SchedulingPolicy.FIFO);
+        }
+    }
+
+    /**
+     * Offers to resume transfers to this server left unfinished by a previous run
+     * Uses the transfer journal; each transfer continues from its last offset
+     * Discard forgets them for good; Cancel asks again on the next connect
+     */
+    private void offerResumeOfInterruptedTransfers(String host, int port, String user) {
+        if (transferJournal == null) {
+            return;
+        }
+        List<TransferJournal.Entry> pending = transferJournal.getUnfinished(host, port, user);
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        ButtonType resume = new ButtonType("Resume");
+        ButtonType discard = new ButtonType("Discard");
+        Alert confirmAlert = new Alert(Alert.AlertType.CONFIRMATION, "", resume, discard, ButtonType.CANCEL);
+        confirmAlert.setTitle("Resume Transfers");
+        confirmAlert.setHeaderText(pending.size() + " transfer(s) were interrupted last time");
+        confirmAlert.setContentText("Resume them from where they stopped, or discard them?");
+        
+        Optional<ButtonType> result = confirmAlert.showAndWait();
+        if (result.isPresent() && result.get() == discard) {
+            discardInterruptedTransfers(pending);
+            return;
+        }
+        if (!result.isPresent() || result.get() != resume) {
+            return;
+        }
+        
+        // Resume one after another so the transfers do not compete for bandwidth
+        transferStatusLabel.setText("Resuming...");
+        final AsyncFTPClient client = asyncClient;
+        AtomicInteger resumed = new AtomicInteger();
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (TransferJournal.Entry entry : pending) {
+            chain = chain.thenCompose(ignored -> {
+                Platform.runLater(() ->
+                    leftStatusLabel.setText("Resuming " + entry.getRemotePath() + "..."));
+                return client.submit(null, s -> s.resume(entry))
+                    .handle((success, error) -> {
+                        if (error != null) {
+                            Platform.runLater(() -> leftStatusLabel.setText(
+                                "Resume error: " + AsyncFTPClient.unwrap(error).getMessage()));
+                        } else if (success) {
+                            resumed.incrementAndGet();
                         }
+                        return null;
                     });
-                } catch (IOException e) {
-                    Platform.runLater(() -> {
-                        transferStatusLabel.setText("Download error");
-                        leftStatusLabel.setText("Download error: " + e.getMessage());
-                    });
-                }
-            }).start();
+            });
+        }
+        onFxThread(connectionWork.track(chain), ignored -> {
+            transferStatusLabel.setText("Resume finished");
+            leftStatusLabel.setText("Resumed " + resumed.get() + " of " + pending.size() + " transfer(s)");
+            loadLocalFiles();
+            loadServerFiles();
+        }, error -> leftStatusLabel.setText("Resume error: " + error.getMessage()));
+    }
+
+    /**
+     * Removes interrupted transfers from the journal so they are not offered again
+     * Partial local files are left where they are
+     * @param pending Journal entries to forget
+     */
+    private void discardInterruptedTransfers(List<TransferJournal.Entry> pending) {
+        try {
+            for (TransferJournal.Entry entry : pending) {
+                transferJournal.complete(entry);
+            }
+            leftStatusLabel.setText("Discarded " + pending.size() + " interrupted transfer(s)");
+        } catch (IOException e) {
+            leftStatusLabel.setText("Could not update transfer journal: " + e.getMessage());
+        }
+    }
+
+    // ================= BANDWIDTH LIMITS =================
+
+    /**
+     * Lets the user set the speed limits for all transfers, for this server and for each transfer
+     * Changes apply immediately, including to transfers that are already running
+     */
+    @FXML
+    void handleSpeedLimits() {
+        boolean connected = isServerConnected();
+        TextField globalField = rateLimitField(RateLimiter.global().getRate());
+        TextField hostField = rateLimitField(connected ? asyncClient.getPool().getHostRateLimiter().getRate() : 0);
+        TextField transferField = rateLimitField(connected ? asyncClient.getPool().getTransferRateLimit() : 0);
+        hostField.setDisable(!connected);
+        transferField.setDisable(!connected);
+        
+        Alert limitsAlert = new Alert(Alert.AlertType.CONFIRMATION);
+        limitsAlert.setTitle("Speed Limits");
+        limitsAlert.setHeaderText("Limits in KB/s; leave a field empty for no limit");
+        limitsAlert.getDialogPane().setContent(new VBox(5,
+            new Label("All transfers:"), globalField,
+            new Label("This server:"), hostField,
+            new Label("Each transfer:"), transferField));
+        
+        Optional<ButtonType> result = limitsAlert.showAndWait();
+        if (!result.isPresent() || result.get() != ButtonType.OK) {
+            return;
+        }
+        try {
+            long global = parseRateLimit(globalField.getText());
+            long host = parseRateLimit(hostField.getText());
+            long transfer = parseRateLimit(transferField.getText());
+            RateLimiter.global().setRate(global);
+            if (connected) {
+                asyncClient.getPool().getHostRateLimiter().setRate(host);
+                asyncClient.getPool().setTransferRateLimit(transfer);
+            }
+            leftStatusLabel.setText("Speed limit: " + RateLimiter.global() + " overall"
+                + (connected ? ", " + asyncClient.getPool().getHostRateLimiter() + " for this server" : ""));
+        } catch (IllegalArgumentException e) {
+            leftStatusLabel.setText("Invalid speed limit: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates an input field showing a limit in KB/s, empty when unlimited
+     * @param bytesPerSecond Current limit, 0 for none
+     */
+    private TextField rateLimitField(long bytesPerSecond) {
+        TextField field = new TextField(bytesPerSecond == 0 ? "" : String.valueOf(bytesPerSecond / 1024));
+        field.setPromptText("unlimited");
+        return field;
+    }
+
+    /**
+     * Converts a limit typed in KB/s into bytes per second
+     * @param text User input; empty or 0 means no limit
+     * @return Bytes per second, 0 for no limit
+     * @throws IllegalArgumentException if the text is not a non-negative number
+     */
+    private long parseRateLimit(String text) {
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return 0;
+        }
+        long kilobytes = Long.parseLong(trimmed);
+        if (kilobytes < 0) {
+            throw new IllegalArgumentException(trimmed);
         }
+        return kilobytes * 1024;
     }
 
     // ================= DIRECTORY NAVIGATION =================
@@ -556,49 +1136,33 @@ public class MainController {
     /**
      * Handles server directory navigation via double-click or Go button
      * Uses FTP CWD (Change Working Directory) command
-     * Parses FTP directory listings to extract directory names
      */
-    private void handleServerDirectoryNavigation(String selectedFolder) {
-        if (ftpClient == null || !ftpClient.isLoggedIn()) {
+    private void handleServerDirectoryNavigation(RemoteEntry entry) {
+        if (!isServerConnected()) {
             leftStatusLabel.setText("Not connected to server");
             return;
         }
         
-        // Parse FTP listing format to extract directory name
-        ParsedServerFile parsedFile = parseServerFileDetails(selectedFolder);
-        
-        if (!parsedFile.isDirectory) {
+        if (!entry.isDirectory()) {
             leftStatusLabel.setText("Selected item is not a directory");
             return;
         }
         
-        new Thread(() -> {
-            try {
-                boolean success = ftpClient.changeDirectory(parsedFile.name);
-                Platform.runLater(() -> {
-                    if (success) {
-                        // Update server directory tracking
-                        if (currentServerDirectory.endsWith("/")) {
-                            currentServerDirectory += parsedFile.name;
-                        } else {
-                            currentServerDirectory += "/" + parsedFile.name;
-                        }
-                        
-                        leftStatusLabel.setText("Changed server directory to: " + parsedFile.name);
-                        loadServerFiles();
-                        
-                        // Update file details panel
-                        filePathLabel.setText("Server: " + currentServerDirectory);
-                        transferStatusLabel.setText("Navigated to server folder");
-                    } else {
-                        leftStatusLabel.setText("Failed to change server directory");
-                    }
-                });
-            } catch (IOException e) {
-                Platform.runLater(() -> 
-                    leftStatusLabel.setText("Server directory change error: " + e.getMessage()));
+        onFxThread(navigateServer(entry.getName()), newDirectory -> {
+            if (newDirectory != null) {
+                // Update server directory tracking
+                currentServerDirectory = newDirectory;
+                
+                leftStatusLabel.setText("Changed server directory to: " + entry.getName());
+                loadServerFiles();
+                
+                // Update file details panel
+                filePathLabel.setText("Server: " + currentServerDirectory);
+                transferStatusLabel.setText("Navigated to server folder");
+            } else {
+                leftStatusLabel.setText("Failed to change server directory");
             }
-        }).start();
+        }, error -> leftStatusLabel.setText("Server directory change error: " + error.getMessage()));
     }
 
     /**
@@ -622,6 +1186,19 @@ public class MainController {
         }
     }
 
+    /**
+     * Starts a server directory change that supersedes any navigation still running
+     * The old directory's listing is abandoned too, so rapid clicking leaves at most
+     * one CWD and one listing in flight
+     * @param target Folder name, path, or ".." relative to the current server directory
+     * @return New absolute server directory, or null if the server refused
+     */
+    private CompletableFuture<String> navigateServer(String target) {
+        navigationWork.cancel();
+        listingWork.cancel();
+        return navigationWork.track(asyncClient.cwd(currentServerDirectory, target));
+    }
+
     // ================= GUI EVENT HANDLERS =================
 
     /**
@@ -695,33 +1272,25 @@ public class MainController {
         
         if (!path.isEmpty()) {
             // Manual path navigation from text field
-            if (ftpClient == null || !ftpClient.isLoggedIn()) {
+            if (!isServerConnected()) {
                 leftStatusLabel.setText("Please ensure you're connected to server");
                 return;
             }
             
-            new Thread(() -> {
-                try {
-                    boolean success = ftpClient.changeDirectory(path);
-                    Platform.runLater(() -> {
-                        if (success) {
-                            currentServerDirectory = path;
-                            leftStatusLabel.setText("Changed server directory to: " + path);
-                            loadServerFiles();
-                            serverDirectoryField.clear();
-                        } else {
-                            leftStatusLabel.setText("Failed to change server directory");
-                        }
-                    });
-                } catch (IOException e) {
-                    Platform.runLater(() -> 
-                        leftStatusLabel.setText("Server directory change error: " + e.getMessage()));
+            onFxThread(navigateServer(path), newDirectory -> {
+                if (newDirectory != null) {
+                    currentServerDirectory = newDirectory;
+                    leftStatusLabel.setText("Changed server directory to: " + path);
+                    loadServerFiles();
+                    serverDirectoryField.clear();
+                } else {
+                    leftStatusLabel.setText("Failed to change server directory");
                 }
-            }).start();
+            }, error -> leftStatusLabel.setText("Server directory change error: " + error.getMessage()));
         } else {
             // Navigate to selected folder in server file list
-            String selectedFile = serverFileList.getSelectionModel().getSelectedItem();
-            if (selectedFile != null && (selectedFile.startsWith("d") || selectedFile.contains("<DIR>"))) {
+            RemoteEntry selectedFile = serverFileList.getSelectionModel().getSelectedItem();
+            if (selectedFile != null && selectedFile.isDirectory()) {
                 handleServerDirectoryNavigation(selectedFile);
             } else {
                 leftStatusLabel.setText("Please select a folder or enter a path");
@@ -735,37 +1304,22 @@ public class MainController {
      */
     @FXML
     void handleServerUp() {
-        if (ftpClient == null || !ftpClient.isLoggedIn()) {
+        if (!isServerConnected()) {
             leftStatusLabel.setText("Please ensure you're connected to server");
             return;
         }
         
-        new Thread(() -> {
-            try {
-                boolean success = ftpClient.changeDirectory("..");
-                Platform.runLater(() -> {
-                    if (success) {
-                        // Update server directory path tracking
-                        if (currentServerDirectory.contains("/")) {
-                            int lastSlash = currentServerDirectory.lastIndexOf("/");
-                            if (lastSlash > 0) {
-                                currentServerDirectory = currentServerDirectory.substring(0, lastSlash);
-                            } else {
-                                currentServerDirectory = "/";
-                            }
-                        }
-                        
-                        leftStatusLabel.setText("Moved up one server directory");
-                        loadServerFiles();
-                    } else {
-                        leftStatusLabel.setText("Failed to go up server directory");
-                    }
-                });
-            } catch (IOException e) {
-                Platform.runLater(() -> 
-                    leftStatusLabel.setText("Error going up server directory: " + e.getMessage()));
+        onFxThread(navigateServer(".."), newDirectory -> {
+            if (newDirectory != null) {
+                // Update server directory path tracking
+                currentServerDirectory = newDirectory;
+                
+                leftStatusLabel.setText("Moved up one server directory");
+                loadServerFiles();
+            } else {
+                leftStatusLabel.setText("Failed to go up server directory");
             }
-        }).start();
+        }, error -> leftStatusLabel.setText("Error going up server directory: " + error.getMessage()));
     }
     
     /**
@@ -774,7 +1328,7 @@ public class MainController {
      */
     @FXML
     void handleServerNewFolder() {
-        if (ftpClient == null || !ftpClient.isLoggedIn()) {
+        if (!isServerConnected()) {
             leftStatusLabel.setText("Please ensure you're connected to server");
             return;
         }
@@ -783,22 +1337,14 @@ public class MainController {
         if (folderName != null && !folderName.trim().isEmpty()) {
             final String finalFolderName = folderName.trim();
             
-            new Thread(() -> {
-                try {
-                    boolean success = ftpClient.makeDirectory(finalFolderName);
-                    Platform.runLater(() -> {
-                        if (success) {
-                            leftStatusLabel.setText("Created server folder: " + finalFolderName);
-                            loadServerFiles();
-                        } else {
-                            leftStatusLabel.setText("Failed to create server folder: " + finalFolderName);
-                        }
-                    });
-                } catch (IOException e) {
-                    Platform.runLater(() -> 
-                        leftStatusLabel.setText("Server folder creation error: " + e.getMessage()));
+            onFxThread(connectionWork.track(asyncClient.mkdir(currentServerDirectory, finalFolderName)), success -> {
+                if (success) {
+                    leftStatusLabel.setText("Created server folder: " + finalFolderName);
+                    loadServerFiles();
+                } else {
+                    leftStatusLabel.setText("Failed to create server folder: " + finalFolderName);
                 }
-            }).start();
+            }, error -> leftStatusLabel.setText("Server folder creation error: " + error.getMessage()));
         }
     }
 
@@ -812,7 +1358,7 @@ public class MainController {
     void handleDelete() {
         // Check which pane has a selected item
         String clientSelected = clientFileList.getSelectionModel().getSelectedItem();
-        String serverSelected = serverFileList.getSelectionModel().getSelectedItem();
+        RemoteEntry serverSelected = serverFileList.getSelectionModel().getSelectedItem();
         
         if (clientSelected != null) {
             handleDeleteLocal(clientSelected);
@@ -866,46 +1412,34 @@ public class MainController {
      * Handles deletion of server files and directories
      * Uses FTP DELE command for files and RMD command for directories
      */
-    private void handleDeleteServer(String selectedItem) {
-        if (ftpClient == null || !ftpClient.isLoggedIn()) {
+    private void handleDeleteServer(RemoteEntry entry) {
+        if (!isServerConnected()) {
             leftStatusLabel.setText("Not connected to server");
             return;
         }
         
-        ParsedServerFile parsedFile = parseServerFileDetails(selectedItem);
-        
         // Show confirmation dialog
         Alert confirmAlert = new Alert(Alert.AlertType.CONFIRMATION);
         confirmAlert.setTitle("Confirm Delete");
-        confirmAlert.setHeaderText("Delete server " + (parsedFile.isDirectory ? "folder" : "file") + "?");
-        confirmAlert.setContentText("Are you sure you want to delete \"" + parsedFile.name + "\"?" + 
-                                (parsedFile.isDirectory ? "\n\nThis can only delete an empty folder. \nDeleting a non-empty one will result in error." : ""));
+        confirmAlert.setHeaderText("Delete server " + (entry.isDirectory() ? "folder" : "file") + "?");
+        confirmAlert.setContentText("Are you sure you want to delete \"" + entry.getName() + "\"?" + 
+                                (entry.isDirectory() ? "\n\nThis can only delete an empty folder. \nDeleting a non-empty one will result in error." : ""));
         
         Optional<ButtonType> result = confirmAlert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            new Thread(() -> {
-                try {
-                    boolean success;
-                    if (parsedFile.isDirectory) {
-                        success = ftpClient.removeDirectory(parsedFile.name);
-                    } else {
-                        success = ftpClient.deleteFile(parsedFile.name);
-                    }
-                    
-                    Platform.runLater(() -> {
-                        if (success) {
-                            leftStatusLabel.setText("Deleted server item: " + parsedFile.name);
-                            loadServerFiles();
-                            clearFileDetails();
-                        } else {
-                            leftStatusLabel.setText("Failed to delete server item: " + parsedFile.name);
-                        }
-                    });
-                } catch (IOException e) {
-                    Platform.runLater(() -> 
-                        leftStatusLabel.setText("Delete error: " + e.getMessage()));
+            CompletableFuture<Boolean> deletion = entry.isDirectory()
+                ? asyncClient.rmdir(currentServerDirectory, entry.getName())
+                : asyncClient.delete(currentServerDirectory, entry.getName());
+            
+            onFxThread(connectionWork.track(deletion), success -> {
+                if (success) {
+                    leftStatusLabel.setText("Deleted server item: " + entry.getName());
+                    loadServerFiles();
+                    clearFileDetails();
+                } else {
+                    leftStatusLabel.setText("Failed to delete server item: " + entry.getName());
                 }
-            }).start();
+            }, error -> leftStatusLabel.setText("Delete error: " + error.getMessage()));
         }
     }
 
@@ -940,7 +1474,7 @@ public class MainController {
         if (selectedFile == null) {
             clearFileDetails();
             downloadButton.setDisable(true);
-            uploadButton.setDisable(ftpClient == null || !ftpClient.isLoggedIn());
+            uploadButton.setDisable(!isServerConnected());
             deleteButton.setDisable(true);
             return;
         }
@@ -972,12 +1506,12 @@ public class MainController {
             filePathLabel.setText(file.getAbsolutePath());
             
             if (file.isDirectory()) {
-                transferStatusLabel.setText("Double-click or press 'Go' to enter folder");
-                uploadButton.setDisable(true);
+                transferStatusLabel.setText("Double-click or press 'Go' to enter folder, or upload it");
+                uploadButton.setDisable(!isServerConnected());
                 deleteButton.setDisable(false);
             } else {
                 transferStatusLabel.setText("Ready to upload");
-                uploadButton.setDisable(ftpClient == null || !ftpClient.isLoggedIn());
+                uploadButton.setDisable(!isServerConnected());
                 deleteButton.setDisable(false);
             }
             
@@ -990,32 +1524,31 @@ public class MainController {
      * Parses FTP directory listing format to extract file information
      * Updates file details panel and manages button states
      */
-    private void displayServerFileDetails(String selectedFile) {
-        if (selectedFile == null) {
+    private void displayServerFileDetails(RemoteEntry entry) {
+        if (entry == null) {
             clearFileDetails();
-            uploadButton.setDisable(ftpClient == null || !ftpClient.isLoggedIn());
+            uploadButton.setDisable(!isServerConnected());
             downloadButton.setDisable(true);
             deleteButton.setDisable(true);
             return;
         }
         
-        // Parse FTP directory listing to extract file details
-        ParsedServerFile parsedFile = parseServerFileDetails(selectedFile);
-        
-        fileNameLabel.setText(parsedFile.name);
-        fileSizeLabel.setText(parsedFile.size);
-        fileTypeLabel.setText(parsedFile.type);
-        lastModifiedLabel.setText(parsedFile.lastModified);
-        filePathLabel.setText("Server: " + currentServerDirectory + "/" + parsedFile.name);
+        // Entries were parsed once when the listing arrived
+        fileNameLabel.setText(entry.getName());
+        fileSizeLabel.setText(entry.isDirectory() ? "-"
+            : entry.getSize() >= 0 ? formatFileSize(entry.getSize()) : "Unknown");
+        fileTypeLabel.setText(entry.isDirectory() ? "Directory" : getFileType(entry.getName()));
+        lastModifiedLabel.setText(entry.getModifyTime() >= 0 ? formatDate(entry.getModifyTime()) : "Unknown");
+        filePathLabel.setText("Server: " + currentServerDirectory + "/" + entry.getName());
         
-        if (parsedFile.isDirectory) {
-            transferStatusLabel.setText("Double-click or press 'Go' to enter folder");
-            downloadButton.setDisable(true); // Can't download directories
-            deleteButton.setDisable(ftpClient == null || !ftpClient.isLoggedIn());
+        if (entry.isDirectory()) {
+            transferStatusLabel.setText("Double-click or press 'Go' to enter folder, or download it");
+            downloadButton.setDisable(!isServerConnected());
+            deleteButton.setDisable(!isServerConnected());
         } else {
             transferStatusLabel.setText("Ready to download");
-            downloadButton.setDisable(ftpClient == null || !ftpClient.isLoggedIn());
-            deleteButton.setDisable(ftpClient == null || !ftpClient.isLoggedIn());
+            downloadButton.setDisable(!isServerConnected());
+            deleteButton.setDisable(!isServerConnected());
         }
         
         uploadButton.setDisable(true); // Can't upload from server
@@ -1035,99 +1568,94 @@ public class MainController {
         deleteButton.setDisable(true);
     }
 
-    // ================= FTP LISTING PARSER =================
+    // ================= SERVER LISTING BATCHES =================
 
     /**
-     * Helper class to store parsed FTP directory listing information
-     * Encapsulates file details extracted from FTP LIST command output
+     * Collects listing entries on the worker thread and hands them to the
+     * JavaFX Application Thread in batches, by count or by elapsed time
+     * Batches for a list view that has since been replaced are ignored
      */
-    private static class ParsedServerFile {
-        String name;           // File/directory name
-        String size;           // Formatted file size
-        String type;           // File type description
-        String lastModified;   // Last modification date
-        boolean isDirectory;   // Directory flag
-        
-        ParsedServerFile(String name, String size, String type, String lastModified, boolean isDirectory) {
-            this.name = name;
-            this.size = size;
-            this.type = type;
-            this.lastModified = lastModified;
-            this.isDirectory = isDirectory;
+    private class ListingBatcher implements Consumer<RemoteEntry> {
+        private final ObservableList<RemoteEntry> target;
+        private List<RemoteEntry> batch = new ArrayList<>();
+        private long lastFlush = System.nanoTime();
+        private boolean flushedOnce = false;
+
+        ListingBatcher(ObservableList<RemoteEntry> target) {
+            this.target = target;
         }
-    }
-    
-    /**
-     * Parses FTP directory listing entries into structured data
-     * Handles Unix-style listings (drwxr-xr-x format) and simple formats
-     * Extracts filename, size, permissions, and modification date
-     * @param ftpListing Raw FTP LIST command output line
-     * @return ParsedServerFile object with extracted information
-     */
-    private ParsedServerFile parseServerFileDetails(String ftpListing) {
-        try {
-            // Example formats:
-            // "drwxr-xr-x    2 user     group        4096 May 25 12:00 dirname"
-            // "-rw-r--r--    1 user     group        1024 May 25 12:00 filename.txt"
-            
-            String[] parts = ftpListing.trim().split("\\s+");
-            
-            if (parts.length < 9) {
-                // Fallback for simple listings that don't follow Unix format
-                return new ParsedServerFile(ftpListing, "Unknown", "Unknown", "Unknown", 
-                                          ftpListing.startsWith("d") || ftpListing.contains("<DIR>"));
+
+        @Override
+        public void accept(RemoteEntry entry) {
+            batch.add(entry);
+            int limit = flushedOnce ? LISTING_BATCH : FIRST_LISTING_BATCH;
+            if (batch.size() >= limit || System.nanoTime() - lastFlush >= LISTING_BATCH_NANOS) {
+                flush();
             }
-            
-            // Parse permissions string (first character indicates type)
-            String permissions = parts[0];
-            boolean isDirectory = permissions.startsWith("d");
-            
-            // Parse file size (skip for directories)
-            String size = isDirectory ? "-" : formatFileSize(Long.parseLong(parts[4]));
-            
-            // Parse date components (month, day, time/year)
-            String month = parts.length > 5 ? parts[5] : "";
-            String day = parts.length > 6 ? parts[6] : "";
-            String timeOrYear = parts.length > 7 ? parts[7] : "";
-            String lastModified = month + " " + day + " " + timeOrYear;
-            
-            // Parse filename (everything after the date - handles spaces in names)
-            StringBuilder nameBuilder = new StringBuilder();
-            for (int i = 8; i < parts.length; i++) {
-                if (i > 8) nameBuilder.append(" ");
-                nameBuilder.append(parts[i]);
+        }
+
+        /** Send whatever has been collected so far to the list view */
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
             }
-            String name = nameBuilder.toString();
-            
-            // Determine file type based on extension or directory flag
-            String type = isDirectory ? "Directory" : getFileType(name);
-            
-            return new ParsedServerFile(name, size, type, lastModified, isDirectory);
-            
-        } catch (Exception e) {
-            // Fallback parsing for unusual listing formats
-            String name = extractDirectoryName(ftpListing);
-            boolean isDir = ftpListing.startsWith("d") || ftpListing.contains("<DIR>");
-            return new ParsedServerFile(name, "Unknown", isDir ? "Directory" : "File", 
-                                      "Unknown", isDir);
+            List<RemoteEntry> ready = batch;
+            batch = new ArrayList<>(LISTING_BATCH);
+            lastFlush = System.nanoTime();
+            flushedOnce = true;
+            Platform.runLater(() -> {
+                if (serverFileList.getItems() == target) {
+                    target.addAll(ready);
+                    rightStatusLabel.setText("Loading files... (" + target.size() + " items)");
+                }
+            });
         }
     }
 
+    // ================= UTILITY METHODS =================
+
     /**
-     * Extracts directory name from FTP listing when standard parsing fails
-     * Used as fallback method for unusual FTP server listing formats
+     * Checks whether a logged-in session pool is available
+     * @return true once connected and until disconnect
      */
-    private String extractDirectoryName(String selectedItem) {
-        // Parse FTP directory listing format
-        // Example: "drwxr-xr-x    2 user     group        4096 May 25 12:00 dirname"
-        String[] parts = selectedItem.split("\\s+");
-        if (parts.length > 8) {
-            return parts[parts.length - 1]; // Last part is usually the directory name
-        }
-        return selectedItem; // Fallback to entire string
+    private boolean isServerConnected() {
+        return asyncClient != null && !asyncClient.getPool().isClosed();
     }
 
-    // ================= UTILITY METHODS =================
+    /**
+     * Absolute server path of a name in the current server directory
+     * @param name File or folder name
+     * @return Path usable from any pooled session
+     */
+    private String serverPath(String name) {
+        return currentServerDirectory.endsWith("/")
+            ? currentServerDirectory + name
+            : currentServerDirectory + "/" + name;
+    }
+
+    /**
+     * Delivers the outcome of an FTP operation on the JavaFX Application Thread
+     * Failures are unwrapped so handlers see the original exception message;
+     * cancelled operations were superseded or abandoned, so they report nothing
+     * @param future Pending FTP operation
+     * @param onSuccess Called with the result if the operation succeeded
+     * @param onFailure Called with the underlying error if it failed
+     */
+    private <T> void onFxThread(CompletableFuture<T> future, Consumer<T> onSuccess,
+                                Consumer<Throwable> onFailure) {
+        future.whenComplete((value, error) -> {
+            if (AsyncFTPClient.unwrap(error) instanceof CancellationException) {
+                return;
+            }
+            Platform.runLater(() -> {
+                if (error == null) {
+                    onSuccess.accept(value);
+                } else {
+                    onFailure.accept(AsyncFTPClient.unwrap(error));
+                }
+            });
+        });
+    }
 
     /**
      * Formats file size in human-readable format
@@ -1142,6 +1670,18 @@ public class MainController {
         return String.format("%.1f GB", bytes / (1024.0 * 1024.0 * 1024.0));
     }
 
+    /**
+     * Formats a number of seconds as h:mm:ss, or m:ss under an hour
+     * @param seconds Duration in seconds
+     * @return Formatted duration string
+     */
+    private String formatDuration(long seconds) {
+        if (seconds >= 3600) {
+            return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        }
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
     /**
      * Determines file type based on file extension
      * Returns user-friendly file type descriptions
@@ -1211,11 +1751,22 @@ public class MainController {
 
     /**
      * Exits application (File -> Quit menu)
+     * Shutdown itself runs from Main.stop(), which Platform.exit() triggers
      */
     @FXML
     void handleQuit() {
+        Platform.exit();
+    }
+
+    /**
+     * Stops all background work before the application exits
+     * Disconnects, closes the transfer queue and shuts down the shared executor;
+     * safe to call more than once
+     */
+    public void shutdown() {
         handleDisconnect();
-        System.exit(0);
+        transferQueue.close();
+        background.close();
     }
 
     /**